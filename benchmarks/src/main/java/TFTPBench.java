@@ -0,0 +1,206 @@
+/**
+*Class:             TFTPBench.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.3.0
+*
+*Purpose:           The benchmarks' way in to the project: implements
+*					tftp.bench.Bridge on top of the default package classes.
+*					Kept as thin as possible so the benchmarks measure the
+*					project, not this.
+*
+*
+*Update Log:        v1.3.0
+*                       - buffers()
+*                   v1.2.0
+*                       - wheel()
+*                   v1.1.0
+*                       - host()
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+import tftp.bench.Bridge;
+
+
+public class TFTPBench implements Bridge
+{
+	public ByteBuffer request(int opcode, String file, int blockSize, int windowSize)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(TFTPPacket.DEFAULT_BLOCK_SIZE);
+		TFTPPacket.putRequest(buffer, opcode, file, "octet", TFTPOptions.request(blockSize, windowSize));
+		buffer.flip();
+		return buffer;
+	}
+
+
+	public Parser parser()
+	{
+		final TFTPPacket packet = new TFTPPacket();
+		return new Parser()
+		{
+			public int parse(ByteBuffer request)
+			{
+				packet.wrap(request);
+				if (!packet.isValid() || !packet.modeEquals("octet"))
+				{
+					return -1;
+				}
+				return packet.filename().length() + TFTPOptions.negotiate(packet).getBlockSize();
+			}
+		};
+	}
+
+
+	public Router router() throws IOException
+	{
+		final TFTPDispatcher dispatcher = new TFTPDispatcher(0);
+		return new Router()
+		{
+			public Object route(byte[] request, InetSocketAddress from)
+			{
+				return dispatcher.route(new TFTPListener.Datagram(from, request));
+			}
+
+			public void close()
+			{
+				dispatcher.close();
+			}
+		};
+	}
+
+
+	public Reader reader()
+	{
+		final TFTPReader reader = new TFTPReader();
+		return new Reader()
+		{
+			public int readAndSplit(String file) throws IOException
+			{
+				return reader.readAndSplit(file).size();
+			}
+		};
+	}
+
+
+	public Server server() throws IOException
+	{
+		final TFTPDispatcher dispatcher = new TFTPDispatcher(0);
+		final Thread thread = new Thread(dispatcher, "TFTPDispatcher");
+		thread.setDaemon(true);
+		thread.start();
+		return new Server()
+		{
+			public int port()
+			{
+				return dispatcher.getLocalPort();
+			}
+
+			public void close()
+			{
+				dispatcher.close();
+			}
+		};
+	}
+
+
+	public Server host(int serverPort, String rules, long seed) throws IOException
+	{
+		final TFTPHost host = new TFTPHost(0, new InetSocketAddress(InetAddress.getLoopbackAddress(), serverPort),
+				Impairment.parse(rules, seed));
+		final Thread thread = new Thread(host, "TFTPHost");
+		thread.setDaemon(true);
+		thread.start();
+		return new Server()
+		{
+			public int port()
+			{
+				return host.getLocalPort();
+			}
+
+			public void close()
+			{
+				host.close();
+			}
+		};
+	}
+
+
+	public Timers wheel()
+	{
+		final TimerWheel wheel = new TimerWheel();
+		final List<TimerWheel.Timer> timers = new ArrayList<TimerWheel.Timer>();
+		return new Timers()
+		{
+			public int add(long delay)
+			{
+				TimerWheel.Timer timer = new TimerWheel.Timer(null);
+				wheel.schedule(timer, System.nanoTime() + delay);
+				timers.add(timer);
+				return timers.size() - 1;
+			}
+
+			//as a TransferLoop does: catch up with the time, then move it
+			public void reschedule(int timer, long delay)
+			{
+				long now = System.nanoTime();
+				wheel.advance(now, t -> {});
+				wheel.schedule(timers.get(timer), now + delay);
+			}
+
+			public void close()
+			{
+			}
+		};
+	}
+
+
+	public Buffers buffers()
+	{
+		final BufferPool pool = BufferPool.shared();
+		return new Buffers()
+		{
+			public ByteBuffer acquire(int size)
+			{
+				return pool.acquire(size);
+			}
+
+			public void release(ByteBuffer buffer)
+			{
+				pool.release(buffer);
+			}
+		};
+	}
+
+
+	public Client client(int serverPort)
+	{
+		final TFTPClient client = new TFTPClient(false);
+		client.setOutPort(serverPort);
+		return new Client()
+		{
+			public boolean read(String remote, String local, int blockSize, int windowSize) throws IOException
+			{
+				return client.readFile(remote, local, blockSize, windowSize);
+			}
+
+			public boolean write(String local, String remote, int blockSize, int windowSize) throws IOException
+			{
+				return client.writeFile(local, remote, blockSize, windowSize);
+			}
+
+			public void close()
+			{
+				client.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,122 @@
+/**
+*Class:             Bridge.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.3.0
+*
+*Purpose:           What the benchmarks need from the project, as interfaces.
+*					The project's classes are all in the default package,
+*					which classes in a named package can't refer to, and JMH
+*					won't generate benchmarks in the default package. So the
+*					benchmarks call through these interfaces, and TFTPBench
+*					(default package, next to the project's classes) is the
+*					one implementation. Each interface has only that one
+*					implementation, so the calls are inlined by the JIT.
+*
+*
+*Update Log:        v1.3.0
+*                       - buffers(): the shared BufferPool
+*                   v1.2.0
+*                       - wheel(): timers on a TimerWheel
+*                   v1.1.0
+*                       - host(): a TFTPHost with impairment rules
+*                   v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+
+
+public interface Bridge
+{
+	//the implementation in the default package
+	public static Bridge get()
+	{
+		try
+		{
+			return (Bridge)Class.forName("TFTPBench").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("TFTPBench not on the classpath", e);
+		}
+	}
+
+
+	//build a RRQ/WRQ as the client would
+	public ByteBuffer request(int opcode, String file, int blockSize, int windowSize);
+
+
+	public Parser parser();
+	public Router router() throws IOException;
+	public Reader reader();
+	public Server server() throws IOException;
+	public Client client(int serverPort);
+	public Server host(int serverPort, String rules, long seed) throws IOException;
+	public Timers wheel();
+	public Buffers buffers();
+
+
+	//decodes requests with TFTPPacket and TFTPOptions
+	public static interface Parser
+	{
+		//decode a request and agree its options; the result only feeds a Blackhole
+		public int parse(ByteBuffer request);
+	}
+
+
+	//the server's dispatch step, on a TFTPDispatcher that is not started
+	public static interface Router extends Closeable
+	{
+		//the transfer the server would start for this request
+		public Object route(byte[] request, InetSocketAddress from);
+	}
+
+
+	//TFTPReader
+	public static interface Reader
+	{
+		//split file into DATA blocks, returns how many
+		public int readAndSplit(String file) throws IOException;
+	}
+
+
+	//a headless server, or a TFTPHost in front of one, on an ephemeral port
+	public static interface Server extends Closeable
+	{
+		public int port();
+	}
+
+
+	//timers, each moved over and over as a transfer's is
+	public static interface Timers extends Closeable
+	{
+		//a new timer, due delay ns from now; returns its number
+		public int add(long delay);
+
+		//move timer to be due delay ns from now
+		public void reschedule(int timer, long delay);
+	}
+
+
+	//packet buffers, taken and given back
+	public static interface Buffers
+	{
+		public ByteBuffer acquire(int size);
+		public void release(ByteBuffer buffer);
+	}
+
+
+	//a headless TFTPClient
+	public static interface Client extends Closeable
+	{
+		public boolean read(String remote, String local, int blockSize, int windowSize) throws IOException;
+		public boolean write(String local, String remote, int blockSize, int windowSize) throws IOException;
+	}
+}
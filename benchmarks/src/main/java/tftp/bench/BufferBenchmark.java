@@ -0,0 +1,96 @@
+/**
+*Class:             BufferBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           What a packet's buffer costs: taken from the BufferPool
+*					and given back, against a new direct buffer (as a
+*					transfer used to get for receiving) and a new heap buffer
+*					(as ERRORs, OACKs and held back packets used to get, and
+*					which the JDK then copies into a direct buffer of its own
+*					to send). Each is filled with an ACK, as a transfer would.
+*					Run with -prof gc to see the pool allocates nothing.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.nio.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class BufferBenchmark
+{
+	@Param({"pool", "direct", "heap"})
+	public String buffers;
+
+	//a 512 and a 1428 byte block, with the header
+	@Param({"516", "1432"})
+	public int size;
+
+	private Bridge.Buffers subject;
+
+
+	@Setup
+	public void setup()
+	{
+		switch (buffers)
+		{
+			case "pool":
+				subject = Bridge.get().buffers();
+				break;
+			case "direct":
+				subject = new Allocating(true);
+				break;
+			default:
+				subject = new Allocating(false);
+		}
+	}
+
+
+	//take a buffer, put an ACK in it and give it back
+	@Benchmark
+	public int packet()
+	{
+		ByteBuffer buffer = subject.acquire(size);
+		buffer.putShort((short)4).putShort((short)1).flip();
+		int length = buffer.remaining();
+		subject.release(buffer);
+		return length;
+	}
+
+
+	//a new buffer every time, left to the garbage collector
+	private static class Allocating implements Bridge.Buffers
+	{
+		private final boolean direct;
+
+		Allocating(boolean direct)
+		{
+			this.direct = direct;
+		}
+
+		public ByteBuffer acquire(int size)
+		{
+			return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		}
+
+		public void release(ByteBuffer buffer)
+		{
+		}
+	}
+}
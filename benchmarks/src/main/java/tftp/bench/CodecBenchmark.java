@@ -0,0 +1,59 @@
+/**
+*Class:             CodecBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Request parsing: decoding a RRQ with TFTPPacket and
+*					agreeing its options with TFTPOptions, as the server does
+*					for every request before choosing a transfer.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.nio.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class CodecBenchmark
+{
+	//no options, blksize only, blksize and windowsize
+	@Param({"plain", "blksize", "window"})
+	public String request;
+
+	private Bridge.Parser parser;
+	private ByteBuffer packet;
+
+
+	@Setup
+	public void setup()
+	{
+		Bridge bridge = Bridge.get();
+		parser = bridge.parser();
+		int blockSize = request.equals("plain") ? 512 : 1428;
+		int windowSize = request.equals("window") ? 16 : 1;
+		packet = bridge.request(1, "512ByteDataTest.txt", blockSize, windowSize);
+	}
+
+
+	@Benchmark
+	public int parseRequest()
+	{
+		packet.rewind();
+		return parser.parse(packet);
+	}
+}
@@ -0,0 +1,57 @@
+/**
+*Class:             Data.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Files for the benchmarks to work on: the repo's
+*					TFTPTestCases, and generated contents of a given size
+*					(seeded, so every run reads the same bytes).
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+final class Data
+{
+	private Data()
+	{
+	}
+
+
+	//a file from TFTPTestCases/, found under -Dtftp.testCases or the working directory
+	static Path testCase(String name) throws FileNotFoundException
+	{
+		String dir = System.getProperty("tftp.testCases");
+		String[] candidates = (dir != null) ? new String[] { dir }
+				: new String[] { "TFTPTestCases", "../TFTPTestCases" };
+		for (String d : candidates)
+		{
+			Path p = Paths.get(d, name);
+			if (Files.isRegularFile(p))
+			{
+				return p;
+			}
+		}
+		throw new FileNotFoundException(name + " (run from the top of the repo or set -Dtftp.testCases)");
+	}
+
+
+	//size bytes of seeded random data
+	static byte[] random(int size)
+	{
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,73 @@
+/**
+*Class:             DispatchBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           The server's RRQ/WRQ dispatch step (TFTPDispatcher.route):
+*					classify a queued request and build the readThread or
+*					writeThread that would serve it. The transfer is not
+*					started, so this is only the work done on the dispatch
+*					thread per request.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class DispatchBenchmark
+{
+	//RRQ or WRQ, with or without blksize/windowsize
+	@Param({"rrq", "wrq", "rrq-options"})
+	public String request;
+
+	private Bridge.Router router;
+	private byte[] packet;
+	private InetSocketAddress from;
+
+
+	@Setup
+	public void setup() throws IOException
+	{
+		Bridge bridge = Bridge.get();
+		router = bridge.router();
+		int opcode = request.startsWith("rrq") ? 1 : 2;
+		boolean options = request.endsWith("options");
+		ByteBuffer buffer = bridge.request(opcode, "512ByteDataTest.txt", options ? 1428 : 512, options ? 16 : 1);
+		packet = new byte[buffer.remaining()];
+		buffer.get(packet);
+		from = new InetSocketAddress(InetAddress.getLoopbackAddress(), 40000);
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		router.close();
+	}
+
+
+	@Benchmark
+	public Object route()
+	{
+		return router.route(packet, from);
+	}
+}
@@ -0,0 +1,130 @@
+/**
+*Class:             LoopbackBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           End to end transfers over loopback: a headless server
+*					(TFTPDispatcher) on an ephemeral port and a headless
+*					TFTPClient, one whole RRQ or WRQ of an 8MB file per
+*					operation, for several block sizes and windows. The
+*					server only serves files below its working directory, so
+*					the file is generated in a temporary directory there and
+*					removed afterwards. Each download and upload is removed
+*					before the next one: the server won't overwrite a file,
+*					and on ext4 truncating and rewriting a file makes close()
+*					wait for the disk, which would swamp the transfer time.
+*
+*
+*Update Log:        v1.1.0
+*                       - WRQ
+*                   v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class LoopbackBenchmark
+{
+	private static final int FILE_SIZE = 8 << 20;
+
+	@Param({"512", "1428", "8192", "65464"})
+	public int blockSize;
+
+	@Param({"1", "16"})
+	public int windowSize;
+
+	private Bridge.Server server;
+	private Bridge.Client client;
+	private Path dir;
+	private String remote;
+	private Path local;
+	private Path download;
+	private Path upload;
+
+
+	@Setup
+	public void setup() throws IOException
+	{
+		dir = Files.createTempDirectory(Paths.get(""), "tftp-bench");
+		Path file = dir.resolve("loopback.bin");
+		Files.write(file, Data.random(FILE_SIZE));
+		remote = file.toString();
+		local = Files.createTempFile("tftp-bench", ".bin");
+		Files.write(local, Data.random(FILE_SIZE));
+		download = local.resolveSibling(local.getFileName() + ".rrq");
+		upload = dir.resolve("upload.bin");
+
+		Bridge bridge = Bridge.get();
+		server = bridge.server();
+		client = bridge.client(server.port());
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		client.close();
+		server.close();
+		Files.deleteIfExists(local);
+		Files.deleteIfExists(dir.resolve("loopback.bin"));
+		reset();
+		Files.deleteIfExists(dir);
+	}
+
+
+	//RRQ: the server sends the file, the client writes it to download
+	@Benchmark
+	public boolean read() throws IOException
+	{
+		if (!client.read(remote, download.toString(), blockSize, windowSize))
+		{
+			throw new IllegalStateException("read of " + remote + " failed");
+		}
+		return true;
+	}
+
+
+	/* remove the last download and upload
+	 * the upload is renamed into place by the server's writer thread just
+	 * after its final ACK, so wait for that first
+	 */
+	@Setup(Level.Invocation)
+	public void reset() throws IOException
+	{
+		Files.deleteIfExists(download);
+		for (int i = 0; i < 500 && Files.exists(upload.resolveSibling("upload.bin.part")); i++)
+		{
+			LockSupport.parkNanos(1000000L);
+		}
+		Files.deleteIfExists(upload);
+	}
+
+
+	//WRQ: the client sends local, the server writes it to upload
+	@Benchmark
+	public boolean write() throws IOException
+	{
+		if (!client.write(local.toString(), upload.toString(), blockSize, windowSize))
+		{
+			throw new IllegalStateException("write of " + upload + " failed");
+		}
+		return true;
+	}
+}
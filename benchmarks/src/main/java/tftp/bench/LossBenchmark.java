@@ -0,0 +1,128 @@
+/**
+*Class:             LossBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           How transfers degrade with packet loss: the same loopback
+*					RRQ/WRQ as LoopbackBenchmark, but through a TFTPHost that
+*					drops DATA and ACK packets with probability loss. The
+*					host's random numbers are seeded, so every run loses the
+*					same packets. Time per operation is the completion time
+*					of one 1MB transfer; throughput is 1MB divided by it.
+*					Used to check timeout and window settings before they
+*					are changed, e.g. with -jvmArgsAppend -Dtftp.minRto=50.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 4)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=ERROR")
+public class LossBenchmark
+{
+	private static final int FILE_SIZE = 1 << 20;
+	private static final long SEED = 3303;
+
+	@Param({"0", "0.01", "0.05", "0.1"})
+	public double loss;
+
+	@Param({"512", "1428"})
+	public int blockSize;
+
+	@Param({"1", "8"})
+	public int windowSize;
+
+	private Bridge.Server server;
+	private Bridge.Server host;
+	private Bridge.Client client;
+	private Path dir;
+	private String remote;
+	private Path local;
+	private Path download;
+	private Path upload;
+
+
+	@Setup
+	public void setup() throws IOException
+	{
+		dir = Files.createTempDirectory(Paths.get(""), "tftp-bench");
+		Path file = dir.resolve("loss.bin");
+		Files.write(file, Data.random(FILE_SIZE));
+		remote = file.toString();
+		local = Files.createTempFile("tftp-bench", ".bin");
+		Files.write(local, Data.random(FILE_SIZE));
+		download = local.resolveSibling(local.getFileName() + ".rrq");
+		upload = dir.resolve("upload.bin");
+
+		Bridge bridge = Bridge.get();
+		server = bridge.server();
+		host = bridge.host(server.port(), "drop p=" + loss + " op=DATA,ACK", SEED);
+		client = bridge.client(host.port());
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		client.close();
+		host.close();
+		server.close();
+		Files.deleteIfExists(local);
+		Files.deleteIfExists(dir.resolve("loss.bin"));
+		reset();
+		Files.deleteIfExists(dir);
+	}
+
+
+	//remove the last download and upload, as in LoopbackBenchmark
+	@Setup(Level.Invocation)
+	public void reset() throws IOException
+	{
+		Files.deleteIfExists(download);
+		for (int i = 0; i < 500 && Files.exists(upload.resolveSibling("upload.bin.part")); i++)
+		{
+			LockSupport.parkNanos(1000000L);
+		}
+		Files.deleteIfExists(upload);
+	}
+
+
+	@Benchmark
+	public boolean read() throws IOException
+	{
+		if (!client.read(remote, download.toString(), blockSize, windowSize))
+		{
+			throw new IllegalStateException("read of " + remote + " failed");
+		}
+		return true;
+	}
+
+
+	@Benchmark
+	public boolean write() throws IOException
+	{
+		if (!client.write(local.toString(), upload.toString(), blockSize, windowSize))
+		{
+			throw new IllegalStateException("write of " + upload + " failed");
+		}
+		return true;
+	}
+}
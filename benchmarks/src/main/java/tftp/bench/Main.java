@@ -0,0 +1,41 @@
+/**
+*Class:             Main.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Entry point of benchmarks.jar. Runs JMH with whatever
+*					options are given, but writes results as JSON to
+*					jmh-result.json unless -rf or -rff say otherwise, so runs
+*					can be kept and compared to catch regressions.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.util.*;
+
+
+public class Main
+{
+	public static void main(String[] args) throws Exception
+	{
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-rf"))
+		{
+			options.add(0, "-rf");
+			options.add(1, "json");
+		}
+		if (!options.contains("-rff"))
+		{
+			options.add(0, "-rff");
+			options.add(1, "jmh-result.json");
+		}
+		org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+	}
+}
@@ -0,0 +1,78 @@
+/**
+*Class:             ReaderBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           TFTPReader.readAndSplit on the files in TFTPTestCases/
+*					and on generated files of 1MB and 64MB. The test cases are
+*					looked for in the working directory (or -Dtftp.testCases),
+*					so run the jar from the top of the repo.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class ReaderBenchmark
+{
+	//a file in TFTPTestCases/, or gen:<bytes> for a generated one
+	@Param({"1ByteDataTest.txt", "305ByteDataTest.txt", "511ByteDataTest.txt",
+			"512ByteDataTest.txt", "513ByteDataTest.txt", "gen:1048576", "gen:67108864"})
+	public String file;
+
+	private Bridge.Reader reader;
+	private String path;
+	private Path generated;
+
+
+	@Setup
+	public void setup() throws IOException
+	{
+		reader = Bridge.get().reader();
+		if (file.startsWith("gen:"))
+		{
+			generated = Files.createTempFile("tftp-bench", ".bin");
+			Files.write(generated, Data.random(Integer.parseInt(file.substring(4))));
+			path = generated.toString();
+		}
+		else
+		{
+			path = Data.testCase(file).toString();
+		}
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		if (generated != null)
+		{
+			Files.deleteIfExists(generated);
+		}
+	}
+
+
+	@Benchmark
+	public int readAndSplit() throws IOException
+	{
+		return reader.readAndSplit(path);
+	}
+}
@@ -0,0 +1,114 @@
+/**
+*Class:             TimerBenchmark.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           What it costs to move a transfer's timer, as the server
+*					does after every ACK, with pending timers already waiting:
+*					on the TimerWheel a TransferLoop keeps, against a JDK
+*					ScheduledThreadPoolExecutor cancelling the old task and
+*					scheduling a new one. The executor removes a task as it
+*					is cancelled, as a server with timers for thousands of
+*					transfers would have to. Timers are due 10-60s out, so
+*					none expire while it runs.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+package tftp.bench;
+
+
+//imports
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtftp.logLevel=WARN")
+public class TimerBenchmark
+{
+	private static final long MIN_DELAY = TimeUnit.SECONDS.toNanos(10);
+	private static final long MAX_DELAY = TimeUnit.SECONDS.toNanos(60);
+
+	@Param({"wheel", "executor"})
+	public String timers;
+
+	@Param({"1000", "100000"})
+	public int pending;
+
+	private Bridge.Timers subject;
+	private long[] delays;
+	private int next;
+
+
+	@Setup
+	public void setup()
+	{
+		subject = timers.equals("wheel") ? Bridge.get().wheel() : new Executor();
+		SplittableRandom random = new SplittableRandom(3303);
+		delays = new long[pending];
+		for (int i = 0; i < pending; i++)
+		{
+			delays[i] = random.nextLong(MIN_DELAY, MAX_DELAY);
+			subject.add(delays[i]);
+		}
+	}
+
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		subject.close();
+	}
+
+
+	//move the next timer round, each by its own delay
+	@Benchmark
+	public void reschedule()
+	{
+		int timer = next;
+		next = (timer + 1 == pending) ? 0 : timer + 1;
+		subject.reschedule(timer, delays[timer]);
+	}
+
+
+	//the same timers on a ScheduledThreadPoolExecutor
+	private static class Executor implements Bridge.Timers
+	{
+		private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		private final List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+		private final Runnable expired = () -> {};
+
+		Executor()
+		{
+			executor.setRemoveOnCancelPolicy(true);
+		}
+
+		public int add(long delay)
+		{
+			futures.add(executor.schedule(expired, delay, TimeUnit.NANOSECONDS));
+			return futures.size() - 1;
+		}
+
+		public void reschedule(int timer, long delay)
+		{
+			futures.get(timer).cancel(false);
+			futures.set(timer, executor.schedule(expired, delay, TimeUnit.NANOSECONDS));
+		}
+
+		public void close()
+		{
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,553 @@
+/**
+*Class:             BlockCache.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.0
+*
+*Purpose:           Process-wide cache of file blocks shared by every read
+*					transfer, so when hundreds of clients ask for the same
+*					few files at once the disk is read once per block rather
+*					than once per client. Blocks are keyed by (file, modified
+*					time, size, block size, block #) and held within a global
+*					byte budget (-Dtftp.cacheBytes, default 64MB), split over
+*					segments that each evict least recently used blocks. A
+*					file that changes on disk gets new keys, and the blocks of
+*					its old version are dropped the first time the change is
+*					seen. TFTPReader remains the loader for blocks not cached.
+*
+*					Only what is shared is cached: a file's blocks are kept
+*					once a second transfer has opened it, so a file read by
+*					one client costs no more than reading it straight, and
+*					files over -Dtftp.cacheMaxFile (a quarter of the budget)
+*					aren't cached at all, so one large download can't flush
+*					everything else (BlockSource sends them straight).
+*
+*					A file is looked at when it is opened, and again, while
+*					its blocks are being cached, on a miss at most every
+*					-Dtftp.cacheCheck ms (1000) and when the transfer ends.
+*					A source that sees its file has changed caches nothing
+*					more, and the blocks it cached are dropped.
+*
+*					A hit is copied into a buffer the source keeps for the
+*					purpose, so serving one allocates nothing.
+*
+*
+*Update Log:        v1.1.0
+*                       - only shared files are cached, up to cacheMaxFile
+*                       - a file's version is checked every cacheCheck ms
+*                         rather than after every block loaded
+*                       - hits copied into the source's own buffer
+*                       - versions of files no longer open are let go
+*                   v1.0.1
+*                       - blocks loaded after the file changed aren't cached
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class BlockCache
+{
+	//declaring local class constants
+	private static final int SEGMENTS = 16;
+	public static final long DEFAULT_BUDGET = Long.getLong("tftp.cacheBytes", 64L << 20);
+	public static final long DEFAULT_MAX_FILE = Long.getLong("tftp.cacheMaxFile", DEFAULT_BUDGET / 4);
+	public static final long CHECK_INTERVAL = Long.getLong("tftp.cacheCheck", 1000);
+
+	//files whose version is kept before those no longer open are let go
+	private static final int MAX_FILES = 4096;
+
+	//the cache every read transfer shares
+	private static final BlockCache SHARED = new BlockCache(DEFAULT_BUDGET, DEFAULT_MAX_FILE);
+
+	private static final BufferPool buffers = BufferPool.shared();
+
+	//declaring local instance variables
+	private final long budget;
+	private final long maxFile;
+	private final Segment[] segments;
+	private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<String, Version>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+
+	//generic constructor
+	public BlockCache(long budget, long maxFile)
+	{
+		this.budget = budget;
+		this.maxFile = maxFile;
+		segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++)
+		{
+			segments[i] = new Segment(budget / SEGMENTS);
+		}
+	}
+
+
+	public static BlockCache shared()
+	{
+		return SHARED;
+	}
+
+
+	//generic accessors
+	public long getBudget()
+	{
+		return budget;
+	}
+	public long getMaxFile()
+	{
+		return maxFile;
+	}
+	public long getHits()
+	{
+		return hits.sum();
+	}
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+	public long getInvalidations()
+	{
+		return invalidations.sum();
+	}
+	public long getBytes()
+	{
+		long total = 0;
+		for (Segment s : segments)
+		{
+			total += s.bytes();
+		}
+		return total;
+	}
+
+
+	public String toString()
+	{
+		return "BlockCache[" + getBytes() + "/" + budget + "B, hits=" + getHits()
+				+ ", misses=" + getMisses() + ", evictions=" + getEvictions()
+				+ ", invalidations=" + getInvalidations() + "]";
+	}
+
+
+	//whether a file of size bytes would be cached
+	public boolean caches(long size)
+	{
+		return budget > 0 && size <= maxFile;
+	}
+
+
+	/* open file as a BlockSource that goes through this cache
+	 * the file itself is only opened if a block is missing
+	 */
+	public BlockSource open(String file, int blockSize)
+	throws FileNotFoundException, IOException
+	{
+		Path path = Paths.get(file).toAbsolutePath().normalize();
+		Version seen = current(path);
+		if (seen == null)
+		{
+			throw new FileNotFoundException(file);
+		}
+		Version version = record(path.toString(), seen);
+		version.opens.incrementAndGet();
+		version.live.incrementAndGet();
+		if (versions.size() > MAX_FILES)
+		{
+			prune();
+		}
+		return new CachedSource(file, path, version, blockSize);
+	}
+
+
+	//drop every cached block of a file
+	public void invalidate(String name)
+	{
+		invalidations.increment();
+		for (Segment s : segments)
+		{
+			s.removeFile(name);
+		}
+	}
+
+
+	//drop everything
+	public void clear()
+	{
+		versions.clear();
+		for (Segment s : segments)
+		{
+			s.clear();
+		}
+	}
+
+
+	/* the file's version as recorded, seen if that is new to it; first
+	 * sight of a new version drops the old one's blocks
+	 */
+	private Version record(String name, Version seen)
+	{
+		for (;;)
+		{
+			Version previous = versions.putIfAbsent(name, seen);
+			if (previous == null)
+			{
+				return seen;
+			}
+			if (previous.equals(seen))
+			{
+				return previous;
+			}
+			if (versions.replace(name, previous, seen))
+			{
+				invalidate(name);
+				return seen;
+			}
+		}
+	}
+
+
+	/* let go of the versions of files no transfer has open; their blocks
+	 * stay cached under their keys, but are only dropped early by a
+	 * change to the file if it's opened again first
+	 */
+	private void prune()
+	{
+		for (Map.Entry<String, Version> e : versions.entrySet())
+		{
+			if (e.getValue().live.get() == 0)
+			{
+				versions.remove(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+
+	//the file's version now, null if it's gone
+	private static Version current(Path path) throws IOException
+	{
+		try
+		{
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			return new Version(attrs.lastModifiedTime().toMillis(), attrs.size());
+		}
+		catch (NoSuchFileException e)
+		{
+			return null;
+		}
+	}
+
+
+	private Segment segmentFor(Key key)
+	{
+		return segments[(key.hashCode() & 0x7FFFFFFF) % SEGMENTS];
+	}
+
+
+	//one independently locked LRU share of the budget
+	private class Segment
+	{
+		private final long budget;
+		private long bytes;
+		private final LinkedHashMap<Key, byte[]> blocks = new LinkedHashMap<Key, byte[]>(64, 0.75f, true);
+
+		Segment(long budget)
+		{
+			this.budget = budget;
+		}
+
+		synchronized long bytes()
+		{
+			return bytes;
+		}
+
+		//copy the block into dst (cleared, then flipped), false if it isn't here
+		synchronized boolean copy(Key key, ByteBuffer dst)
+		{
+			byte[] block = blocks.get(key);
+			if (block == null)
+			{
+				return false;
+			}
+			dst.clear();
+			dst.put(block);
+			dst.flip();
+			return true;
+		}
+
+		synchronized void put(Key key, byte[] block)
+		{
+			if (block.length > budget)
+			{
+				return;
+			}
+			byte[] old = blocks.put(key, block);
+			bytes += block.length - (old == null ? 0 : old.length);
+
+			//evict least recently used until back under budget
+			Iterator<byte[]> it = blocks.values().iterator();
+			while (bytes > budget && it.hasNext())
+			{
+				bytes -= it.next().length;
+				it.remove();
+				evictions.increment();
+			}
+		}
+
+		synchronized void removeFile(String name)
+		{
+			Iterator<Map.Entry<Key, byte[]>> it = blocks.entrySet().iterator();
+			while (it.hasNext())
+			{
+				Map.Entry<Key, byte[]> e = it.next();
+				if (e.getKey().file.equals(name))
+				{
+					bytes -= e.getValue().length;
+					it.remove();
+				}
+			}
+		}
+
+		synchronized void clear()
+		{
+			blocks.clear();
+			bytes = 0;
+		}
+	}
+
+
+	/* a file's identity on disk; a change to either field is a new file
+	 * also counts the transfers that have opened it, and have it open
+	 */
+	private static class Version
+	{
+		final long modified;
+		final long size;
+		final AtomicInteger opens = new AtomicInteger();
+		final AtomicInteger live = new AtomicInteger();
+
+		Version(long modified, long size)
+		{
+			this.modified = modified;
+			this.size = size;
+		}
+
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Version))
+			{
+				return false;
+			}
+			Version v = (Version)o;
+			return v.modified == modified && v.size == size;
+		}
+
+		public int hashCode()
+		{
+			return (int)(modified ^ (modified >>> 32) ^ size);
+		}
+	}
+
+
+	//(file, modified time, size, block size, block #)
+	private static class Key
+	{
+		String file;
+		long modified;
+		long size;
+		int blockSize;
+		int block;
+		int hash;
+
+		Key set(String file, Version version, int blockSize, int block)
+		{
+			this.file = file;
+			this.modified = version.modified;
+			this.size = version.size;
+			this.blockSize = blockSize;
+			this.block = block;
+			int h = file.hashCode();
+			h = 31 * h + (int)(modified ^ (modified >>> 32));
+			h = 31 * h + (int)(size ^ (size >>> 32));
+			h = 31 * h + blockSize;
+			h = 31 * h + block;
+			this.hash = h;
+			return this;
+		}
+
+		Key copy()
+		{
+			Key k = new Key();
+			k.file = file;
+			k.modified = modified;
+			k.size = size;
+			k.blockSize = blockSize;
+			k.block = block;
+			k.hash = hash;
+			return k;
+		}
+
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key k = (Key)o;
+			return k.hash == hash && k.block == block && k.blockSize == blockSize
+					&& k.modified == modified && k.size == size && k.file.equals(file);
+		}
+
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+
+	//BlockSource over the cache, loading misses through TFTPReader
+	private class CachedSource implements BlockSource
+	{
+		private final String file;
+		private final Path path;
+		private final String name;
+		private final Version version;
+		private final int blockSize;
+		private final Key probe = new Key();	//reused for lookups
+		private TFTPReader loader;				//opened on first miss
+		private ByteBuffer hit;					//hits are copied here, from the BufferPool
+		private long checkedAt = System.nanoTime();
+		private boolean cachedSinceCheck;
+		private boolean stale;					//the file has changed since open
+
+		CachedSource(String file, Path path, Version version, int blockSize)
+		{
+			this.file = file;
+			this.path = path;
+			this.name = path.toString();
+			this.version = version;
+			this.blockSize = blockSize;
+		}
+
+		public long size()
+		{
+			return version.size;
+		}
+
+		public int blockSize()
+		{
+			return blockSize;
+		}
+
+		public int blockCount()
+		{
+			return (int)(version.size / blockSize) + 1;
+		}
+
+		public ByteBuffer block(int n) throws IOException
+		{
+			probe.set(name, version, blockSize, n);
+			Segment segment = segmentFor(probe);
+			if (!stale)
+			{
+				if (hit == null)
+				{
+					hit = buffers.acquire(blockSize);
+				}
+				if (segment.copy(probe, hit))
+				{
+					hits.increment();
+					return hit;
+				}
+			}
+
+			misses.increment();
+			if (loader == null)
+			{
+				loader = new TFTPReader(file, blockSize);
+			}
+			ByteBuffer block = loader.block(n);
+
+			//keep it only once another transfer has wanted the file too
+			if (!stale && version.opens.get() > 1 && fresh())
+			{
+				byte[] copy = new byte[block.remaining()];
+				block.get(block.position(), copy);
+				segment.put(probe.copy(), copy);
+				cachedSinceCheck = true;
+			}
+			return block;
+		}
+
+		//whether the file is still this version, looked at every CHECK_INTERVAL
+		private boolean fresh() throws IOException
+		{
+			long now = System.nanoTime();
+			if (now - checkedAt < TimeUnit.MILLISECONDS.toNanos(CHECK_INTERVAL))
+			{
+				return true;
+			}
+			checkedAt = now;
+			return check();
+		}
+
+		/* look at the file; if it has changed, cache nothing more and drop
+		 * what was cached, some of which may have been read since it did
+		 */
+		private boolean check() throws IOException
+		{
+			cachedSinceCheck = false;
+			Version now = current(path);
+			if (version.equals(now))
+			{
+				return true;
+			}
+			stale = true;
+			//recording the new version drops the blocks, unless another
+			//source has already recorded it
+			if (now == null || record(name, now) != now)
+			{
+				invalidate(name);
+			}
+			return false;
+		}
+
+		public void close() throws IOException
+		{
+			version.live.decrementAndGet();
+			buffers.release(hit);
+			hit = null;
+			try
+			{
+				if (cachedSinceCheck && !stale)
+				{
+					check();
+				}
+			}
+			finally
+			{
+				if (loader != null)
+				{
+					loader.close();
+				}
+			}
+		}
+	}
+}
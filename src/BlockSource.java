@@ -0,0 +1,92 @@
+/**
+*Class:             BlockSource.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.3.1
+*
+*Purpose:           A file seen as a sequence of TFTP DATA blocks, read on
+*					demand. Block n (1-based) holds bytes (n-1)*blockSize up to
+*					n*blockSize. The final block is always shorter than
+*					blockSize, and is empty when the file size is an exact
+*					multiple of it, so the receiver can tell the transfer is
+*					over.
+*
+*					open() picks the implementation: the shared BlockCache
+*					(loading through TFTPReader) for files small enough for
+*					it to cache, a memory mapping through MappedBlockSource
+*					for files of at least MMAP_THRESHOLD bytes
+*					(-Dtftp.mmapThreshold, default 64MB), and TFTPReader on
+*					its own for those in between.
+*					A file sent as netascii is encoded block by block over one
+*					of these by Netascii.Source.
+*
+*
+*Update Log:        v1.3.1
+*                       - files too large for the BlockCache are read straight
+*                   v1.3.0
+*                       - blockCount() may be UNKNOWN (Netascii.Source)
+*                   v1.2.0
+*                       - ordinary files go through the shared BlockCache
+*                   v1.1.0
+*                       - added open() with the mmap size threshold
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+
+
+public interface BlockSource extends Closeable
+{
+	//files this large or larger are served from a memory mapping
+	public static final long MMAP_THRESHOLD = Long.getLong("tftp.mmapThreshold", 64L << 20);
+
+	//blockCount() of a source that only knows once it has read the last block
+	public static final int UNKNOWN = -1;
+
+
+	//open file with whichever implementation suits its size
+	public static BlockSource open(String file, int blockSize)
+	throws FileNotFoundException, IOException
+	{
+		File f = new File(file);
+		if (!f.isFile())
+		{
+			throw new FileNotFoundException(file);
+		}
+		if (f.length() >= MMAP_THRESHOLD)
+		{
+			return new MappedBlockSource(file, blockSize);
+		}
+		if (BlockCache.shared().caches(f.length()))
+		{
+			return BlockCache.shared().open(file, blockSize);
+		}
+		return new TFTPReader(file, blockSize);
+	}
+
+
+	//size of the file in bytes
+	public long size();
+
+
+	//size of every block except the last
+	public int blockSize();
+
+
+	/* number of DATA blocks needed to send the file, including a final
+	 * empty one, or UNKNOWN until block() has returned the last (short) one
+	 */
+	public int blockCount();
+
+
+	/* contents of block n (1 to blockCount()), between position and limit
+	 * the buffer may be reused by the next call, so send it before asking
+	 * for another block
+	 */
+	public ByteBuffer block(int n) throws IOException;
+}
@@ -0,0 +1,356 @@
+/**
+*Class:             BufferPool.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Direct ByteBuffers for datagram I/O, used over and over
+*					instead of allocated per transfer or per packet. A
+*					DatagramChannel sends and receives straight from a direct
+*					buffer; given a heap one the JDK copies through a direct
+*					buffer of its own on every call.
+*
+*					Buffers come in size classes, one for each blksize
+*					clients commonly ask for plus the 4 byte header, up to
+*					the largest TFTP packet; a request is given the smallest
+*					class it fits in. Anything bigger is allocated outside
+*					the pool and left to the garbage collector on release.
+*
+*					Each thread keeps the last -Dtftp.poolCache (8) buffers of
+*					each class it released, and takes from them first, so a
+*					pool thread or event loop starting transfer after
+*					transfer touches nothing shared. Beyond that buffers go
+*					to a shared free list per class, the lists holding at
+*					most -Dtftp.poolBytes (32MB) between them; a buffer
+*					released with its list full is dropped. Virtual threads
+*					come and go with their transfers, so they skip the
+*					thread cache and use the shared lists directly.
+*
+*					With -Dtftp.poolDebug every buffer out of the pool is
+*					tracked with where it was acquired: releasing one twice,
+*					or one the pool never gave out, is logged and ignored,
+*					and reportLeaks() logs every buffer still out (the
+*					server does so once it has shut down).
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class BufferPool
+{
+	//declaring local class constants
+	public static final long POOL_BYTES = Long.getLong("tftp.poolBytes", 32L << 20);
+	public static final int CACHE_SIZE = Integer.getInteger("tftp.poolCache", 8);
+	public static final boolean DEBUG = Boolean.getBoolean("tftp.poolDebug");
+
+	//blksize values the classes are for: 1468 and 1448 fill an ethernet
+	//frame over IPv4 and IPv6, 1428 leaves room for a tunnel
+	private static final int[] BLOCK_SIZES = { 512, 1024, 1428, 1448, 1468, 2048, 4096, 8192,
+			16384, 32768, TFTPOptions.MAX_BLKSIZE };
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//the pool the server, client and host share, made on first use
+	private static BufferPool shared;
+
+	//declaring local instance variables
+	private final SizeClass[] classes;
+	private final int cacheSize;
+	private final ThreadLocal<Cache> caches;
+	private final Map<ByteBuffer, Throwable> out;		//debug only: buffers out, by identity
+
+	//usage counters, readable from any thread
+	private final LongAdder acquired = new LongAdder();
+	private final LongAdder released = new LongAdder();
+	private final LongAdder allocated = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder sharedHits = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+
+	/* a pool of buffers of the given sizes (smallest first), up to
+	 * poolBytes of them on the shared lists and cacheSize of each size
+	 * per thread; debug tracks every buffer out of the pool
+	 */
+	public BufferPool(int[] sizes, long poolBytes, int cacheSize, boolean debug)
+	{
+		if (sizes.length == 0 || cacheSize < 0)
+		{
+			throw new IllegalArgumentException("need at least one size and cacheSize >= 0");
+		}
+		classes = new SizeClass[sizes.length];
+		for (int i = 0; i < sizes.length; i++)
+		{
+			if (sizes[i] < 1 || (i > 0 && sizes[i] <= sizes[i - 1]))
+			{
+				throw new IllegalArgumentException("sizes must be >= 1 and increasing");
+			}
+			//an equal share of poolBytes each
+			long share = poolBytes / sizes.length / sizes[i];
+			classes[i] = new SizeClass(sizes[i], (int)Math.max(1, Math.min(share, 1 << 16)));
+		}
+		this.cacheSize = cacheSize;
+		final Cache none = new Cache(0, 0);
+		caches = ThreadLocal.withInitial(() -> (cacheSize == 0 || isVirtual(Thread.currentThread()))
+				? none : new Cache(classes.length, cacheSize));
+		out = debug ? new IdentityHashMap<ByteBuffer, Throwable>() : null;
+	}
+
+
+	public static synchronized BufferPool shared()
+	{
+		if (shared == null)
+		{
+			int[] sizes = new int[BLOCK_SIZES.length];
+			for (int i = 0; i < sizes.length; i++)
+			{
+				sizes[i] = BLOCK_SIZES[i] + TFTPPacket.HEADER_SIZE;
+			}
+			shared = new BufferPool(sizes, POOL_BYTES, CACHE_SIZE, DEBUG);
+		}
+		return shared;
+	}
+
+
+	//generic accessors
+	public long getAcquired()
+	{
+		return acquired.sum();
+	}
+	public long getReleased()
+	{
+		return released.sum();
+	}
+	//buffers acquired and not yet released
+	public long getOutstanding()
+	{
+		return acquired.sum() - released.sum();
+	}
+	//buffers the pool had to allocate, in the pool's classes or not
+	public long getAllocated()
+	{
+		return allocated.sum();
+	}
+	public long getCacheHits()
+	{
+		return cacheHits.sum();
+	}
+	public long getSharedHits()
+	{
+		return sharedHits.sum();
+	}
+	//buffers released and not kept: too big, or their list was full
+	public long getDropped()
+	{
+		return dropped.sum();
+	}
+	//bytes waiting on the shared lists
+	public long getPooledBytes()
+	{
+		long bytes = 0;
+		for (SizeClass c : classes)
+		{
+			bytes += (long)c.free.size() * c.size;
+		}
+		return bytes;
+	}
+
+
+	/* a direct buffer with room for size bytes, position 0 and limit
+	 * size; its capacity may be more (clear() opens it all up)
+	 * must be given back with release() once nothing refers to it
+	 */
+	public ByteBuffer acquire(int size)
+	{
+		acquired.increment();
+		int c = classFor(size);
+		ByteBuffer buffer = (c < 0) ? null : take(c);
+		if (buffer == null)
+		{
+			allocated.increment();
+			buffer = ByteBuffer.allocateDirect(c < 0 ? size : classes[c].size);
+		}
+		buffer.clear().limit(size);
+		if (out != null)
+		{
+			synchronized (out)
+			{
+				out.put(buffer, new Throwable("acquired by " + Thread.currentThread().getName()));
+			}
+		}
+		return buffer;
+	}
+
+
+	/* give a buffer from acquire() back; null is ignored
+	 * it may be handed out again at once, so it must not be used after
+	 */
+	public void release(ByteBuffer buffer)
+	{
+		if (buffer == null)
+		{
+			return;
+		}
+		if (out != null)
+		{
+			Throwable acquirer;
+			synchronized (out)
+			{
+				acquirer = out.remove(buffer);
+			}
+			if (acquirer == null)
+			{
+				log.message(TFTPLog.Level.WARN, "BufferPool", "buffer of " + buffer.capacity()
+						+ " bytes released twice or not from this pool, at\n" + trace(new Throwable()));
+				return;
+			}
+		}
+		released.increment();
+		int c = buffer.isDirect() ? classOf(buffer.capacity()) : -1;
+		if (c < 0 || !put(c, buffer))
+		{
+			dropped.increment();
+		}
+	}
+
+
+	/* log every buffer acquired and not yet released, with where it was
+	 * acquired, and return how many there are
+	 * only known with -Dtftp.poolDebug; 0 otherwise
+	 */
+	public int reportLeaks()
+	{
+		if (out == null)
+		{
+			return 0;
+		}
+		Map<ByteBuffer, Throwable> leaked;
+		synchronized (out)
+		{
+			leaked = new IdentityHashMap<ByteBuffer, Throwable>(out);
+		}
+		for (Map.Entry<ByteBuffer, Throwable> e : leaked.entrySet())
+		{
+			log.message(TFTPLog.Level.WARN, "BufferPool", "buffer of " + e.getKey().capacity()
+					+ " bytes never released, " + trace(e.getValue()));
+		}
+		return leaked.size();
+	}
+
+
+	//a free buffer of class c, from this thread's cache first; null if none
+	private ByteBuffer take(int c)
+	{
+		Cache cache = caches.get();
+		if (cache.counts.length > 0 && cache.counts[c] > 0)
+		{
+			int n = --cache.counts[c];
+			ByteBuffer buffer = cache.buffers[c][n];
+			cache.buffers[c][n] = null;
+			cacheHits.increment();
+			return buffer;
+		}
+		ByteBuffer buffer = classes[c].free.poll();
+		if (buffer != null)
+		{
+			sharedHits.increment();
+		}
+		return buffer;
+	}
+
+
+	//keep a free buffer of class c, false if there's no room for it
+	private boolean put(int c, ByteBuffer buffer)
+	{
+		Cache cache = caches.get();
+		if (cache.counts.length > 0 && cache.counts[c] < cacheSize)
+		{
+			cache.buffers[c][cache.counts[c]++] = buffer;
+			return true;
+		}
+		return classes[c].free.offer(buffer);
+	}
+
+
+	//smallest class size fits in, -1 if none
+	private int classFor(int size)
+	{
+		for (int i = 0; i < classes.length; i++)
+		{
+			if (size <= classes[i].size)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	//class of exactly capacity bytes, -1 if none
+	private int classOf(int capacity)
+	{
+		int c = classFor(capacity);
+		return (c >= 0 && classes[c].size == capacity) ? c : -1;
+	}
+
+
+	private static String trace(Throwable t)
+	{
+		StringWriter text = new StringWriter();
+		t.printStackTrace(new PrintWriter(text));
+		return text.toString();
+	}
+
+
+	//Thread.isVirtual() only exists on newer JVMs, look it up at runtime
+	private static boolean isVirtual(Thread t)
+	{
+		try
+		{
+			return (Boolean)Thread.class.getMethod("isVirtual").invoke(t);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return false;
+		}
+	}
+
+
+	//the buffers of one size
+	private static class SizeClass
+	{
+		private final int size;
+		private final BlockingQueue<ByteBuffer> free;
+
+		SizeClass(int size, int limit)
+		{
+			this.size = size;
+			free = new ArrayBlockingQueue<ByteBuffer>(limit);
+		}
+	}
+
+
+	//one thread's free buffers, a stack per class
+	private static class Cache
+	{
+		private final ByteBuffer[][] buffers;
+		private final int[] counts;
+
+		Cache(int classCount, int cacheSize)
+		{
+			buffers = new ByteBuffer[classCount][cacheSize];
+			counts = new int[classCount];
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/**
+*Class:             Impairment.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.1
+*
+*Purpose:           The network TFTPHost pretends to be. A list of rules, each
+*					an action applied to the packets it matches with some
+*					probability; every packet the host forwards is run through
+*					them in order. Actions:
+*					  drop       the packet is lost
+*					  delay      held back ms (+/- jitter) before it is sent
+*					  duplicate  sent twice
+*					  reorder    held back until the next packet the same way
+*					             has gone (or ms, default 50, have passed)
+*					  truncate   cut to bytes bytes
+*					  corrupt    bytes random bytes changed (default 1)
+*					  rate       sent at no more than bytes per second,
+*					             queueing up to queue ms (default 100) and
+*					             dropping what doesn't fit, like a slow link
+*
+*					Rules are written one per line (or separated by ';') as
+*					the action followed by key=value settings, e.g.
+*					  drop p=0.05 op=DATA,ACK
+*					  delay ms=20 jitter=5
+*					  corrupt p=0.001 dir=client
+*					  rate bytes=1000000
+*					and match on:
+*					  op=      opcodes (RRQ,WRQ,DATA,ACK,ERROR,OACK)
+*					  block=   DATA/ACK block number, or a range 1-10
+*					  session= the host's n-th session, or a range
+*					  dir=     server (packets going to the server) or client
+*					  p=       probability, default 1
+*
+*					The random numbers come from a seeded generator, one per
+*					session and direction, so the same seed and the same
+*					traffic give the same losses however sessions interleave.
+*					TFTPHost reads the rules from -Dtftp.impair (a file with
+*					-Dtftp.impairFile) and the seed from -Dtftp.impairSeed.
+*
+*
+*Update Log:        v1.0.1
+*                       - a DATA/ACK too short for a block number matches
+*                         no block= rule
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class Impairment
+{
+	//what a rule does to the packets it matches
+	public static enum Action { DROP, DELAY, DUPLICATE, REORDER, TRUNCATE, CORRUPT, RATE };
+
+	//declaring local class constants
+	private static final String[] OPCODES = { null, "RRQ", "WRQ", "DATA", "ACK", "ERROR", "OACK" };
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	//declaring local instance variables
+	private final List<Rule> rules;
+	private final long seed;
+
+
+	//generic constructor
+	public Impairment(List<Rule> rules, long seed)
+	{
+		this.rules = new ArrayList<Rule>(rules);
+		this.seed = seed;
+	}
+
+
+	//rules from -Dtftp.impair or -Dtftp.impairFile, seeded by -Dtftp.impairSeed
+	public static Impairment fromProperties() throws IOException
+	{
+		String spec = System.getProperty("tftp.impair", "");
+		String file = System.getProperty("tftp.impairFile");
+		if (file != null)
+		{
+			spec = new String(Files.readAllBytes(Paths.get(file)), "UTF-8") + "\n" + spec;
+		}
+		return parse(spec, Long.getLong("tftp.impairSeed", 1));
+	}
+
+
+	/* rules separated by newlines or ';', '#' to the end of a line is a
+	 * comment; throws IllegalArgumentException naming the bad rule
+	 */
+	public static Impairment parse(String spec, long seed)
+	{
+		List<Rule> rules = new ArrayList<Rule>();
+		for (String line : spec.split("[\\n;]"))
+		{
+			int hash = line.indexOf('#');
+			if (hash >= 0)
+			{
+				line = line.substring(0, hash);
+			}
+			line = line.trim();
+			if (!line.isEmpty())
+			{
+				rules.add(Rule.parse(line));
+			}
+		}
+		return new Impairment(rules, seed);
+	}
+
+
+	//generic accessors
+	public boolean isEmpty()
+	{
+		return rules.isEmpty();
+	}
+	public List<Rule> getRules()
+	{
+		return Collections.unmodifiableList(rules);
+	}
+	public long getSeed()
+	{
+		return seed;
+	}
+
+
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		for (Rule r : rules)
+		{
+			out.append(out.length() == 0 ? "" : "; ").append(r);
+		}
+		return out.length() == 0 ? "none" : out.toString();
+	}
+
+
+	//the random numbers for one direction of one session
+	public Stream stream(int session, boolean toServer)
+	{
+		return new Stream(session, toServer,
+				new SplittableRandom(seed ^ (session * GOLDEN) ^ (toServer ? 0 : GOLDEN >>> 1)));
+	}
+
+
+	/* run the packet in buffer (position to limit) through the rules
+	 * truncate and corrupt change buffer in place; what else is to be done
+	 * with the packet is left in verdict
+	 */
+	public void apply(Stream stream, TFTPPacket packet, ByteBuffer buffer, long now, Verdict verdict)
+	{
+		verdict.reset();
+		int opcode = packet.opcode();
+		int block = ((opcode == TFTPPacket.DATA || opcode == TFTPPacket.ACK) && packet.isValid()) ? packet.block() : -1;
+		for (Rule r : rules)
+		{
+			if (!r.matches(stream, opcode, block))
+			{
+				continue;
+			}
+			if (r.probability < 1 && stream.random.nextDouble() >= r.probability)
+			{
+				continue;
+			}
+			r.hits.incrementAndGet();
+			switch (r.action)
+			{
+				case DROP:
+					verdict.drop = true;
+					return;
+				case DELAY:
+					long jitter = r.jitter > 0 ? stream.random.nextLong(-r.jitter, r.jitter + 1) : 0;
+					verdict.delay += Math.max(0, TimeUnit.MILLISECONDS.toNanos(r.millis) + jitter);
+					break;
+				case DUPLICATE:
+					verdict.copies++;
+					break;
+				case REORDER:
+					verdict.hold = TimeUnit.MILLISECONDS.toNanos(r.millis);
+					break;
+				case TRUNCATE:
+					if (buffer.remaining() > r.bytes)
+					{
+						buffer.limit(buffer.position() + (int)r.bytes);
+					}
+					break;
+				case CORRUPT:
+					for (long i = 0; i < r.bytes && buffer.hasRemaining(); i++)
+					{
+						int at = buffer.position() + stream.random.nextInt(buffer.remaining());
+						buffer.put(at, (byte)(buffer.get(at) ^ (1 + stream.random.nextInt(255))));
+					}
+					break;
+				case RATE:
+					//the link is busy until linkFree; this packet queues behind it
+					long ready = now + verdict.delay;
+					long start = Math.max(ready, r.linkFree);
+					if (start - now > TimeUnit.MILLISECONDS.toNanos(r.queue))
+					{
+						verdict.drop = true;
+						return;
+					}
+					r.linkFree = start + buffer.remaining() * 1000000000L / r.bytes;
+					verdict.delay = start - now;
+					break;
+			}
+		}
+	}
+
+
+	//which way and which session a packet belongs to, and its random numbers
+	public static class Stream
+	{
+		private final int session;
+		private final boolean toServer;
+		private final SplittableRandom random;
+
+		private Stream(int session, boolean toServer, SplittableRandom random)
+		{
+			this.session = session;
+			this.toServer = toServer;
+			this.random = random;
+		}
+	}
+
+
+	//what to do with one packet, filled in by apply()
+	public static class Verdict
+	{
+		public boolean drop;
+		public long delay;		//ns before sending
+		public int copies;		//times to send it
+		public long hold;		//reorder: ns to wait at most for the next packet, 0 if not held
+
+		void reset()
+		{
+			drop = false;
+			delay = 0;
+			copies = 1;
+			hold = 0;
+		}
+	}
+
+
+	//one line of the rules
+	public static class Rule
+	{
+		private final Action action;
+		private double probability = 1;
+		private int opcodes;			//bit per opcode, 0 for any
+		private int blockFrom = -1, blockTo = -1;
+		private int sessionFrom = -1, sessionTo = -1;
+		private Boolean toServer;		//null for either way
+		private long millis;
+		private long jitter;			//ns
+		private long bytes;
+		private long queue = 100;
+		private long linkFree;			//RATE: when the link is next idle, ns
+		private final AtomicLong hits = new AtomicLong();
+		private final String text;
+
+		private Rule(Action action, String text)
+		{
+			this.action = action;
+			this.text = text;
+		}
+
+
+		//packets this rule has been applied to
+		public long getHits()
+		{
+			return hits.get();
+		}
+
+
+		public String toString()
+		{
+			return text + " (" + hits.get() + " hits)";
+		}
+
+
+		private boolean matches(Stream s, int opcode, int block)
+		{
+			if (opcodes != 0 && (opcode < 0 || opcode >= 32 || (opcodes & (1 << opcode)) == 0))
+			{
+				return false;
+			}
+			if (blockFrom >= 0 && (block < blockFrom || block > blockTo))
+			{
+				return false;
+			}
+			if (sessionFrom >= 0 && (s.session < sessionFrom || s.session > sessionTo))
+			{
+				return false;
+			}
+			return toServer == null || toServer == s.toServer;
+		}
+
+
+		static Rule parse(String line)
+		{
+			String[] words = line.split("\\s+");
+			Rule r;
+			try
+			{
+				r = new Rule(Action.valueOf(words[0].toUpperCase()), line);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("unknown action in rule \"" + line + "\"");
+			}
+			r.millis = (r.action == Action.REORDER) ? 50 : 0;
+			r.bytes = (r.action == Action.CORRUPT) ? 1 : -1;
+			try
+			{
+				for (int i = 1; i < words.length; i++)
+				{
+					int eq = words[i].indexOf('=');
+					if (eq < 0)
+					{
+						throw new IllegalArgumentException(words[i]);
+					}
+					String key = words[i].substring(0, eq).toLowerCase();
+					String value = words[i].substring(eq + 1);
+					switch (key)
+					{
+						case "p":
+							r.probability = Double.parseDouble(value);
+							break;
+						case "op":
+							for (String op : value.toUpperCase().split(","))
+							{
+								int code = Arrays.asList(OPCODES).indexOf(op);
+								if (code < 1)
+								{
+									throw new IllegalArgumentException(op);
+								}
+								r.opcodes |= 1 << code;
+							}
+							break;
+						case "block":
+							int[] blocks = range(value);
+							r.blockFrom = blocks[0];
+							r.blockTo = blocks[1];
+							break;
+						case "session":
+							int[] sessions = range(value);
+							r.sessionFrom = sessions[0];
+							r.sessionTo = sessions[1];
+							break;
+						case "dir":
+							if (!value.equalsIgnoreCase("server") && !value.equalsIgnoreCase("client"))
+							{
+								throw new IllegalArgumentException(value);
+							}
+							r.toServer = value.equalsIgnoreCase("server");
+							break;
+						case "ms":
+							r.millis = Long.parseLong(value);
+							break;
+						case "jitter":
+							r.jitter = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value));
+							break;
+						case "bytes":
+							r.bytes = Long.parseLong(value);
+							break;
+						case "queue":
+							r.queue = Long.parseLong(value);
+							break;
+						default:
+							throw new IllegalArgumentException(key);
+					}
+				}
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("bad setting " + e.getMessage() + " in rule \"" + line + "\"");
+			}
+			if ((r.action == Action.TRUNCATE && r.bytes < 0) || (r.action == Action.RATE && r.bytes <= 0))
+			{
+				throw new IllegalArgumentException("rule \"" + line + "\" needs bytes=");
+			}
+			return r;
+		}
+
+
+		//"n" or "from-to"
+		private static int[] range(String value)
+		{
+			int dash = value.indexOf('-');
+			if (dash < 0)
+			{
+				int n = Integer.parseInt(value);
+				return new int[] { n, n };
+			}
+			return new int[] { Integer.parseInt(value.substring(0, dash)), Integer.parseInt(value.substring(dash + 1)) };
+		}
+	}
+}
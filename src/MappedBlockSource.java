@@ -0,0 +1,119 @@
+/**
+*Class:             MappedBlockSource.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           BlockSource for large files. The file is memory-mapped with
+*					FileChannel.map and each block is handed out as a window on
+*					the mapping at offset (n-1)*blockSize. Sending or resending
+*					any block needs no read syscall and no copy into a heap
+*					array; the page cache is sent from directly. Files beyond
+*					what one mapping can hold are mapped in chunks, each chunk
+*					only when a block inside it is first asked for.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+
+public class MappedBlockSource implements BlockSource
+{
+	//declaring local class constants
+	private static final long CHUNK_SIZE = 1L << 30;
+
+	//declaring local instance variables
+	private final FileChannel channel;
+	private final long size;
+	private final int blockSize;
+	private final long chunkSize;		//whole number of blocks
+	private final MappedByteBuffer[] chunks;
+
+
+	//generic constructor
+	public MappedBlockSource(String file, int blockSize)
+	throws FileNotFoundException, IOException
+	{
+		try
+		{
+			channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		}
+		catch (NoSuchFileException e)
+		{
+			throw new FileNotFoundException(file);
+		}
+		this.size = channel.size();
+		this.blockSize = blockSize;
+		//keep every block inside a single chunk
+		this.chunkSize = (CHUNK_SIZE / blockSize) * blockSize;
+		this.chunks = new MappedByteBuffer[(int)(size / chunkSize) + 1];
+	}
+
+
+	public long size()
+	{
+		return size;
+	}
+
+
+	public int blockSize()
+	{
+		return blockSize;
+	}
+
+
+	public int blockCount()
+	{
+		return (int)(size / blockSize) + 1;
+	}
+
+
+	/* block n as a window on the mapping
+	 * the returned buffer is shared with the rest of its chunk and is
+	 * repositioned by the next call
+	 */
+	public ByteBuffer block(int n) throws IOException
+	{
+		if (n < 1 || n > blockCount())
+		{
+			throw new IndexOutOfBoundsException("block " + n + " of " + blockCount());
+		}
+		long offset = (long)(n - 1) * blockSize;
+		int length = (int)Math.min(blockSize, size - offset);
+		int chunk = (int)(offset / chunkSize);
+		int within = (int)(offset % chunkSize);
+
+		MappedByteBuffer map = chunks[chunk];
+		if (map == null)
+		{
+			long start = chunk * chunkSize;
+			map = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+			chunks[chunk] = map;
+		}
+		map.limit(within + length);
+		map.position(within);
+		return map;
+	}
+
+
+	/* the mappings themselves are released when they are garbage
+	 * collected, there is no supported way to unmap them sooner
+	 */
+	public void close() throws IOException
+	{
+		for (int i = 0; i < chunks.length; i++)
+		{
+			chunks[i] = null;
+		}
+		channel.close();
+	}
+}
@@ -0,0 +1,277 @@
+/**
+*Class:             Netascii.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           The "netascii" transfer mode (RFC 1350, after the Telnet
+*					NVT): on the wire every line ends in CR LF and a CR on
+*					its own is sent as CR NUL. A file is sent with each LF
+*					as CR LF and each CR as CR NUL, and a file received has
+*					them turned back. Anything else is sent as it is.
+*
+*					Both directions translate as the blocks go, between
+*					ByteBuffers, so nothing is allocated per byte and the file
+*					is never converted in a pass of its own. A pair can
+*					straddle two blocks either way: the Encoder owes the
+*					second byte of a pair the block had no room for, the
+*					Decoder holds a CR back until it sees what follows.
+*
+*					Source serves a file through the Encoder as a BlockSource.
+*					Its blocks no longer start at (n-1)*blockSize of the file,
+*					so it notes where in the file each recent block started
+*					and resends a block from there. How many blocks there are
+*					isn't known until the last one has been read.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+
+
+public class Netascii
+{
+	//the mode as named on a RRQ/WRQ
+	public static final String MODE = "netascii";
+
+	//declaring local class constants
+	private static final byte CR = '\r';
+	private static final byte LF = '\n';
+	private static final byte NUL = 0;
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+
+	/* file to wire: LF becomes CR LF and CR becomes CR NUL
+	 * a pair that doesn't fit in out is finished by the next call
+	 */
+	public static class Encoder
+	{
+		//second byte of a pair still owed, -1 if none
+		private int pending = -1;
+
+		//generic accessors
+		public int getPending()
+		{
+			return pending;
+		}
+		public void setPending(int b)
+		{
+			pending = b;
+		}
+
+
+		//translate in into out until in is used up or out is full
+		public void encode(ByteBuffer in, ByteBuffer out)
+		{
+			int o = out.position();
+			int room = out.limit();
+			if (pending >= 0)
+			{
+				if (o == room)
+				{
+					return;
+				}
+				out.put(o++, (byte)pending);
+				pending = -1;
+			}
+			int i = in.position();
+			int end = in.limit();
+			while (i < end && o < room)
+			{
+				byte b = in.get(i++);
+				if (b == LF || b == CR)
+				{
+					out.put(o++, CR);
+					byte second = (b == LF) ? LF : NUL;
+					if (o < room)
+					{
+						out.put(o++, second);
+					}
+					else
+					{
+						pending = second;
+					}
+				}
+				else
+				{
+					out.put(o++, b);
+				}
+			}
+			in.position(i);
+			out.position(o);
+		}
+	}
+
+
+	/* wire to file: CR LF becomes LF and CR NUL becomes CR; a CR followed
+	 * by anything else is kept as it is
+	 */
+	public static class Decoder
+	{
+		//the last byte seen was a CR, not yet written
+		private boolean cr;
+
+		//translate in into out, which needs room for in.remaining() + 1
+		public void decode(ByteBuffer in, ByteBuffer out)
+		{
+			int o = out.position();
+			int i = in.position();
+			int end = in.limit();
+			while (i < end)
+			{
+				byte b = in.get(i++);
+				if (cr)
+				{
+					cr = false;
+					if (b == LF)
+					{
+						out.put(o++, LF);
+						continue;
+					}
+					if (b == NUL)
+					{
+						out.put(o++, CR);
+						continue;
+					}
+					out.put(o++, CR);
+				}
+				if (b == CR)
+				{
+					cr = true;
+				}
+				else
+				{
+					out.put(o++, b);
+				}
+			}
+			in.position(i);
+			out.position(o);
+		}
+
+
+		//the last block has been decoded: a CR the file ended on is kept
+		public void finish(ByteBuffer out)
+		{
+			if (cr)
+			{
+				out.put(CR);
+				cr = false;
+			}
+		}
+	}
+
+
+	/* a file sent as netascii, block by block from the file's own
+	 * BlockSource (of the same block size)
+	 * where each of the last history blocks started is kept, so any of
+	 * them can be sent again; one older than that is found by encoding
+	 * from the start of the file
+	 */
+	public static class Source implements BlockSource
+	{
+		//declaring local instance variables
+		private final BlockSource file;
+		private final int blockSize;
+		private final ByteBuffer block;
+		private final Encoder encoder = new Encoder();
+		private final long[] starts;		//offset in the file << 2 | pair owed, by block
+		private final int[] startOf;		//which block each of starts is for
+		private final int mask;
+		private int known;					//newest block whose start is known
+		private int count = UNKNOWN;
+
+
+		public Source(BlockSource file, int history)
+		{
+			this.file = file;
+			blockSize = file.blockSize();
+			block = ByteBuffer.allocateDirect(blockSize);
+			int slots = Integer.highestOneBit(Math.max(1, history) * 2);
+			starts = new long[slots];
+			startOf = new int[slots];
+			mask = slots - 1;
+			known = 1;
+			startOf[1 & mask] = 1;
+		}
+
+
+		//size of the file as stored; more than that is sent
+		public long size()
+		{
+			return file.size();
+		}
+		public int blockSize()
+		{
+			return blockSize;
+		}
+		//UNKNOWN until the last block has been encoded
+		public int blockCount()
+		{
+			return count;
+		}
+
+
+		public ByteBuffer block(int n) throws IOException
+		{
+			if (n < 1 || (count != UNKNOWN && n > count))
+			{
+				throw new IndexOutOfBoundsException("block " + n + " of " + (count == UNKNOWN ? "?" : count));
+			}
+			if (n <= known && startOf[n & mask] != n)
+			{
+				//too long ago: start again from the top
+				known = 1;
+				starts[1 & mask] = 0;
+				startOf[1 & mask] = 1;
+			}
+			while (known < n)
+			{
+				encode(known);
+			}
+			encode(n);
+			block.flip();
+			return block;
+		}
+
+
+		public void close() throws IOException
+		{
+			file.close();
+		}
+
+
+		//encode block n into block, noting where block n + 1 starts
+		private void encode(int n) throws IOException
+		{
+			long start = starts[n & mask];
+			long offset = start >>> 2;
+			int owed = (int)(start & 3);
+			encoder.setPending(owed == 0 ? -1 : (owed == 1 ? LF : NUL));
+			block.clear();
+			encoder.encode(EMPTY, block);
+			long size = file.size();
+			while (block.hasRemaining() && offset < size)
+			{
+				ByteBuffer in = file.block((int)(offset / blockSize) + 1);
+				in.position(in.position() + (int)(offset % blockSize));
+				int from = in.position();
+				encoder.encode(in, block);
+				offset += in.position() - from;
+			}
+			int pending = encoder.getPending();
+			starts[(n + 1) & mask] = offset << 2 | (pending < 0 ? 0 : (pending == LF ? 1 : 2));
+			startOf[(n + 1) & mask] = n + 1;
+			known = Math.max(known, n + 1);
+			if (block.position() < blockSize)
+			{
+				count = n;
+			}
+		}
+	}
+}
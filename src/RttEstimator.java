@@ -0,0 +1,163 @@
+/**
+*Class:             RttEstimator.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Retransmission timeout for one transfer, worked out from
+*					the round trip times seen on it (RFC 6298): a smoothed
+*					RTT and its variation give the timeout, which doubles on
+*					every timeout until an answer comes back. Following
+*					Karn's rule, only answers to packets that were sent once
+*					are timed, since an answer to a resent packet could be
+*					to either copy. On a LAN the timeout drops to a few ms,
+*					so a lost packet is resent almost at once, while a slow
+*					link keeps a long enough timeout not to resend packets
+*					that are only late.
+*
+*					A transfer is given up once it has timed out at least
+*					MIN_TIMEOUTS times in a row and nothing has been heard for
+*					at least -Dtftp.giveUp ms (default 5000): long enough on a
+*					LAN, where the timeout is short, and still a few resends
+*					on a slow link, where it is long.
+*
+*					Other settings, in ms: -Dtftp.initialRto (1000, used
+*					until the first sample), -Dtftp.minRto (20) and
+*					-Dtftp.maxRto (8000).
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.util.concurrent.*;
+
+
+public class RttEstimator
+{
+	//declaring local class constants
+	public static final long INITIAL_RTO = Long.getLong("tftp.initialRto", 1000);
+	public static final long MIN_RTO = Long.getLong("tftp.minRto", 20);
+	public static final long MAX_RTO = Long.getLong("tftp.maxRto", 8000);
+	public static final long GIVE_UP = Long.getLong("tftp.giveUp", 5000);
+	public static final int MIN_TIMEOUTS = 3;
+	private static final long GRANULARITY = TimeUnit.MILLISECONDS.toNanos(1);
+
+	//declaring local instance variables, times in ns
+	private long srtt;
+	private long rttvar;
+	private long rto = TimeUnit.MILLISECONDS.toNanos(INITIAL_RTO);
+	private long samples;
+	private long timeouts;
+	private long retransmits;
+	private int consecutive;		//timeouts since the last answer
+	private long lastHeard = System.nanoTime();
+
+
+	//generic accessors
+	public long getSrtt()
+	{
+		return srtt;
+	}
+	public long getRttvar()
+	{
+		return rttvar;
+	}
+	public long getRto()
+	{
+		return rto;
+	}
+	public long getSamples()
+	{
+		return samples;
+	}
+	public long getTimeouts()
+	{
+		return timeouts;
+	}
+	public long getRetransmits()
+	{
+		return retransmits;
+	}
+
+
+	//how long to wait for an answer now, in ms
+	public long timeoutMillis()
+	{
+		return Math.max(1, TimeUnit.NANOSECONDS.toMillis(rto));
+	}
+
+
+	/* an answer came back rtt ns after a packet that was only sent once
+	 * RFC 6298 section 2, with alpha = 1/8 and beta = 1/4
+	 */
+	public void sample(long rtt)
+	{
+		if (rtt < 0)
+		{
+			return;
+		}
+		if (samples == 0)
+		{
+			srtt = rtt;
+			rttvar = rtt / 2;
+		}
+		else
+		{
+			rttvar = rttvar - (rttvar >> 2) + (Math.abs(srtt - rtt) >> 2);
+			srtt = srtt - (srtt >> 3) + (rtt >> 3);
+		}
+		samples++;
+		rto = clamp(srtt + Math.max(GRANULARITY, 4 * rttvar));
+		heard();
+	}
+
+
+	//an answer came back, timed or not
+	public void heard()
+	{
+		consecutive = 0;
+		lastHeard = System.nanoTime();
+	}
+
+
+	//nothing came back in time: back off before resending
+	public void timeout()
+	{
+		timeouts++;
+		consecutive++;
+		rto = clamp(rto * 2);
+	}
+
+
+	//packets being sent again
+	public void retransmitted(int packets)
+	{
+		retransmits += packets;
+	}
+
+
+	//whether to give up on the other end
+	public boolean expired()
+	{
+		return consecutive >= MIN_TIMEOUTS
+				&& System.nanoTime() - lastHeard >= TimeUnit.MILLISECONDS.toNanos(GIVE_UP);
+	}
+
+
+	private static long clamp(long rto)
+	{
+		return Math.min(TimeUnit.MILLISECONDS.toNanos(MAX_RTO),
+				Math.max(TimeUnit.MILLISECONDS.toNanos(MIN_RTO), rto));
+	}
+
+
+	public String toString()
+	{
+		return String.format("srtt %.3fms, rttvar %.3fms, rto %dms, %d retransmits, %d timeouts",
+				srtt / 1e6, rttvar / 1e6, timeoutMillis(), retransmits, timeouts);
+	}
+}
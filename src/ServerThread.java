@@ -1,10 +1,424 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
+// One RRQ or WRQ transfer, as a state machine that never blocks: begin()
+// sends the first packet, and from then on the transfer only reacts to
+// a packet from its client, its timer running out, or its channel having
+// room again. run() drives it from a thread of its own (the POOL and
+// VIRTUAL transfer modes); a TransferLoop drives thousands of them from
+// one thread (LOOP), where a transfer waiting on a slow client is only
+// this object, its channel and its file.
+public abstract class ServerThread implements Runnable {
 
-public abstract class ServerThread extends Thread {
-	
+	// where a transfer is in its life: dispatched and waiting for a thread,
+	// running, running but the server is shutting down, ended
+	public static enum Lifecycle { STARTING, ACTIVE, DRAINING, CLOSED };
+
+	// where a transfer is in the protocol: waiting for the client's ACK,
+	// part way through a window of DATA the socket had no room for,
+	// waiting for the client's DATA, or over
+	public static enum State { AWAITING_ACK, SENDING_DATA, AWAITING_DATA, FINISHED };
+
+	private String name;
+
+	// the client this transfer is for, its address and TID, and the
+	// request it sent
+	protected InetSocketAddress client;
+	private byte[] request;
+
+	// true while the client may not have had our first answer and so may
+	// still send its request again; false once it has been heard from
+	private volatile boolean requestOpen = true;
+
+	// the registry tracking this transfer, null if it isn't tracked, and
+	// where the transfer is in its lifecycle
+	private SessionRegistry registry;
+	private final AtomicReference<Lifecycle> lifecycle = new AtomicReference<Lifecycle>(Lifecycle.STARTING);
+	private volatile boolean stopRequested;
+
+	// where the transfer is in the protocol, and when (System.nanoTime())
+	// onTimeout() is due while it waits for the client
+	protected State state = State.AWAITING_ACK;
+	protected long deadline;
+
+	// how long to wait for the client before retransmitting, learned from
+	// the round trip times of this transfer, and when to give up on it
+	protected final RttEstimator rtt = new RttEstimator();
+
+	// this transfer's entry in the metrics, and when its request arrived
+	protected static final TFTPMetrics metrics = TFTPMetrics.get();
+	protected TFTPMetrics.Session session;
+	protected long requestedAt = System.nanoTime();
+
+	// where the transfer's packet buffers come from and go back to
+	protected static final BufferPool buffers = BufferPool.shared();
+
+	// this transfer's own TID: a channel on a fresh port, connected to the
+	// client so packets from any other address/port never reach us
+	protected DatagramChannel channel;
+	private volatile Selector selector;
+	private SelectionKey key;
+	protected ByteBuffer receiveBuffer;
+	protected final TFTPPacket received = new TFTPPacket();
+
+	// the loop driving this transfer, null when it has a thread of its
+	// own, and its timer on the loop's wheel
+	private volatile TransferLoop loop;
+	final TimerWheel.Timer timer = new TimerWheel.Timer(this);
+
+	public String getName()
+	{
+		return name;
+	}
+
+	protected void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public RttEstimator getRtt()
+	{
+		return rtt;
+	}
+
+	public void setRequestedAt(long nanos)
+	{
+		requestedAt = nanos;
+	}
+
+	public InetSocketAddress getClient()
+	{
+		return client;
+	}
+
+	public Lifecycle getLifecycle()
+	{
+		return lifecycle.get();
+	}
+
+	public State getState()
+	{
+		return state;
+	}
+
+	public void setRequest(byte[] data)
+	{
+		request = data;
+	}
+
+	// whether data from this transfer's client, arriving at nanos, is its
+	// request sent again: the same bytes, while this transfer is live and
+	// hasn't heard from the client, no more than windowMillis after it
+	public boolean isDuplicate(byte[] data, long nanos, long windowMillis)
+	{
+		return requestOpen
+				&& lifecycle.get() != Lifecycle.CLOSED
+				&& nanos - requestedAt <= windowMillis * 1000000L
+				&& Arrays.equals(data, request);
+	}
+
+	// the client can no longer be waiting for our first answer
+	protected void closeRequest()
+	{
+		requestOpen = false;
+	}
+
+	void setRegistry(SessionRegistry r)
+	{
+		registry = r;
+	}
+
+	void setLoop(TransferLoop l)
+	{
+		loop = l;
+	}
+
+	// the server is shutting down: carry on, but the transfer is now
+	// being waited for
+	public void drain()
+	{
+		lifecycle.compareAndSet(Lifecycle.STARTING, Lifecycle.DRAINING);
+		lifecycle.compareAndSet(Lifecycle.ACTIVE, Lifecycle.DRAINING);
+	}
+
+	// ask the transfer to end at its next packet or timeout; a wait for
+	// the client is cut short so that is soon
 	public void requestStop()
 	{
-		
+		drain();
+		stopRequested = true;
+		TransferLoop l = loop;
+		Selector s = selector;
+		if (l != null) {
+			l.stop(this);
+		} else if (s != null) {
+			s.wakeup();
+		}
+	}
+
+	// whether a stop has been asked for
+	boolean stopRequested()
+	{
+		return stopRequested;
+	}
+
+	// the transfer is being driven (the driver calls this before begin())
+	void started()
+	{
+		lifecycle.compareAndSet(Lifecycle.STARTING, Lifecycle.ACTIVE);
+	}
+
+	// the transfer is over, or was never started
+	public void closed()
+	{
+		lifecycle.set(Lifecycle.CLOSED);
+		if (registry != null) {
+			registry.remove(this);
+		}
+	}
+
+	/**
+	 * Drive the transfer on the calling thread until it is over, waiting
+	 * on the transfer's own selector for the client in between.
+	 */
+	public void run() {
+		started();
+		try {
+			begin();
+			while (state != State.FINISHED) {
+				if (stopRequested) {
+					stop();
+				} else if (state == State.SENDING_DATA) {
+					if (awaitWritable()) {
+						onWritable();
+					}
+				} else {
+					long left = deadline - System.nanoTime();
+					TFTPPacket packet = (left > 0) ? receive((left + 999999) / 1000000) : null;
+					if (packet != null) {
+						handle(packet, receiveBuffer);
+					} else if (!stopRequested && deadline - System.nanoTime() <= 0) {
+						onTimeout();
+					}
+				}
+			}
+		} catch (IOException e) {
+			failed(e);
+		} finally {
+			end();
+		}
+	}
+
+	/**
+	 * Open the channel and the file and send the first packet, leaving the
+	 * transfer waiting for the client (or FINISHED if it was refused).
+	 */
+	protected abstract void begin() throws IOException;
+
+	/**
+	 * A packet from the client, decoded over buffer, which is only valid
+	 * for the duration of the call.
+	 */
+	protected abstract void onPacket(TFTPPacket packet, ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Nothing came from the client by the deadline: resend, or give up.
+	 */
+	protected abstract void onTimeout() throws IOException;
+
+	/**
+	 * The channel has room again after leaving the transfer SENDING_DATA.
+	 */
+	protected void onWritable() throws IOException {
+	}
+
+	/**
+	 * The transfer ends without having succeeded; log where it got to.
+	 */
+	protected abstract void abandon();
+
+	/**
+	 * Let go of the file, once the transfer is over however it ended.
+	 */
+	protected abstract void release();
+
+	// a packet from the client, for whichever driver received it
+	void handle(TFTPPacket packet, ByteBuffer buffer) throws IOException
+	{
+		requestOpen = false;
+		onPacket(packet, buffer);
+	}
+
+	// the server is shutting down: tell the client why, and end
+	void stop()
+	{
+		sendError(TFTPPacket.ERR_NOT_DEFINED, "Server shutting down");
+		abandon();
+	}
+
+	// the channel or the file failed under the transfer, or the transfer
+	// itself did
+	void failed(Exception e)
+	{
+		e.printStackTrace();
+		state = State.FINISHED;
+	}
+
+	// release everything the transfer holds and take it off the books
+	void end()
+	{
+		state = State.FINISHED;
+		try {
+			release();
+		} finally {
+			closeChannel();
+			if (session != null) {
+				session.end();
+			}
+			closed();
+		}
+	}
+
+	// wait for the client, up to the retransmission timeout from now
+	protected void await(State waiting)
+	{
+		state = waiting;
+		deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rtt.timeoutMillis());
+	}
+
+	// the transfer is over
+	protected void finish()
+	{
+		state = State.FINISHED;
+	}
+
+	// open this transfer's TID towards the client, able to receive
+	// DATA packets of the negotiated block size
+	protected void open(InetSocketAddress client, int blockSize) throws IOException
+	{
+		open(client, blockSize, 1);
+	}
+
+	// as above, with room in the socket for a whole window of DATA
+	// (the kernel charges each datagram for more than its payload); a
+	// loop receives into a buffer of its own, so only a transfer with a
+	// thread needs one
+	protected void open(InetSocketAddress client, int blockSize, int windowSize) throws IOException
+	{
+		channel = DatagramChannel.open();
+		int needed = 2 * windowSize * (blockSize + TFTPPacket.HEADER_SIZE);
+		if (channel.getOption(StandardSocketOptions.SO_RCVBUF) < needed) {
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, needed);
+		}
+		channel.bind(new InetSocketAddress(0));
+		channel.connect(client);
+		channel.configureBlocking(false);
+		TransferLoop l = loop;
+		if (l != null) {
+			key = l.register(this);
+		} else {
+			receiveBuffer = buffers.acquire(blockSize + TFTPPacket.HEADER_SIZE);
+			selector = Selector.open();
+			key = channel.register(selector, SelectionKey.OP_READ);
+		}
+	}
+
+	// the events the driver should wait for in the current state
+	int interestOps()
+	{
+		return (state == State.SENDING_DATA) ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+	}
+
+	// whether the transfer is waiting for a packet from the client
+	boolean receiving()
+	{
+		return state == State.AWAITING_ACK || state == State.AWAITING_DATA;
+	}
+
+	SelectionKey getKey()
+	{
+		return key;
+	}
+
+	// wait up to timeout ms for a packet from the client
+	// returns the decoded packet (valid until the next call), or null on
+	// timeout or once a stop has been asked for
+	protected TFTPPacket receive(long timeout) throws IOException
+	{
+		long deadline = System.currentTimeMillis() + timeout;
+		for (;;) {
+			receiveBuffer.clear();
+			if (channel.read(receiveBuffer) > 0) {
+				receiveBuffer.flip();
+				return received.wrap(receiveBuffer);
+			}
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0 || stopRequested) {
+				return null;
+			}
+			selector.select(left);
+			selector.selectedKeys().clear();
+		}
+	}
+
+	// wait until the channel has room, or a stop has been asked for
+	private boolean awaitWritable() throws IOException
+	{
+		key.interestOps(SelectionKey.OP_WRITE);
+		try {
+			while (!stopRequested) {
+				int ready = selector.select(rtt.timeoutMillis());
+				selector.selectedKeys().clear();
+				if (ready > 0) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	// a round trip time sample, in ns, for this transfer's timeout and
+	// the server's RTT histogram
+	protected void sample(long rttNanos)
+	{
+		rtt.sample(rttNanos);
+		session.rtt(rttNanos);
+	}
+
+	// tell the client why the transfer is ending
+	protected void sendError(int code, String message)
+	{
+		ByteBuffer error = buffers.acquire(TFTPPacket.errorSize(message));
+		TFTPPacket.putError(error, code, message);
+		error.flip();
+		try {
+			channel.write(error);
+		} catch (IOException e) {
+			// the transfer is being abandoned anyway
+		} finally {
+			buffers.release(error);
+		}
+	}
+
+	// release this transfer's TID, and its receive buffer
+	protected void closeChannel()
+	{
+		try {
+			if (selector != null) selector.close();
+			if (channel != null) channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			buffers.release(receiveBuffer);
+			receiveBuffer = null;
+		}
 	}
 
 }
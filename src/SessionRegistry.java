@@ -0,0 +1,177 @@
+/**
+*Class:             SessionRegistry.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Every transfer the server has accepted and not yet
+*					finished, keyed by the client's address and TID (port),
+*					so the dispatcher can find a client's transfer and the
+*					server can shut down without looking at any thread.
+*
+*					A transfer is added when it is dispatched (STARTING),
+*					becomes ACTIVE when it gets a thread, and is removed once
+*					it has ended (CLOSED). Shutting down first marks every
+*					transfer DRAINING and waits for them to finish on their
+*					own; whatever is left when the grace period runs out is
+*					asked to stop, which each transfer does at its next
+*					packet or timeout, telling its client why.
+*
+*					A client that sends a new request from the same TID
+*					while its last transfer is still ending (the server
+*					waiting out a final ACK, say) replaces that transfer
+*					under the key; the old one is kept aside until it ends,
+*					so it is still waited for.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class SessionRegistry
+{
+	//declaring local instance variables
+	private final ConcurrentHashMap<InetSocketAddress, ServerThread> sessions =
+			new ConcurrentHashMap<InetSocketAddress, ServerThread>();
+	private final Set<ServerThread> replaced = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger live = new AtomicInteger();
+	private volatile boolean draining;
+
+
+	//generic accessors
+	public int size()
+	{
+		return live.get();
+	}
+	public boolean isDraining()
+	{
+		return draining;
+	}
+
+
+	//the transfer serving client (address and TID), or null
+	public ServerThread get(InetSocketAddress client)
+	{
+		return sessions.get(client);
+	}
+
+
+	/* start tracking a transfer that has just been dispatched
+	 * while shutting down it is marked DRAINING straight away
+	 */
+	public void add(ServerThread session)
+	{
+		session.setRegistry(this);
+		live.incrementAndGet();
+		//under the key's lock, so the old one can't end in between and be missed
+		sessions.compute(session.getClient(), (client, previous) ->
+		{
+			if (previous != null)
+			{
+				replaced.add(previous);
+			}
+			return session;
+		});
+		if (draining)
+		{
+			session.drain();
+		}
+	}
+
+
+	//a transfer has ended, or was never started
+	void remove(ServerThread session)
+	{
+		if (sessions.remove(session.getClient(), session) || replaced.remove(session))
+		{
+			if (live.decrementAndGet() == 0)
+			{
+				synchronized (this)
+				{
+					notifyAll();
+				}
+			}
+		}
+	}
+
+
+	/* mark every transfer DRAINING and wait up to millis for them all to
+	 * finish; returns true if none are left
+	 */
+	public boolean drain(long millis) throws InterruptedException
+	{
+		draining = true;
+		for (ServerThread s : sessions.values())
+		{
+			s.drain();
+		}
+		for (ServerThread s : replaced)
+		{
+			s.drain();
+		}
+		return awaitEmpty(millis);
+	}
+
+
+	/* ask every transfer to stop at its next packet or timeout
+	 * returns how many were asked
+	 */
+	public int stopAll()
+	{
+		int n = 0;
+		for (ServerThread s : sessions.values())
+		{
+			s.requestStop();
+			n++;
+		}
+		for (ServerThread s : replaced)
+		{
+			s.requestStop();
+			n++;
+		}
+		return n;
+	}
+
+
+	//wait up to millis for the last transfer to end; true if none are left
+	public synchronized boolean awaitEmpty(long millis) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + millis;
+		long left;
+		while (live.get() > 0 && (left = deadline - System.currentTimeMillis()) > 0)
+		{
+			wait(left);
+		}
+		return live.get() == 0;
+	}
+
+
+	//how many transfers are in each stage of their lifecycle
+	public Map<ServerThread.Lifecycle, Integer> census()
+	{
+		Map<ServerThread.Lifecycle, Integer> counts =
+				new EnumMap<ServerThread.Lifecycle, Integer>(ServerThread.Lifecycle.class);
+		for (ServerThread.Lifecycle l : ServerThread.Lifecycle.values())
+		{
+			counts.put(l, 0);
+		}
+		for (ServerThread s : sessions.values())
+		{
+			counts.merge(s.getLifecycle(), 1, Integer::sum);
+		}
+		for (ServerThread s : replaced)
+		{
+			counts.merge(s.getLifecycle(), 1, Integer::sum);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,359 @@
+/**
+*Class:             TFTPBatch.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.2
+*
+*Purpose:           Runs a manifest of gets and puts against one server, a
+*					number of them at a time. Each runs on its own
+*					TFTPClient (so its own socket and TID) and streams the
+*					file straight to or from disk, so the whole batch takes
+*					about as long as its slowest file rather than the sum of
+*					them all.
+*
+*					The manifest has one operation per line, '#' starting a
+*					comment:
+*					  get <remote> [<local>] [blksize=n] [window=n]
+*					  put <local> [<remote>] [blksize=n] [window=n]
+*					The local name of a get defaults to the remote one's last
+*					part, the remote name of a put to the local file's name.
+*					Relative local paths are from the working directory.
+*
+*					java TFTPBatch <manifest> [key=value...]  (or TFTPClient
+*					batch ...)
+*					  parallel=8       operations at once
+*					  port=69          server's request port
+*					  server=<host>    server's address, this host by default
+*					  blksize=512 window=1  for lines that don't say
+*
+*					A line is reported as it finishes, then the batch as a
+*					whole; a get that fails leaves no partial file behind, and
+*					any file it would have replaced as it was.
+*					Exits with 1 if anything failed.
+*
+*
+*Update Log:        v1.0.2
+*                       - an operation that throws (a bad path, a client
+*                         bug) is reported as failed and its worker goes
+*                         on to the next one instead of dying with it
+*                   v1.0.1
+*                       - a failed get no longer deletes the local file
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+
+public class TFTPBatch
+{
+	//declaring local class constants
+	private static final String[] KEYS = { "parallel", "port", "server", "blksize", "window" };
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//declaring local instance variables
+	private final List<Operation> operations;
+	private final int parallel;
+	private final int port;
+	private final InetAddress server;
+	private final AtomicInteger next = new AtomicInteger();
+
+
+	//generic constructor
+	public TFTPBatch(List<Operation> operations, int parallel, int port, InetAddress server)
+	{
+		this.operations = new ArrayList<Operation>(operations);
+		this.parallel = Math.max(1, Math.min(parallel, operations.size()));
+		this.port = port;
+		this.server = server;
+	}
+
+
+	/* one operation per line, in the format above; lines without their
+	 * own blksize/window get blockSize/windowSize
+	 * throws IllegalArgumentException naming the bad line
+	 */
+	public static List<Operation> parse(BufferedReader in, int blockSize, int windowSize) throws IOException
+	{
+		List<Operation> operations = new ArrayList<Operation>();
+		String line;
+		for (int number = 1; (line = in.readLine()) != null; number++)
+		{
+			int hash = line.indexOf('#');
+			if (hash >= 0)
+			{
+				line = line.substring(0, hash);
+			}
+			line = line.trim();
+			if (line.isEmpty())
+			{
+				continue;
+			}
+			try
+			{
+				operations.add(Operation.parse(line, blockSize, windowSize));
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException("manifest line " + number + ": " + e.getMessage());
+			}
+		}
+		return operations;
+	}
+
+
+	/* run every operation, at most parallel at once
+	 * returns the number that failed
+	 */
+	public int run() throws InterruptedException
+	{
+		log.message(TFTPLog.Level.INFO, "Batch", operations.size() + " operations, " + parallel + " at a time");
+		long start = System.nanoTime();
+		Thread[] workers = new Thread[parallel];
+		for (int i = 0; i < parallel; i++)
+		{
+			workers[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					work();
+				}
+			}, "TFTPBatch " + (i + 1));
+			workers[i].start();
+		}
+		for (Thread t : workers)
+		{
+			t.join();
+		}
+		long wall = System.nanoTime() - start;
+
+		//how the batch went, against running the files one after another
+		int failed = 0;
+		long bytes = 0;
+		long sum = 0;
+		Operation slowest = operations.get(0);
+		for (Operation op : operations)
+		{
+			failed += op.ok ? 0 : 1;
+			bytes += op.bytes;
+			sum += op.elapsed;
+			slowest = (op.elapsed > slowest.elapsed) ? op : slowest;
+		}
+		log.message(failed > 0 ? TFTPLog.Level.WARN : TFTPLog.Level.INFO, "Batch", String.format(
+				"%d of %d done, %d failed, %d bytes in %dms (%.1f MB/s); one at a time %dms, slowest %s %dms",
+				operations.size() - failed, operations.size(), failed, bytes, wall / 1000000,
+				bytes * 1e9 / Math.max(1, wall) / 1048576, sum / 1000000, slowest.remote, slowest.elapsed / 1000000));
+		log.flush();
+		return failed;
+	}
+
+
+	//one worker: its own client, taking the next operation until none are left
+	private void work()
+	{
+		TFTPClient client = new TFTPClient(false);
+		client.setOutPort(port);
+		client.setServerAddress(server);
+		client.quietMode(true);
+		try
+		{
+			for (int i; (i = next.getAndIncrement()) < operations.size(); )
+			{
+				operations.get(i).run(client);
+			}
+		}
+		finally
+		{
+			client.close();
+		}
+	}
+
+
+	//generic accessor
+	public List<Operation> getOperations()
+	{
+		return Collections.unmodifiableList(operations);
+	}
+
+
+	//a line of the manifest, and once run how it went
+	public static class Operation
+	{
+		private final boolean put;
+		private final String local;
+		private final String remote;
+		private final int blockSize;
+		private final int windowSize;
+
+		private volatile boolean ok;
+		private volatile long bytes;
+		private volatile long elapsed;		//ns
+		private volatile String error;
+
+		public Operation(boolean put, String local, String remote, int blockSize, int windowSize)
+		{
+			this.put = put;
+			this.local = local;
+			this.remote = remote;
+			this.blockSize = blockSize;
+			this.windowSize = windowSize;
+		}
+
+
+		static Operation parse(String line, int blockSize, int windowSize)
+		{
+			List<String> names = new ArrayList<String>();
+			String[] words = line.split("\\s+");
+			for (int i = 1; i < words.length; i++)
+			{
+				if (words[i].startsWith("blksize="))
+				{
+					blockSize = Integer.parseInt(words[i].substring(8));
+				}
+				else if (words[i].startsWith("window="))
+				{
+					windowSize = Integer.parseInt(words[i].substring(7));
+				}
+				else if (words[i].indexOf('=') >= 0 || names.size() == 2)
+				{
+					throw new IllegalArgumentException("unexpected \"" + words[i] + "\"");
+				}
+				else
+				{
+					names.add(words[i]);
+				}
+			}
+			if (names.isEmpty())
+			{
+				throw new IllegalArgumentException("no file named");
+			}
+			String first = names.get(0);
+			String second = (names.size() > 1) ? names.get(1) : Paths.get(first).getFileName().toString();
+			if (words[0].equalsIgnoreCase("get"))
+			{
+				return new Operation(false, second, first, blockSize, windowSize);
+			}
+			else if (words[0].equalsIgnoreCase("put"))
+			{
+				return new Operation(true, first, second, blockSize, windowSize);
+			}
+			throw new IllegalArgumentException("expected get or put, not \"" + words[0] + "\"");
+		}
+
+
+		//run this with client, recording how it went
+		void run(TFTPClient client)
+		{
+			long start = System.nanoTime();
+			try
+			{
+				if (put)
+				{
+					bytes = Files.size(Paths.get(local));
+					ok = client.writeFile(local, remote, blockSize, windowSize);
+				}
+				else
+				{
+					//downloaded into local.part and only then moved over local,
+					//so a failed get leaves a file already there as it was
+					ok = client.readFile(remote, local, blockSize, windowSize);
+					bytes = ok ? Files.size(Paths.get(local)) : 0;
+				}
+				error = ok ? null : client.getLastError();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				ok = false;
+				error = e.toString();
+			}
+			elapsed = System.nanoTime() - start;
+			log.message(ok ? TFTPLog.Level.INFO : TFTPLog.Level.WARN, "Batch", toString());
+		}
+
+
+		//generic accessors
+		public boolean isOk()
+		{
+			return ok;
+		}
+		public long getElapsed()
+		{
+			return elapsed;
+		}
+		public String getError()
+		{
+			return error;
+		}
+
+
+		public String toString()
+		{
+			String what = (put ? "put " + local + " -> " : "get " + remote + " -> ") + (put ? remote : local);
+			if (!ok)
+			{
+				return what + " failed: " + (error == null ? "not run" : error);
+			}
+			return what + String.format(" (%d bytes, %dms)", bytes, elapsed / 1000000);
+		}
+	}
+
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.err.println("usage: java TFTPBatch <manifest> [key=value...] with keys " + Arrays.toString(KEYS));
+			System.exit(2);
+		}
+		Map<String, String> settings = new HashMap<String, String>();
+		for (int i = 1; i < args.length; i++)
+		{
+			int eq = args[i].indexOf('=');
+			if (eq < 0 || !Arrays.asList(KEYS).contains(args[i].substring(0, eq)))
+			{
+				System.err.println("unknown setting " + args[i] + ", expected one of " + Arrays.toString(KEYS));
+				System.exit(2);
+			}
+			settings.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+		}
+
+		List<Operation> operations;
+		try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0])))
+		{
+			operations = parse(in, Integer.parseInt(settings.getOrDefault("blksize", "512")),
+					Integer.parseInt(settings.getOrDefault("window", "1")));
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(args[0] + ", " + e.getMessage());
+			System.exit(2);
+			return;
+		}
+		if (operations.isEmpty())
+		{
+			System.err.println(args[0] + " has nothing to do");
+			return;
+		}
+
+		TFTPBatch batch = new TFTPBatch(operations,
+				Integer.parseInt(settings.getOrDefault("parallel", "8")),
+				Integer.parseInt(settings.getOrDefault("port", "69")),
+				settings.containsKey("server") ? InetAddress.getByName(settings.get("server")) : null);
+		try
+		{
+			System.exit(batch.run() > 0 ? 1 : 0);
+		}
+		catch (InterruptedException e)
+		{
+			System.exit(1);
+		}
+	}
+}
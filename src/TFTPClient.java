@@ -2,8 +2,8 @@
 *Class:             TFTPClient.java
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
-*Date of Update:    25/09/2016                                              
-*Version:           1.1.0                                                      
+*Date of Update:    17/10/2026                                              
+*Version:           1.12.4                                                      
 *                                                                                   
 *Purpose:           Generates a datagram following the format of [0,R/W,STR1,0,STR2,0],
 					in which R/W signifies read (1) or write (2), STR1 is a filename,
@@ -16,6 +16,70 @@
 * 
 * 
 *Update Log:        
+*					v1.12.4
+*						- writeFile opens the local file before sending
+*						  the WRQ and sends its open size as tsize, so a
+*						  missing file never reaches the server
+*					v1.12.3
+*						- the room for a download is checked on the .part
+*						  file, as the local file may not exist yet; if
+*						  it can't be made the server is sent ERROR 3
+*					v1.12.2
+*						- packets that aren't well formed (a DATA or ACK
+*						  too short for its block number) are dropped on
+*						  receipt instead of throwing out of the transfer
+*					v1.12.1
+*						- readFile downloads into <localName>.part and
+*						  renames it over localName once complete, so a
+*						  refused or abandoned read leaves an existing
+*						  file as it was
+*					v1.12.0
+*						- send and receive buffers both direct, from the
+*						  shared BufferPool, and given back on close()
+*						- sendAndEcho/receiveAndEcho go through them too,
+*						  reusing one array and DatagramPacket each
+*					v1.11.0
+*						- packets go through a non-blocking DatagramChannel;
+*						  they are received into a pooled direct buffer
+*						- downloads are written at each block's offset
+*						  straight from that buffer, into a file sized up
+*						  front from tsize (asked for along with blksize
+*						  or windowsize)
+*					v1.10.0
+*						- "TFTPClient batch <manifest>" runs a TFTPBatch
+*					v1.9.0
+*						- getLastError(): why the last transfer failed
+*						- setServerAddress() for a server on another host
+*						- quietMode(): per-transfer summaries at DEBUG
+*						- "TFTPClient load ..." runs the TFTPLoad load
+*						  generator
+*					v1.8.0
+*						- retransmission timeout learned per transfer with
+*						  RttEstimator instead of a fixed 1s, getRtt()
+*						- a packet from the last transfer's TID is only
+*						  ignored when it can't be a first reply
+*					v1.7.0
+*						- writeFile sends the file's size (tsize)
+*					v1.6.0
+*						- TFTPClient(boolean verbose) constructor that
+*						  skips the output mode prompt
+*						- receive buffer sized to hold a whole window
+*						- late packets from the previous transfer's TID
+*						  are not mistaken for the server's reply
+*					v1.5.0
+*						- output goes through TFTPLog; verbose packet
+*						  echo and hex dump are formatted off this thread
+*					v1.4.0
+*						- windowsize option on readFile/writeFile: several
+*						  blocks per ACK, go-back-N on loss
+*					v1.3.0
+*						- readFile/writeFile: real RRQ/WRQ transfers with
+*						  blksize negotiation (OACK), retransmit on timeout
+*						- MAX_SIZE raised to the largest TFTP packet
+*						- outPort defaults to the server, setOutPort added
+*					v1.2.0
+*						- packets built and decoded with TFTPPacket
+*						- send/receive buffers and packets reused between calls
 *					v1.1.1
 *						-added scanner class from user input, all UI finished
 *					v1.1.0
@@ -38,7 +102,11 @@
 //import external libraries
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 import java.util.*;//need to get text from user
+import java.util.concurrent.*;
 
 
 public class TFTPClient 
@@ -46,14 +114,52 @@ public class TFTPClient
 	//declaring local instance variables
 	private DatagramPacket sentPacket;
 	private DatagramPacket recievedPacket;
-	private DatagramSocket generalSocket;
+	private DatagramSocket generalSocket;		//channel's socket
+	private DatagramChannel channel;			//non-blocking, waited on with selector
+	private Selector selector;
+	private SelectionKey key;
 	private boolean verbose;
-	private int outPort;
+	private TFTPLog.Level summaryLevel = TFTPLog.Level.INFO;	//of the line each transfer ends with
+	private int outPort = IN_PORT_SERVER;
+	private InetAddress serverAddress;		//null for this host
+	private String lastError;
+	
+	//where the request went, and the other end of the transfer in progress
+	//(its TID) once it has answered
+	private InetSocketAddress requestPeer;
+	private InetSocketAddress transferPeer;
+	//and of the one before it, whose late duplicates may still arrive
+	private InetSocketAddress finishedPeer;
+	
+	//retransmission timeout and round trip stats of the transfer in progress,
+	//and when the packet now waiting for an answer was sent (0 if resent)
+	private RttEstimator rtt = new RttEstimator();
+	private long sentAt;
+	
+	//reused for every packet so sending/receiving creates no garbage; both
+	//buffers are direct and come from the BufferPool every client shares,
+	//so DATA goes between the socket and the file without passing through
+	//the heap, or through a direct buffer of the JDK's own
+	private final ByteBuffer sendView = buffers.acquire(MAX_SIZE);
+	private final ByteBuffer receiveView = buffers.acquire(MAX_SIZE);
+	private final TFTPPacket packet = new TFTPPacket();
+	private static final TFTPLog log = TFTPLog.get();
+	private static final BufferPool buffers = BufferPool.shared();
+	
+	//the bytes behind sentPacket and recievedPacket, made on first use
+	private byte[] sentBytes;
+	private byte[] receivedBytes;
 	
 	//declaring local class constants
 	private static final int IN_PORT_ERRORSIM = 23;
 	private static final int IN_PORT_SERVER = 69;
-	private static final int MAX_SIZE = 100;
+	private static final int MAX_SIZE = TFTPPacket.HEADER_SIZE + TFTPOptions.MAX_BLKSIZE;
+	private static final int ABORTED = Integer.MIN_VALUE;
+	private static final String PART = ".part";
+	//there is only the one key: the channel is simply tried again after a
+	//select, and selecting with an action keeps the selected-key set (and
+	//the garbage adding to it makes) out of it
+	private static final java.util.function.Consumer<SelectionKey> IGNORE = k -> {};
 	
 	//declaring local UI variables
 	private Scanner scan=new Scanner(System.in);//allow text input
@@ -61,22 +167,10 @@ public class TFTPClient
 	private boolean validOut=false;
 	
 	
-	//generic constructor
+	//generic constructor, asks the user for the output mode
 	public TFTPClient()
 	{
-		//construct a socket, bind to any local port
-		try
-		{
-			generalSocket = new DatagramSocket();
-		}
-		//enter if socket creation results in failure
-		catch (SocketException se)
-		{
-			se.printStackTrace();
-			System.exit(1);
-		}
-		//initialize echo --> off
-		
+		this(false);
 		
 		while(validOut==false)
 		{
@@ -130,7 +224,56 @@ public class TFTPClient
 	*/
 	}
 	
+	//headless constructor, for scripts and benchmarks: no prompts
+	public TFTPClient(boolean verbose)
+	{
+		//construct a channel, bind to any local port
+		try
+		{
+			channel = DatagramChannel.open();
+			channel.bind(null);
+			channel.configureBlocking(false);
+			selector = Selector.open();
+			key = channel.register(selector, SelectionKey.OP_READ);
+			generalSocket = channel.socket();
+		}
+		//enter if socket creation results in failure
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			System.exit(1);
+		}
+		this.verbose = verbose;
+	}
+	
+	//make sure a whole window of DATA fits in the socket's receive buffer,
+	//otherwise large windows of large blocks are dropped by the kernel
+	private void fitWindow(int blockSize, int windowSize) throws IOException
+	{
+		//the kernel charges each datagram for more than its payload,
+		//so allow twice the window
+		int needed = 2 * windowSize * (blockSize + TFTPPacket.HEADER_SIZE);
+		if (channel.getOption(StandardSocketOptions.SO_RCVBUF) < needed)
+		{
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, needed);
+		}
+	}
+	
 	//generic accessors and mutators
+	//round trip times and retransmits of the last (or current) transfer
+	public RttEstimator getRtt()
+	{
+		return rtt;
+	}
+	//why the last readFile/writeFile returned false, null if it didn't
+	public String getLastError()
+	{
+		return lastError;
+	}
+	public void setServerAddress(InetAddress address)
+	{
+		serverAddress = address;
+	}
 	public DatagramPacket getSentPacket()
 	{
 		return sentPacket;
@@ -164,6 +307,13 @@ public class TFTPClient
 	}
 	
 	
+	//quiet: each transfer's summary line only at DEBUG, for many clients at once
+	public void quietMode(boolean q)
+	{
+		summaryLevel = q ? TFTPLog.Level.DEBUG : TFTPLog.Level.INFO;
+	}
+	
+	
 	//enable/disable test mode
 	public void testMode(boolean t)
 	{
@@ -180,12 +330,33 @@ public class TFTPClient
 	}
 	
 	
+	//send to a port other than the standard ones
+	public void setOutPort(int port)
+	{
+		outPort = port;
+	}
+	
+	
 	//close client properly
 	//***FUNCTIONALITY OF CLIENT WILL CEASE ONCE CALLED***
 	public void close()
 	{
-		//close sockets
-		generalSocket.close();
+		//close sockets, hand the buffers back
+		if (!channel.isOpen())
+		{
+			return;
+		}
+		try
+		{
+			selector.close();
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		buffers.release(sendView);
+		buffers.release(receiveView);
 	}
 	
 	
@@ -195,43 +366,32 @@ public class TFTPClient
 		//generate the data to be sent in datagram packet
 		if(verbose)
 		{
-			System.out.println("Client: Prepping packet containing '" + fileName + "'...");
+			log.message(TFTPLog.Level.INFO, "Client", "Prepping packet containing '" + fileName + "'...");
 		}	
-		//convert various strings to Byte arrays
-		byte[] fileNameBA = fileName.getBytes();
-		byte[] modeBA = mode.getBytes();
-			
-		//compute length of data being sent (metadata include) and create byte array
-		byte[] data = new byte[fileNameBA.length + modeBA.length + 4];
-		int i = 2;
-			
-		//add first 2 bytes of metadata
-		data[0] = 0x00;
-		data[1] = RWval;
-		//add text
-		for(int c=0; c<fileNameBA.length; c++, i++)
-		{
-			data[i] = fileNameBA[c];
-		}
-		//add pesky 0x00
-		data[i] = 0x00;
-		i++;
-		//add mode
-		for(int c=0; c<modeBA.length; c++, i++)
-		{
-			data[i] = modeBA[c];
-		}
-		//add end metadata
-		data[i] = 0x00;
+		//encode [0,R/W,filename,0,mode,0] straight into the send buffer
+		sendView.clear();
+		TFTPPacket.putRequest(sendView, RWval, fileName, mode);
 			
 		
-		//generate and return datagram packet
+		//generate and return datagram packet, over a copy of the request
 		try
 		{
-			sentPacket = new DatagramPacket(data, data.length, InetAddress.getLocalHost(), outPort);
+			int length = sendView.position();
+			if (sentBytes == null)
+			{
+				sentBytes = new byte[MAX_SIZE];
+			}
+			sendView.get(0, sentBytes, 0, length);
+			if (sentPacket == null)
+			{
+				sentPacket = new DatagramPacket(sentBytes, length);
+			}
+			sentPacket.setData(sentBytes, 0, length);
+			sentPacket.setAddress(InetAddress.getLocalHost());
+			sentPacket.setPort(outPort);
 			if(verbose)
 			{
-				System.out.println("Client: Packet successfully created");
+				log.message(TFTPLog.Level.INFO, "Client", "Packet successfully created");
 			}
 		}
 		catch(UnknownHostException e)
@@ -245,81 +405,654 @@ public class TFTPClient
 	//send and echo the datagram
 	public void sendAndEcho()
 	{
-		//print packet info IF in verbose
-		if(verbose)
-		{
-			byte[] data = sentPacket.getData();
-			int packetSize = sentPacket.getLength();
-			System.out.println("Client: Sending packet...");
-			System.out.println("        Host:  " + sentPacket.getAddress());
-			System.out.println("        Port:  " + sentPacket.getPort());
-			System.out.println("        Bytes: " + sentPacket.getLength());
-			System.out.println("        Cntn:  " + (new String(data,0,packetSize)));
-			System.out.printf("%s", "        Cntn:  ");
-			
-			for(int i = 0; i < packetSize; i++)
-			{
-				System.out.printf("0x%02X", data[i]);
-				System.out.printf("%-2c", ' ');
-			}
-			System.out.println("");
-		}
+		//copy into the (direct) send buffer, record packet info IF in verbose
+		sendView.clear();
+		sendView.put(sentPacket.getData(), sentPacket.getOffset(), sentPacket.getLength());
+		sendView.flip();
+		echo(TFTPLog.Event.PACKET_SENT, sendView, sentPacket.getSocketAddress());
 		//send packet
 		try
 		{
-			generalSocket.send(sentPacket);
+			transmit(sendView, sentPacket.getSocketAddress());
 		}
 		catch (IOException e)
 		{
 			e.printStackTrace();
 			System.exit(1);
 		}
-		System.out.println("Client: Packet Sent");
+		log.message(TFTPLog.Level.INFO, "Client", "Packet Sent");
 	}
 	
 	
 	//receive and echo received packet
 	public void receiveAndEcho()
 	{
-		//prep for response
-		byte[] response = new byte[MAX_SIZE];
-		recievedPacket = new DatagramPacket(response, response.length);
-				
 		//wait for response
-		System.out.println("Client: Waiting for response...");
+		log.message(TFTPLog.Level.INFO, "Client", "Waiting for response...");
+		SocketAddress from = null;
 		try
 		{
-			generalSocket.receive(recievedPacket);
+			receiveView.clear();
+			from = receive(receiveView, 0);
+			receiveView.flip();
+			int length = receiveView.remaining();
+			if (receivedBytes == null)
+			{
+				receivedBytes = new byte[MAX_SIZE];
+			}
+			receiveView.get(0, receivedBytes, 0, length);
+			if (recievedPacket == null)
+			{
+				recievedPacket = new DatagramPacket(receivedBytes, length, from);
+			}
+			recievedPacket.setData(receivedBytes, 0, length);
+			recievedPacket.setSocketAddress(from);
 		}
 		catch(IOException e)
 		{
 			e.printStackTrace();
 			System.exit(1);
 		}
-		System.out.println("Client: Packet received");
+		log.message(TFTPLog.Level.INFO, "Client", "Packet received");
 		
-		//Process and print the response
-		if(verbose)
+		//Process and record the response IF in verbose
+		echo(TFTPLog.Event.PACKET_RECEIVED, receiveView, from);
+	}
+	
+	
+	/* download remoteName from the server into localName (RRQ)
+	 * asks for blockSize byte blocks with the blksize option unless it is 512
+	 * returns true once the last (short) block has arrived; localName is
+	 * only replaced then, and left as it was if the read fails
+	 */
+	public boolean readFile(String remoteName, String localName, int blockSize)
+	throws IOException
+	{
+		return readFile(remoteName, localName, blockSize, 1);
+	}
+	
+	
+	/* as above, also asking the server to send windowSize blocks per ACK
+	 * (windowsize option) unless it is 1
+	 */
+	public boolean readFile(String remoteName, String localName, int blockSize, int windowSize)
+	throws IOException
+	{
+		//ask for the file's size as well, to set the local file's length up
+		//front; only alongside other options, a bare RRQ saves the OACK's
+		//round trip
+		Map<String, String> requested = TFTPOptions.request(blockSize, windowSize);
+		if (!requested.isEmpty())
 		{
-			byte[] data = recievedPacket.getData();
-			int packetSize = recievedPacket.getLength();
-			System.out.println("        Source: " + recievedPacket.getAddress());
-			System.out.println("        Port:   " + recievedPacket.getPort());
-			System.out.println("        Bytes:  " + packetSize);
-			System.out.println("        Cntn:  " + (new String(data,0,packetSize)));
-			System.out.printf("%s", "        Cntn:  ");
-			for(int i = 0; i < packetSize; i++)
+			requested.put(TFTPOptions.TSIZE, "0");
+		}
+		int negotiated = TFTPPacket.DEFAULT_BLOCK_SIZE;
+		int window = 1;
+		int unacked = 0;	//blocks taken in order since our last ACK
+		int expected = 1;
+		long bytes = 0;
+		
+		//download beside the file and only rename over it once complete,
+		//so a refusal or a timeout leaves whatever is there alone; open (and
+		//empty, if one was left behind) the part file first: truncating a
+		//large one can take the disk long enough for the server to give up
+		Path target = Paths.get(localName);
+		Path part = target.resolveSibling(target.getFileName() + PART);
+		FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		boolean complete = false;
+		
+		try
+		{
+			//send RRQ, the server answers from a new TID
+			startTransfer();
+			sendView.clear();
+			TFTPPacket.putRequest(sendView, TFTPPacket.RRQ, remoteName, "octet", requested);
+			int lastLength = sendView.position();
+			send(lastLength);
+			
+			for(;;)
 			{
-				System.out.printf("0x%02X", data[i]);
-				System.out.printf("%-2c", ' ');
+				TFTPPacket reply = awaitReply(lastLength);
+				if (reply == null)
+				{
+					return fail("server stopped responding, read abandoned");
+				}
+				
+				switch (reply.opcode())
+				{
+					//options accepted, ACK them as block 0
+					case TFTPPacket.OACK:
+						if (expected != 1 || requested.isEmpty())
+						{
+							break;
+						}
+						TFTPOptions options = TFTPOptions.accept(reply, requested);
+						if (options == null)
+						{
+							sendError(TFTPPacket.ERR_OPTION_REFUSED, "Bad option acknowledgement");
+							return fail("bad option acknowledgement");
+						}
+						negotiated = options.getBlockSize();
+						window = options.getWindowSize();
+						fitWindow(negotiated, window);
+						if (options.getTransferSize() > 0)
+						{
+							String problem;
+							try
+							{
+								problem = sizeFile(file, part, options.getTransferSize());
+							}
+							catch (IOException e)
+							{
+								problem = e.toString();
+							}
+							if (problem != null)
+							{
+								//tell the server, rather than leave it waiting for our ACK
+								sendError(TFTPPacket.ERR_DISK_FULL, "Disk full or allocation exceeded");
+								return fail("could not make room for " + localName + ": " + problem);
+							}
+						}
+						lastLength = putAck(0);
+						send(lastLength);
+						continue;
+						
+					case TFTPPacket.DATA:
+						if (reply.block() == (expected & 0xFFFF))
+						{
+							//write the data straight out of the receive buffer, at
+							//the block's place in the file
+							int length = reply.dataLength();
+							receiveView.limit(reply.dataOffset() + length);
+							receiveView.position(reply.dataOffset());
+							long at = (long)(expected - 1) * negotiated;
+							while (receiveView.hasRemaining())
+							{
+								at += file.write(receiveView, at);
+							}
+							bytes += length;
+							
+							//ACK the last block of each window and the final block;
+							//in between, keep the ACK ready in case we time out
+							lastLength = putAck(expected);
+							unacked++;
+							if (length < negotiated || unacked >= window)
+							{
+								send(lastLength);
+								unacked = 0;
+							}
+							if (length < negotiated)
+							{
+								//tsize was only a promise
+								if (file.size() > bytes)
+								{
+									file.truncate(bytes);
+								}
+								complete = true;
+								log.message(summaryLevel, "Client", "read " + remoteName + " (" + bytes + " bytes, "
+										+ expected + " blocks of " + negotiated + ", window " + window + "; " + rtt + ")");
+								return true;
+							}
+							expected++;
+						}
+						else
+						{
+							//a lost ACK or a gap in the window: ACK the last block we
+							//have in order so the server goes back to the one after it
+							resend(lastLength);
+							unacked = 0;
+						}
+						continue;
+						
+					case TFTPPacket.ERROR:
+						return fail("server refused read: " + reply.describe());
+				}
+				
+				sendError(TFTPPacket.ERR_ILLEGAL_OPERATION, "Unexpected packet");
+				return fail("unexpected packet");
+			}
+		}
+		finally
+		{
+			file.close();
+			if (complete)
+			{
+				Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+			}
+			else
+			{
+				Files.deleteIfExists(part);
 			}
-			System.out.printf("%-2c", '\n');
 		}
 	}
 	
 	
-	public static void main (String[] args) 
+	/* set a download's length to the size the server gave, so it isn't
+	 * grown block by block; part is the file open as file (the local file
+	 * itself may not exist yet)
+	 * returns why not if the disk hasn't room for it, else null
+	 */
+	private static String sizeFile(FileChannel file, Path part, long size) throws IOException
 	{
+		if (Files.getFileStore(part).getUsableSpace() < size)
+		{
+			return "no room for " + size + " bytes";
+		}
+		//Java has no fallocate, so on most file systems this leaves the
+		//file sparse until it is written
+		file.write(ByteBuffer.allocate(1), size - 1);
+		return null;
+	}
+	
+	
+	/* upload localName to the server as remoteName (WRQ)
+	 * asks for blockSize byte blocks with the blksize option unless it is 512
+	 * returns true once the server has ACKed the last (short) block
+	 */
+	public boolean writeFile(String localName, String remoteName, int blockSize)
+	throws IOException
+	{
+		return writeFile(localName, remoteName, blockSize, 1);
+	}
+	
+	
+	/* as above, also sending windowSize blocks per ACK (windowsize option)
+	 * unless it is 1
+	 */
+	public boolean writeFile(String localName, String remoteName, int blockSize, int windowSize)
+	throws IOException
+	{
+		//open the file before asking for anything, so one that can't be read
+		//never leaves an upload behind on the server; tsize, from the open
+		//file, lets the server check for space and size the file up front
+		TFTPReader source = new TFTPReader(localName, Math.max(blockSize, TFTPPacket.DEFAULT_BLOCK_SIZE));
+		try
+		{
+			Map<String, String> requested = TFTPOptions.request(blockSize, windowSize, source.size());
+			int negotiated = TFTPPacket.DEFAULT_BLOCK_SIZE;
+			int window = 1;
+			
+			//send WRQ, the server answers from a new TID with OACK or ACK 0
+			startTransfer();
+			sendView.clear();
+			TFTPPacket.putRequest(sendView, TFTPPacket.WRQ, remoteName, "octet", requested);
+			int lastLength = sendView.position();
+			send(lastLength);
+			
+			TFTPPacket reply = awaitReply(lastLength);
+			if (reply == null)
+			{
+				return fail("server stopped responding, write abandoned");
+			}
+			if (reply.opcode() == TFTPPacket.OACK && !requested.isEmpty())
+			{
+				TFTPOptions options = TFTPOptions.accept(reply, requested);
+				if (options == null)
+				{
+					sendError(TFTPPacket.ERR_OPTION_REFUSED, "Bad option acknowledgement");
+					return fail("bad option acknowledgement");
+				}
+				negotiated = options.getBlockSize();
+				window = options.getWindowSize();
+			}
+			else if (reply.opcode() != TFTPPacket.ACK || reply.block() != 0)
+			{
+				return fail("server refused write: " + reply.describe());
+			}
+			
+			//send a window of blocks, then carry on from whatever the server
+			//ACKs; on a timeout send the same window again (go-back-N)
+			//a block's send to ACK time is only a round trip sample if the
+			//block was sent once (Karn's rule)
+			source.setBlockSize(negotiated);
+			int count = source.blockCount();
+			long[] blockSent = new long[window];	//by block % window, 0 if resent
+			int base = 1;
+			int highest = 0;						//newest block sent so far
+			while (base <= count)
+			{
+				int last = Math.min(base + window - 1, count);
+				for (int n = base; n <= last; n++)
+				{
+					sendView.clear();
+					TFTPPacket.putData(sendView, n, source.block(n));
+					send(sendView.position());
+					blockSent[n % window] = (n > highest) ? sentAt : 0;
+				}
+				rtt.retransmitted(Math.max(0, Math.min(highest, last) - base + 1));
+				highest = Math.max(highest, last);
+				
+				int acked = awaitAck(base - 1, last);
+				if (acked == ABORTED)
+				{
+					return false;	//awaitAck has said why
+				}
+				if (acked < base)
+				{
+					rtt.timeout();
+					if (rtt.expired())
+					{
+						return fail("server stopped responding, write abandoned");
+					}
+					continue;
+				}
+				long sent = blockSent[acked % window];
+				if (sent != 0)
+				{
+					rtt.sample(System.nanoTime() - sent);
+				}
+				else
+				{
+					rtt.heard();
+				}
+				base = acked + 1;
+			}
+			log.message(summaryLevel, "Client", "wrote " + remoteName + " (" + source.size() + " bytes, "
+					+ count + " blocks of " + negotiated + ", window " + window + "; " + rtt + ")");
+			return true;
+		}
+		finally
+		{
+			source.close();
+		}
+	}
+	
+	
+	//forget the last transfer's TID (but keep it to spot its stragglers),
+	//and start timing afresh
+	private void startTransfer() throws UnknownHostException
+	{
+		finishedPeer = transferPeer;
+		transferPeer = null;
+		requestPeer = new InetSocketAddress(server(), outPort);
+		rtt = new RttEstimator();
+		lastError = null;
+	}
+	
+	
+	//where requests go: the server's address, this host unless set
+	private InetAddress server() throws UnknownHostException
+	{
+		return (serverAddress != null) ? serverAddress : InetAddress.getLocalHost();
+	}
+	
+	
+	//the transfer failed: say why, keep it for getLastError(), return false
+	private boolean fail(String why)
+	{
+		lastError = why;
+		log.message(TFTPLog.Level.WARN, "Client", why);
+		return false;
+	}
+	
+	
+	/* wait up to the retransmission timeout for the server to ACK a block
+	 * after acked, up to last
+	 * block numbers wrap at 65535 on the wire, so the ACK is mapped back onto
+	 * absolute block numbers; duplicate ACKs are ignored
+	 * returns the block ACKed, acked itself on timeout, ABORTED on ERROR
+	 */
+	private int awaitAck(int acked, int last) throws IOException
+	{
+		long deadline = System.currentTimeMillis() + rtt.timeoutMillis();
+		long left;
+		while ((left = deadline - System.currentTimeMillis()) > 0)
+		{
+			TFTPPacket reply = receiveOnce(left);
+			if (reply == null)
+			{
+				break;
+			}
+			if (reply.opcode() == TFTPPacket.ERROR)
+			{
+				fail("server ended write: " + reply.describe());
+				return ABORTED;
+			}
+			if (reply.opcode() == TFTPPacket.ACK)
+			{
+				int ahead = (reply.block() - acked) & 0xFFFF;
+				if (ahead >= 1 && ahead <= last - acked)
+				{
+					return acked + ahead;
+				}
+			}
+		}
+		return acked;
+	}
+	
+	
+	/* wait for the next packet of the transfer in progress
+	 * the last packet sent (first lastLength bytes of sendView) is sent
+	 * again each time the retransmission timeout runs out, and the timeout
+	 * doubles; returns null once the server is given up on
+	 */
+	private TFTPPacket awaitReply(int lastLength) throws IOException
+	{
+		for(;;)
+		{
+			TFTPPacket reply = receiveOnce(rtt.timeoutMillis());
+			if (reply != null)
+			{
+				if (sentAt != 0)
+				{
+					rtt.sample(System.nanoTime() - sentAt);
+					sentAt = 0;
+				}
+				else
+				{
+					rtt.heard();
+				}
+				return reply;
+			}
+			rtt.timeout();
+			if (rtt.expired())
+			{
+				return null;
+			}
+			resend(lastLength);
+		}
+	}
+	
+	
+	/* receive one packet of the transfer in progress, or null if none
+	 * comes within millis; the first reply fixes the server's TID, others
+	 * are told ERROR 5
+	 * a packet that isn't well formed is dropped, as if lost on the way,
+	 * so callers can read its fields (block numbers etc.) without checking
+	 */
+	private TFTPPacket receiveOnce(long millis) throws IOException
+	{
+		for(;;)
+		{
+			receiveView.clear();
+			SocketAddress from = receive(receiveView, millis);
+			if (from == null)
+			{
+				return null;
+			}
+			receiveView.flip();
+			echo(TFTPLog.Event.PACKET_RECEIVED, receiveView, from);
+			packet.wrap(receiveView);
+			
+			if (transferPeer != null && !from.equals(transferPeer))
+			{
+				rejectStranger(from);
+				continue;
+			}
+			if (!packet.isValid())
+			{
+				continue;
+			}
+			if (transferPeer == null)
+			{
+				//a leftover from the last transfer is not the server's answer;
+				//a proxy may answer from the same port every time, so only
+				//packets that can't start a transfer are dropped
+				if (from.equals(finishedPeer) && !startsTransfer(packet))
+				{
+					continue;
+				}
+				transferPeer = (InetSocketAddress)from;
+			}
+			return packet;
+		}
+	}
+	
+	
+	/* receive a datagram into buffer, waiting up to millis (for ever if 0)
+	 * for one to arrive; returns who sent it, or null if nothing came
+	 */
+	private SocketAddress receive(ByteBuffer buffer, long millis) throws IOException
+	{
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		for(;;)
+		{
+			SocketAddress from = channel.receive(buffer);
+			if (from != null)
+			{
+				return from;
+			}
+			long left = deadline - System.nanoTime();
+			if (millis > 0 && left <= 0)
+			{
+				return null;
+			}
+			selector.select(IGNORE, millis > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)) : 0);
+		}
+	}
+	
+	
+	//send buffer (position to limit) to, waiting while the socket's send
+	//buffer is full
+	private void transmit(ByteBuffer buffer, SocketAddress to) throws IOException
+	{
+		while (channel.send(buffer, to) == 0)
+		{
+			key.interestOps(SelectionKey.OP_WRITE);
+			selector.select(IGNORE);
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+	
+	
+	//whether p can be the server's first answer to a request
+	private static boolean startsTransfer(TFTPPacket p)
+	{
+		if (!p.isValid())
+		{
+			return false;
+		}
+		switch (p.opcode())
+		{
+			case TFTPPacket.OACK:
+			case TFTPPacket.ERROR:
+				return true;
+			case TFTPPacket.DATA:
+				return p.block() == 1;
+			case TFTPPacket.ACK:
+				return p.block() == 0;
+			default:
+				return false;
+		}
+	}
+	
+	
+	//send the first length bytes of sendView to the transfer's TID
+	//(or to the request port until the server has answered)
+	private void send(int length) throws IOException
+	{
+		InetSocketAddress to = (transferPeer != null) ? transferPeer : requestPeer;
+		sendView.limit(length);
+		sendView.position(0);
+		echo(TFTPLog.Event.PACKET_SENT, sendView, to);
+		transmit(sendView, to);
+		sentAt = System.nanoTime();
+	}
+	
+	
+	//send the packet in sendView again; an answer to it can't be timed,
+	//it could be to either copy
+	private void resend(int length) throws IOException
+	{
+		rtt.retransmitted(1);
+		send(length);
+		sentAt = 0;
+	}
+	
+	
+	//build an ACK in sendView, returns its length
+	private int putAck(int block)
+	{
+		sendView.clear();
+		TFTPPacket.putAck(sendView, block);
+		return sendView.position();
+	}
+	
+	
+	//end the transfer in progress with an ERROR
+	private void sendError(int code, String message) throws IOException
+	{
+		sendView.clear();
+		TFTPPacket.putError(sendView, code, message);
+		send(sendView.position());
+	}
+	
+	
+	//answer a packet from a host that isn't part of this transfer, without
+	//touching sendView (it still holds our last packet)
+	private void rejectStranger(SocketAddress stranger) throws IOException
+	{
+		String message = "Unknown transfer ID";
+		ByteBuffer error = buffers.acquire(TFTPPacket.errorSize(message));
+		TFTPPacket.putError(error, TFTPPacket.ERR_UNKNOWN_TID, message);
+		error.flip();
+		try
+		{
+			transmit(error, stranger);
+		}
+		finally
+		{
+			buffers.release(error);
+		}
+	}
+	
+	
+	/* record a packet in the log when in verbose mode
+	 * only the opcode, block and length are kept, plus a copy of the
+	 * bytes for the hex dump; formatting happens on the log's thread
+	 */
+	private void echo(TFTPLog.Event event, ByteBuffer data, SocketAddress peer)
+	{
+		if (!verbose || !log.isEnabled(TFTPLog.Level.INFO))
+		{
+			return;
+		}
+		int length = data.remaining();
+		int opcode = packet.wrap(data).opcode();
+		int block = ((opcode == TFTPPacket.DATA || opcode == TFTPPacket.ACK) && packet.isValid()) ? packet.block() : 0;
+		log.packet(TFTPLog.Level.INFO, event, "Client", opcode, block, length, peer);
+		byte[] copy = new byte[length];
+		data.duplicate().get(copy);
+		log.record(TFTPLog.Level.INFO, TFTPLog.Event.DUMP, "Client", 0, 0, length, copy, null);
+	}
+	
+	
+	public static void main (String[] args) throws IOException
+	{
+		//headless load generation: TFTPClient load key=value...
+		if (args.length > 0 && args[0].equals("load"))
+		{
+			TFTPLoad.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		//manifest of gets and puts: TFTPClient batch <manifest> key=value...
+		if (args.length > 0 && args[0].equals("batch"))
+		{
+			TFTPBatch.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		
 		//declaring local variables
 		TFTPClient client = new TFTPClient();
 		byte flipFlop = 0x01;
@@ -349,7 +1082,7 @@ public class TFTPClient
 				flipFlop = 0x01;
 			}
 			
-			System.out.println("----------------------------------------\n");
+			log.message(TFTPLog.Level.INFO, null, "----------------------------------------");
 		}
 		
 		//close client
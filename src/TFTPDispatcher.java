@@ -0,0 +1,585 @@
+/**
+*Class:             TFTPDispatcher.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.7.1
+*
+*Purpose:           The server minus its window. Owns the request port's
+*					TFTPListener and the TransferExecutor, and turns each
+*					queued request into a readThread or writeThread (or an
+*					ERROR back to the sender). TFTPServer drives one of these
+*					from its GUI; main() here runs the same server headless,
+*					which is what scripts and the benchmarks use.
+*
+*					Requests are counted in TFTPMetrics, which this exports
+*					(see there for the JMX bean and -Dtftp.metricsPort).
+*
+*					Every transfer is tracked in a SessionRegistry until it
+*					ends. shutdown() stops intake, gives the transfers in
+*					flight -Dtftp.shutdownGrace ms (10000) to finish and then
+*					asks the rest to stop; the headless server does this on
+*					exit (Ctrl-C, SIGTERM) too.
+*
+*					A client whose answer is slow sends its request again.
+*					The same request from the same address and TID as a
+*					transfer that hasn't heard from that client yet, within
+*					-Dtftp.duplicateWindow ms (the give-up time), is
+*					left to that transfer, which is already answering it,
+*					instead of starting a second one; these are counted as
+*					tftp_requests_duplicate_total.
+*
+*					-Dtftp.transferMode picks how transfers are run: POOL
+*					(a thread each from a pool of -Dtftp.maxTransfers, 64),
+*					VIRTUAL (a virtual thread each) or LOOP (spread over
+*					-Dtftp.loops TransferLoops, up to -Dtftp.maxTransfers,
+*					16384, at once; the process needs a file descriptor per
+*					transfer for its TID, and one per file being read).
+*
+*					One listener thread and one dispatching thread take every
+*					request. -Dtftp.shards=N (1) opens N listeners on the
+*					port instead (SO_REUSEPORT, which Linux has; the server
+*					won't start where it isn't supported), each a shard with
+*					its own intake and dispatching threads, receive buffer,
+*					codec and part of the session table. The kernel picks the
+*					shard by the client's address and port, so a client's
+*					repeated request finds its transfer in its own shard,
+*					and shards never wait on each other; only the transfers
+*					themselves are shared. The metrics are summed over them.
+*
+*					A request in netascii mode gets a transfer that translates
+*					line ends as it goes (see Netascii); any other mode is
+*					served as octet.
+*
+*					Packet buffers, here and in the transfers, come from the
+*					shared BufferPool; its usage is published as the
+*					tftp_buffers_* gauges, and with -Dtftp.poolDebug any
+*					buffer still out once shutdown() is done is logged. The
+*					shared BlockCache's hits, misses and size are published
+*					as the tftp_cache_* gauges.
+*
+*
+*Update Log:        v1.7.1
+*                       - BlockCache gauges
+*                   v1.7.0
+*                       - packet buffers from the BufferPool, its gauges
+*                         and leak report
+*                   v1.6.0
+*                       - netascii requests translated
+*                   v1.5.0
+*                       - -Dtftp.shards listeners on the request port
+*                   v1.4.0
+*                       - LOOP transfer mode, with its own default
+*                         maxTransfers
+*                   v1.3.0
+*                       - repeated requests left to the transfer serving them
+*                   v1.2.0
+*                       - transfers tracked in a SessionRegistry, graceful
+*                         shutdown()
+*                   v1.1.0
+*                       - requests, refusals and intake/executor gauges
+*                         counted in TFTPMetrics
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.function.*;
+
+
+public class TFTPDispatcher implements Runnable
+{
+	//types of requests we can receive
+	public static enum Request { READ, WRITE, ERROR };
+
+	//well-known port requests arrive on
+	public static final int SERVER_PORT = 69;
+
+	//how transfers are run, and limits on concurrent transfers, overridable
+	//with -Dtftp.maxTransfers etc.; a loop holds far more than a pool
+	public static final TransferExecutor.Mode TRANSFER_MODE =
+			TransferExecutor.Mode.valueOf(System.getProperty("tftp.transferMode", "POOL").toUpperCase());
+	public static final int MAX_TRANSFERS = Integer.getInteger("tftp.maxTransfers",
+			TRANSFER_MODE == TransferExecutor.Mode.LOOP ? 16384 : 64);
+	public static final int TRANSFER_QUEUE = Integer.getInteger("tftp.transferQueue", 256);
+
+	//how long shutdown() waits for transfers to finish, then to stop, ms
+	public static final long SHUTDOWN_GRACE = Long.getLong("tftp.shutdownGrace", 10000);
+	public static final long STOP_WAIT = 2000;
+
+	//how long after a request the same request is taken as sent again, ms
+	public static final long DUPLICATE_WINDOW = Long.getLong("tftp.duplicateWindow", RttEstimator.GIVE_UP);
+
+	//everything the server reports goes through the shared asynchronous log
+	private static final TFTPLog log = TFTPLog.get();
+	private static final TFTPMetrics metrics = TFTPMetrics.get();
+
+	//request listeners sharing the port, each with its own thread and part
+	//of the session table, e.g. one per processor
+	public static final int SHARDS = Integer.getInteger("tftp.shards", 1);
+
+	//declaring local instance variables
+	private final Shard[] shards;
+	private final ThreadGroup transferGroup = new ThreadGroup("ServerThread");
+	private final TransferExecutor transfers;
+	private boolean started;
+	private volatile Thread serving;
+
+
+	//generic constructor, binds the request port straight away
+	public TFTPDispatcher(int port) throws IOException
+	{
+		this(port, SHARDS);
+	}
+
+
+	/* as above, with shards listeners on the port; port 0 binds the first
+	 * to a free port and the rest to the same one
+	 */
+	public TFTPDispatcher(int port, int shardCount) throws IOException
+	{
+		if (shardCount < 1)
+		{
+			throw new IllegalArgumentException("shards must be >= 1");
+		}
+		shards = new Shard[shardCount];
+		try
+		{
+			for (int i = 0; i < shardCount; i++)
+			{
+				shards[i] = new Shard(i, (i == 0) ? port : shards[0].listener.getLocalPort());
+			}
+		}
+		catch (IOException e)
+		{
+			for (Shard shard : shards)
+			{
+				if (shard != null)
+				{
+					shard.listener.close();
+				}
+			}
+			throw e;
+		}
+		transfers = new TransferExecutor(TRANSFER_MODE, MAX_TRANSFERS, TRANSFER_QUEUE, transferGroup);
+
+		//the newest server's numbers replace any earlier one's
+		metrics.gauge("tftp_listener_received_total", () -> total(s -> s.listener.getReceived()));
+		metrics.gauge("tftp_listener_dropped_total", () -> total(s -> s.listener.getDropped()));
+		metrics.gauge("tftp_listener_backlog", () -> total(s -> s.listener.getBacklog()));
+		metrics.gauge("tftp_transfers_running", transfers::getActive);
+		metrics.gauge("tftp_transfers_rejected_total", transfers::getRejected);
+		metrics.gauge("tftp_sessions", () -> total(s -> s.sessions.size()));
+		metrics.gauge("tftp_write_queued", () -> WriteBehind.shared().getQueued());
+		BufferPool pool = BufferPool.shared();
+		metrics.gauge("tftp_buffers_acquired_total", pool::getAcquired);
+		metrics.gauge("tftp_buffers_allocated_total", pool::getAllocated);
+		metrics.gauge("tftp_buffers_cache_hits_total", pool::getCacheHits);
+		metrics.gauge("tftp_buffers_shared_hits_total", pool::getSharedHits);
+		metrics.gauge("tftp_buffers_dropped_total", pool::getDropped);
+		metrics.gauge("tftp_buffers_outstanding", pool::getOutstanding);
+		metrics.gauge("tftp_buffers_pooled_bytes", pool::getPooledBytes);
+		BlockCache cache = BlockCache.shared();
+		metrics.gauge("tftp_cache_hits_total", cache::getHits);
+		metrics.gauge("tftp_cache_misses_total", cache::getMisses);
+		metrics.gauge("tftp_cache_evictions_total", cache::getEvictions);
+		metrics.gauge("tftp_cache_invalidations_total", cache::getInvalidations);
+		metrics.gauge("tftp_cache_bytes", cache::getBytes);
+		metrics.export();
+	}
+
+
+	//generic accessors, the first shard's where there is one each
+	public TFTPListener getListener()
+	{
+		return shards[0].listener;
+	}
+	public TFTPListener getListener(int shard)
+	{
+		return shards[shard].listener;
+	}
+	public TransferExecutor getTransfers()
+	{
+		return transfers;
+	}
+	public ThreadGroup getThreadGroup()
+	{
+		return transferGroup;
+	}
+	public SessionRegistry getSessions()
+	{
+		return shards[0].sessions;
+	}
+	public SessionRegistry getSessions(int shard)
+	{
+		return shards[shard].sessions;
+	}
+	public int getShards()
+	{
+		return shards.length;
+	}
+	public int getLocalPort()
+	{
+		return shards[0].listener.getLocalPort();
+	}
+
+
+	/* start receiving on the request port, requests queue until taken
+	 * every shard but the first dispatches on a thread of its own; the
+	 * first is left to run(), or the caller
+	 */
+	public synchronized void start()
+	{
+		if (!started)
+		{
+			started = true;
+			for (Shard shard : shards)
+			{
+				shard.start();
+			}
+		}
+	}
+
+
+	//take and dispatch the first shard's requests until closed
+	public void run()
+	{
+		serving = Thread.currentThread();
+		start();
+		shards[0].run();
+	}
+
+
+	/* stop taking requests, give the transfers in flight up to graceMillis
+	 * to finish and then ask any still going to stop
+	 * returns true if every transfer had ended by the time it returns
+	 */
+	public boolean shutdown(long graceMillis) throws InterruptedException
+	{
+		close();
+		log.message(TFTPLog.Level.INFO, "Server", "shutting down, " + total(s -> s.sessions.size()) + " transfers in flight");
+		for (Shard shard : shards)
+		{
+			shard.sessions.drain(0);
+		}
+		if (awaitEmpty(graceMillis))
+		{
+			BufferPool.shared().reportLeaks();
+			return true;
+		}
+		int stopped = 0;
+		for (Shard shard : shards)
+		{
+			stopped += shard.sessions.stopAll();
+		}
+		boolean ended = awaitEmpty(STOP_WAIT);
+		log.message(ended ? TFTPLog.Level.INFO : TFTPLog.Level.WARN, "Server", "stopped " + stopped
+				+ " transfers after " + graceMillis + "ms" + (ended ? "" : ", still ending: " + census()));
+		if (ended)
+		{
+			BufferPool.shared().reportLeaks();
+		}
+		return ended;
+	}
+
+
+	//stop taking requests; transfers already running are left to finish
+	public void close()
+	{
+		for (Shard shard : shards)
+		{
+			shard.close();
+		}
+		transfers.shutdown();
+		Thread t = serving;
+		if (t != null)
+		{
+			t.interrupt();
+		}
+	}
+
+
+	//hand one request to a transfer thread, or refuse it (as the first shard)
+	public void dispatch(TFTPListener.Datagram request)
+	{
+		shards[0].dispatch(request);
+	}
+
+
+	//build the transfer for a request, as the first shard (see Shard.route())
+	public ServerThread route(TFTPListener.Datagram request)
+	{
+		return shards[0].route(request);
+	}
+
+
+	//answer a request with a TFTP ERROR from the first shard's port
+	public void sendError(TFTPListener.Datagram request, int code, String message)
+	{
+		shards[0].sendError(request, code, message);
+	}
+
+
+	//wait up to millis in all for every shard's transfers to end
+	private boolean awaitEmpty(long millis) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + millis;
+		boolean empty = true;
+		for (Shard shard : shards)
+		{
+			empty &= shard.sessions.awaitEmpty(Math.max(0, deadline - System.currentTimeMillis()));
+		}
+		return empty;
+	}
+
+
+	//how many transfers are in each stage of their lifecycle, over all shards
+	private Map<ServerThread.Lifecycle, Integer> census()
+	{
+		Map<ServerThread.Lifecycle, Integer> counts = shards[0].sessions.census();
+		for (int i = 1; i < shards.length; i++)
+		{
+			shards[i].sessions.census().forEach((l, n) -> counts.merge(l, n, Integer::sum));
+		}
+		return counts;
+	}
+
+
+	//a number summed over the shards
+	private long total(ToLongFunction<Shard> value)
+	{
+		long sum = 0;
+		for (Shard shard : shards)
+		{
+			sum += value.applyAsLong(shard);
+		}
+		return sum;
+	}
+
+
+	/* one listener on the request port and everything needed to turn its
+	 * requests into transfers: the kernel hands a client's requests to the
+	 * same listener every time, so the transfers for that client are only
+	 * ever looked for in its shard's SessionRegistry, and shards share
+	 * nothing but the TransferExecutor
+	 */
+	private class Shard implements Runnable
+	{
+		private final int index;
+		private final TFTPListener listener;
+		private final SessionRegistry sessions = new SessionRegistry();
+		private final TFTPPacket packet = new TFTPPacket();	//reused for every request
+		private int threadNum = 0;
+		private Thread intake;
+		private Thread dispatching;
+
+		Shard(int index, int port) throws IOException
+		{
+			this.index = index;
+			listener = new TFTPListener(port, TFTPListener.DEFAULT_QUEUE_LIMIT, shards.length > 1);
+		}
+
+
+		//its intake thread, and a dispatching thread unless it is the first
+		void start()
+		{
+			intake = new Thread(listener, "TFTPListener" + suffix());
+			intake.setDaemon(true);
+			intake.start();
+			if (index > 0)
+			{
+				dispatching = new Thread(this, "TFTPDispatcher" + suffix());
+				dispatching.setDaemon(true);
+				dispatching.start();
+			}
+		}
+
+
+		//take and dispatch requests until closed
+		public void run()
+		{
+			try
+			{
+				for(;;)
+				{
+					dispatch(listener.take());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				//closed
+			}
+		}
+
+
+		void close()
+		{
+			listener.close();
+			if (dispatching != null)
+			{
+				dispatching.interrupt();
+			}
+		}
+
+
+		//hand one request to a transfer thread, or refuse it
+		void dispatch(TFTPListener.Datagram request)
+		{
+			ServerThread transfer = route(request);
+			if (transfer == null)
+			{
+				return;
+			}
+			sessions.add(transfer);
+			if (!transfers.submit(transfer))
+			{
+				//every transfer slot and queue slot is taken
+				transfer.closed();
+				sendError(request, TFTPPacket.ERR_NOT_DEFINED, "Server busy");
+			}
+		}
+
+
+		/* decide what a request is and build the transfer that will serve it
+		 * an invalid request is answered with an ERROR here and null returned,
+		 * as is a request sent again while its transfer is still answering it;
+		 * nothing is started, that is left to dispatch()
+		 */
+		ServerThread route(TFTPListener.Datagram request)
+		{
+			packet.wrap(request.getBuffer());
+			metrics.request(packet.opcode());
+
+			//record the received datagram, the log formats it later on its own
+			//thread; the bytes are only dumped at TRACE
+			log.record(TFTPLog.Level.DEBUG, TFTPLog.Event.REQUEST_RECEIVED, "Server",
+					packet.opcode(), request.getLength(), 0, request.getSource(), null);
+			log.record(TFTPLog.Level.TRACE, TFTPLog.Event.DUMP, "Server",
+					0, 0, request.getLength(), request.getData(), null);
+
+			//the codec checks for a non-empty filename and mode, each terminated
+			//by a 0 byte, and nothing but options after them
+			Request req;
+			if (!packet.isValid())
+			{
+				req = Request.ERROR;
+			}
+			else if (packet.opcode() == TFTPPacket.RRQ)
+			{
+				req = Request.READ;
+			}
+			else if (packet.opcode() == TFTPPacket.WRQ)
+			{
+				req = Request.WRITE;
+			}
+			else
+			{
+				req = Request.ERROR;
+			}
+
+			//the client's request again, already being served: a second transfer
+			//would only double the load when the server is already behind
+			if (req != Request.ERROR)
+			{
+				ServerThread existing = sessions.get(request.getSource());
+				if (existing != null && existing.isDuplicate(request.getData(), request.getReceivedAt(), DUPLICATE_WINDOW))
+				{
+					metrics.duplicate();
+					log.record(TFTPLog.Level.DEBUG, TFTPLog.Event.REQUEST_DUPLICATE, "Server",
+							packet.opcode(), 0, 0, request.getSource(), existing.getName());
+					return null;
+				}
+			}
+
+			ServerThread transfer;
+			switch (req)
+			{
+				case READ:
+					threadNum++;
+					transfer = new readThread(request.getSource(), packet.filename(),
+							TFTPOptions.negotiate(packet), packet.modeEquals(Netascii.MODE), "Thread " + suffix(threadNum));
+					break;
+				case WRITE:
+					threadNum++;
+					transfer = new writeThread(request.getSource(), packet.filename(),
+							TFTPOptions.negotiate(packet), packet.modeEquals(Netascii.MODE), "Thread " + suffix(threadNum));
+					break;
+				default:
+					//tell the sender and keep serving
+					sendError(request, TFTPPacket.ERR_ILLEGAL_OPERATION, "Illegal TFTP operation");
+					return null;
+			}
+			//time to first block is counted from when the request arrived
+			transfer.setRequestedAt(request.getReceivedAt());
+			transfer.setRequest(request.getData());
+			return transfer;
+		}
+
+
+		/* answer a request with a TFTP ERROR
+		 * it goes out from the request port since no transfer TID exists for it
+		 */
+		void sendError(TFTPListener.Datagram request, int code, String message)
+		{
+			BufferPool pool = BufferPool.shared();
+			ByteBuffer error = pool.acquire(TFTPPacket.errorSize(message));
+			TFTPPacket.putError(error, code, message);
+			error.flip();
+			try
+			{
+				listener.getChannel().send(error, request.getSource());
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			finally
+			{
+				pool.release(error);
+			}
+			metrics.refused();
+			log.record(TFTPLog.Level.WARN, TFTPLog.Event.REQUEST_REFUSED, "Server",
+					code, 0, 0, request.getSource(), message);
+		}
+
+
+		//thread names carry the shard's number once there is more than one
+		private String suffix()
+		{
+			return (shards.length > 1) ? " " + (index + 1) : "";
+		}
+		private String suffix(int n)
+		{
+			return (shards.length > 1) ? (index + 1) + "." + n : String.valueOf(n);
+		}
+	}
+
+
+	//headless server: java TFTPDispatcher [port]
+	public static void main(String[] args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : SERVER_PORT;
+		final TFTPDispatcher dispatcher = new TFTPDispatcher(port);
+		log.message(TFTPLog.Level.INFO, "Server", "listening on port " + dispatcher.getLocalPort());
+		Runtime.getRuntime().addShutdownHook(new Thread("TFTPDispatcher shutdown")
+		{
+			public void run()
+			{
+				try
+				{
+					dispatcher.shutdown(SHUTDOWN_GRACE);
+				}
+				catch (InterruptedException e)
+				{
+					//exit anyway
+				}
+				log.flush();
+			}
+		});
+		dispatcher.run();
+	}
+}
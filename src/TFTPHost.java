@@ -1,16 +1,64 @@
 /**
 *Class:             TFTPHost.java
 *Project:           TFTP Project - Group 4
-*Author:            Jason Van Kerkhoven                                             
-*Date of Update:    17/09/2016                                              
-*Version:           1.0.0                                                      
-*                                                                                    
-*Purpose:           Receives packet from Client, sends packet to Server and waits
-					for Server response. Sends Server response back to Client. Repeats
-					this process indefinitely. Designed to allow for the simulation of errors and lost packets in future.
-* 
-* 
-*Update Log:        v1.0.0
+*Author:            Jason Van Kerkhoven
+*Date of Update:    17/10/2026
+*Version:           2.2.1
+*
+*Purpose:           Sits between clients and the Server and forwards every packet
+					of every transfer, both ways. Requests arrive on port 23 and
+					start a session, which gets two sockets of its own: one the
+					Server sees as the client's TID, one the client sees as the
+					Server's TID. The Server's TID is learned from its first
+					answer. All sockets are non-blocking and served by one
+					Selector thread, so hundreds of transfers can run through at
+					once and a packet is forwarded as soon as it is received.
+
+					Every packet forwarded goes through the Impairment rules
+					(-Dtftp.impair, see Impairment), which can drop, delay,
+					duplicate, reorder, truncate or corrupt it, or limit the
+					rate; with no rules packets go straight through. Delayed
+					packets wait in a queue the Selector thread sends from
+					when they are due, each copied into a direct buffer from
+					the BufferPool that goes back once it has been sent.
+
+					A session is closed a short linger after an ERROR, the ACK
+					of the last block or the client's next request (so a last
+					DATA/ACK still on its way gets through), or after
+					-Dtftp.hostIdle ms with nothing either way.
+
+					java TFTPHost [listenPort [serverPort [serverHost]]]
+					(defaults 23, 69 and the loopback address)
+*
+*
+*Update Log:        v2.2.1
+*                       - block numbers only read from well formed
+*                         DATA/ACK, so a short packet can't stop the host
+*                   v2.2.0
+*                       - held back packets kept in BufferPool buffers
+*                   v2.1.0
+*                       - packets run through Impairment rules on the way
+*                       - an ERROR or the client's next request ends a
+*                         session after the linger, so packets still on
+*                         their way go out
+*                   v2.0.0
+*                       - rewritten as a non-blocking proxy: a session map
+*                         of client TID <-> proxy sockets <-> server TID
+*                         forwards concurrent multi-packet transfers
+*                       - packets are logged at DEBUG, sessions at INFO
+*                   v1.3.0
+*                       - a receive timeout or error no longer exits, the
+*                         packet is dropped and the host carries on
+*                   v1.2.0
+*                       - packet echo goes through TFTPLog, hex dump only
+*                         in verbose mode
+*                   v1.1.1
+*                       - MAX_SIZE raised so large blksize datagrams are
+*                         forwarded unchanged
+*                   v1.1.0
+*                       - packets decoded with TFTPPacket for echo
+*                       - receive buffer and packet reused between calls
+*                   v1.0.0
 *                       - null
 */
 
@@ -18,200 +66,679 @@
 //imports
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
 
 
-public class TFTPHost 
+public class TFTPHost implements Runnable
 {
-	
-	//declaring local instance variables
-	private DatagramPacket sentPacket;
-	private DatagramPacket receivedPacket;
-	private DatagramSocket inSocket;
-	private DatagramSocket outSocket;
-	private DatagramSocket generalSocket;
-	private int clientPort;
-	private boolean verbose;
-		
+
 	//declaring local class constants
 	private static final int CLIENT_PORT = 23;
 	private static final int SERVER_RECEIVE_PORT = 69;
-	private static final int MAX_SIZE = 100;
+	//largest UDP payload, so negotiated blksize packets pass through whole
+	private static final int MAX_SIZE = 65535;
+	//how long a session may go without a packet, and how long it lingers once done
+	public static final long IDLE_TIMEOUT = Long.getLong("tftp.hostIdle", 2 * RttEstimator.GIVE_UP);
+	public static final long LINGER = Long.getLong("tftp.hostLinger", 1000);
+	private static final long SWEEP_INTERVAL = 250;
+
+	private static final TFTPLog log = TFTPLog.get();
+	private static final BufferPool buffers = BufferPool.shared();
+
+	//declaring local instance variables
+	private final DatagramChannel inChannel;
+	private final InetSocketAddress server;
+	private final Selector selector;
+	private final Impairment impairment;
+	private volatile boolean running = true;
+	private boolean verbose;
+
+	//live sessions by client TID, and ones a newer request from the same
+	//TID has replaced; only touched by the forwarding thread
+	private final Map<InetSocketAddress, Session> sessions = new HashMap<InetSocketAddress, Session>();
+	private final List<Session> retired = new ArrayList<Session>();
+
+	//reused for every packet, each one is forwarded before the next is received
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_SIZE);
+	private final TFTPPacket packet = new TFTPPacket();
+	private final Impairment.Verdict verdict = new Impairment.Verdict();
+
+	//packets held back by the impairment, in the order they are due
+	private final PriorityQueue<Pending> pending = new PriorityQueue<Pending>();
+	private long pendingCount;
+
+	//counters, readable from any thread
+	private final AtomicLong forwarded = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong lost = new AtomicLong();
+	private final AtomicLong opened = new AtomicLong();
+	private final AtomicInteger active = new AtomicInteger();
 
-	
-	//generic constructor
-	public TFTPHost()
+
+	//generic constructor, listens on port 23 for a server on this machine
+	public TFTPHost() throws IOException
 	{
-		//construct socket for incoming client communication, bind to IN_PORT
-		try
-		{
-			inSocket = new DatagramSocket(CLIENT_PORT);
-		}
-		//enter if socket creation results in failure
-		catch (SocketException se)
-		{
-			se.printStackTrace();
-			System.exit(1);
-		}
-		//construct socket for general server communication
-		try
-		{
-			generalSocket = new DatagramSocket();
-		}
-		catch(SocketException se)
-		{
-			se.printStackTrace();
-			System.exit(1);
-		}
+		this(CLIENT_PORT, new InetSocketAddress(InetAddress.getLoopbackAddress(), SERVER_RECEIVE_PORT));
+	}
+
+
+	//constructor for a listen port and where the server's request port is,
+	//impairing packets as -Dtftp.impair says
+	public TFTPHost(int port, InetSocketAddress server) throws IOException
+	{
+		this(port, server, Impairment.fromProperties());
+	}
+
+
+	//constructor with the impairment to apply
+	public TFTPHost(int port, InetSocketAddress server, Impairment impairment) throws IOException
+	{
+		this.server = server;
+		this.impairment = impairment;
+		selector = Selector.open();
+		inChannel = DatagramChannel.open();
+		inChannel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 20);
+		inChannel.bind(new InetSocketAddress(port));
+		inChannel.configureBlocking(false);
+		inChannel.register(selector, SelectionKey.OP_READ);
 		//initialize echo --> off
 		verbose = false;
 	}
-	
-	
+
+
 	//basic accessors and mutators
-	public DatagramSocket getInSocket()
+	public int getLocalPort()
 	{
-		return inSocket;
+		return inChannel.socket().getLocalPort();
 	}
-	public DatagramSocket getOutSocket()
+	public InetSocketAddress getServer()
 	{
-		return outSocket;
+		return server;
 	}
-	public DatagramSocket getGeneralSocket()
+	public void setVerbose(boolean f)
 	{
-		return generalSocket;
+		verbose = f;
 	}
-	public void setClientPort(int n)
+	public int getActive()
 	{
-		clientPort = n;
+		return active.get();
 	}
-	public int getClientPort()
+	public long getOpened()
 	{
-		return clientPort;
+		return opened.get();
 	}
-	public DatagramPacket getReceivedPacket()
+	public long getForwarded()
 	{
-		return receivedPacket;
+		return forwarded.get();
 	}
-	public void setOutSocket(DatagramSocket soc)
+	public long getDropped()
 	{
-		outSocket = soc;
+		return dropped.get();
 	}
-	public void setVerbose(boolean f)
+	//packets the impairment dropped
+	public long getLost()
 	{
-		verbose = f;
+		return lost.get();
+	}
+	public Impairment getImpairment()
+	{
+		return impairment;
 	}
-	
-	
-	
-	//receive packet on inPort
-	public void receiveAndEcho(DatagramSocket inputSocket)
-	{
-		//construct an empty datagram packet for receiving purposes
-		byte[] arrayholder = new byte[MAX_SIZE];
-		receivedPacket = new DatagramPacket(arrayholder, arrayholder.length);
-		
-		//wait for incoming data
-		System.out.println("Host:   Waiting for data...");
+
+
+	//forwarding loop, runs until close()
+	public void run()
+	{
+		long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+		while (running)
+		{
+			try
+			{
+				long wait = SWEEP_INTERVAL;
+				if (!pending.isEmpty())
+				{
+					long due = pending.peek().due - System.nanoTime();
+					wait = Math.min(wait, (due + 999999) / 1000000);
+				}
+				if (wait > 0)
+				{
+					selector.select(wait);
+				}
+				else
+				{
+					selector.selectNow();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+					{
+						continue;
+					}
+					if (key.channel() == inChannel)
+					{
+						receiveRequests();
+					}
+					else
+					{
+						((Session)key.attachment()).forward((DatagramChannel)key.channel());
+					}
+				}
+				sendDue();
+				long now = System.currentTimeMillis();
+				if (now >= nextSweep)
+				{
+					sweep(now);
+					nextSweep = now + SWEEP_INTERVAL;
+				}
+			}
+			catch (ClosedSelectorException e)
+			{
+				break;
+			}
+			catch (IOException e)
+			{
+				if (running)
+				{
+					e.printStackTrace();
+				}
+			}
+			catch (RuntimeException e)
+			{
+				//one bad packet must not stop every transfer going through
+				log.message(TFTPLog.Level.WARN, "Host", "packet dropped: " + e);
+				dropped.incrementAndGet();
+			}
+		}
+	}
+
+
+	//stop forwarding and release every socket
+	public void close()
+	{
+		running = false;
+		selector.wakeup();
 		try
 		{
-			inputSocket.receive(receivedPacket);
+			for (SelectionKey key : selector.keys())
+			{
+				key.channel().close();
+			}
+			selector.close();
 		}
 		catch (IOException e)
 		{
-			System.out.print("Incoming socket timed out\n" + e);
 			e.printStackTrace();
-			System.exit(1);
-		}
-		
-		//deconstruct packet and print contents
-		byte[] data = receivedPacket.getData();
-		int packetSize = receivedPacket.getLength();
-		System.out.println("Host:   Packet received");
-		System.out.println("        Source: " + receivedPacket.getAddress());
-		System.out.println("        Port:   " + receivedPacket.getPort());
-		System.out.println("        Bytes:  " + packetSize);
-		System.out.println("        Cntn:  " + (new String(data,0,packetSize)));
-		System.out.printf("%s", "        Cntn:  ");
-		for(int i = 0; i < packetSize; i++)
-		{
-			System.out.printf("0x%02X", data[i]);
-			System.out.printf("%-2c", ' ');
-		}
-	}
-	
-	
-	//send packet to server and wait for server response
-	/**
-	 * 
+		}
+		if (!impairment.isEmpty())
+		{
+			log.message(TFTPLog.Level.INFO, "Host", "impairment: " + impairment);
+		}
+	}
+
+
+	/* drain the request port: a request from a new client TID starts a
+	 * session, the same request again before the server has answered is a
+	 * client retransmission and goes to the server through the session it
+	 * started, and anything else means the client has moved on to its
+	 * next transfer
 	 */
-	public void sendAndEcho(int outPort, DatagramSocket socket)
-	{
-		//prep packet to send
-		System.out.println("\nHost:   Sending packet...");
-		sentPacket = receivedPacket;
-		sentPacket.setPort(outPort );
-		
-		//print contents
-		byte[] data = sentPacket.getData();
-		int packetSize = sentPacket.getLength();
-		System.out.println("        Source: " + sentPacket.getAddress());
-		System.out.println("        Port:   " + sentPacket.getPort());
-		System.out.println("        Bytes:  " + packetSize);
-		System.out.println("        Cntn:  " + (new String(data,0,packetSize)));
-		System.out.printf("%s", "        Cntn:  ");
-		for(int i = 0; i < packetSize; i++)
-		{
-			System.out.printf("0x%02X", data[i]);
-			System.out.printf("%-2c", ' ');
-		}
-		
-		//send packet
-		try
+	private void receiveRequests() throws IOException
+	{
+		SocketAddress source;
+		while ((source = receive(inChannel)) != null)
 		{
-			socket.send(sentPacket);
+			InetSocketAddress client = (InetSocketAddress)source;
+			echo(TFTPLog.Event.PACKET_RECEIVED, client);
+			Session s = sessions.get(client);
+			if (s != null && !s.isRetransmission(buffer))
+			{
+				s.retire();
+				s = null;
+			}
+			if (s == null)
+			{
+				try
+				{
+					s = new Session(client, buffer);
+				}
+				catch (IOException e)
+				{
+					//out of sockets or similar, the client will retry
+					log.message(TFTPLog.Level.WARN, "Host", "could not open a session for " + client + ": " + e);
+					dropped.incrementAndGet();
+					continue;
+				}
+			}
+			s.send(s.toServer, server);
 		}
-		catch (IOException e)
+	}
+
+
+	//send the held back packets whose time has come
+	private void sendDue()
+	{
+		long now = System.nanoTime();
+		while (!pending.isEmpty() && pending.peek().due <= now)
 		{
-			e.printStackTrace();
-			System.exit(1);
+			Pending p = pending.poll();
+			//a cancelled one's buffer went on with the packet, rescheduled
+			if (!p.cancelled)
+			{
+				p.session.released(p);
+				transmit(p.channel, p.target, p.data, p.copies);
+				buffers.release(p.data);
+			}
 		}
-		System.out.println("\nHost:   Packet successfully sent");
-		
 	}
-	
-	
-	public static void main(String[] args) 
+
+
+	//hold a copy of the packet in buffer back until due
+	private Pending hold(Session s, DatagramChannel channel, InetSocketAddress target, long due, int copies)
 	{
-		//declaring local variables
-		TFTPHost host = new TFTPHost();
-		
-		while(true)
-		{
-			//wait for client's packet (save clients port)
-			host.receiveAndEcho(host.getInSocket());
-			host.setClientPort(host.getReceivedPacket().getPort());
-			//System.out.println("\n>> " + host.getClientPort());
-			
-			//send packet to server and wait for response
-			host.sendAndEcho(SERVER_RECEIVE_PORT, host.getGeneralSocket());
-			host.receiveAndEcho(host.getGeneralSocket());
-			
-			//prep socket to use for sending datagram packet
-			//create temp socket, random port
+		ByteBuffer data = buffers.acquire(buffer.remaining());
+		data.put(buffer.duplicate()).flip();
+		return schedule(new Pending(s, channel, target, data, copies), due);
+	}
+
+
+	private Pending schedule(Pending p, long due)
+	{
+		p.due = due;
+		p.order = pendingCount++;
+		pending.add(p);
+		return p;
+	}
+
+
+	/* send data (position to limit) copies times through channel
+	 * the socket buffer being full, or the session having closed while a
+	 * packet was held back, loses it as it would be lost on the wire
+	 */
+	private void transmit(DatagramChannel channel, InetSocketAddress target, ByteBuffer data, int copies)
+	{
+		int start = data.position();
+		for (int i = 0; i < copies; i++)
+		{
+			data.position(start);
 			try
 			{
-				host.setOutSocket(new DatagramSocket());
+				if (channel.send(data, target) == 0)
+				{
+					dropped.incrementAndGet();
+					continue;
+				}
 			}
-			catch(SocketException se)
+			catch (IOException e)
 			{
-				se.printStackTrace();
-				System.exit(1);
+				dropped.incrementAndGet();
+				continue;
 			}
-			
-			//send packet to client
-			host.sendAndEcho(host.getClientPort(), host.getOutSocket());
-			System.out.println("----------------------------------------\n");
+			forwarded.incrementAndGet();
 		}
 	}
 
+
+	//close sessions that are done or have gone quiet
+	private void sweep(long now)
+	{
+		sweep(sessions.values().iterator(), now);
+		sweep(retired.iterator(), now);
+	}
+
+
+	private void sweep(Iterator<Session> it, long now)
+	{
+		while (it.hasNext())
+		{
+			Session s = it.next();
+			if (now >= s.expires)
+			{
+				it.remove();
+				s.release(s.finished ? "finished" : "idle");
+			}
+		}
+	}
+
+
+	//receive one datagram into buffer, flipped for reading; null if none is waiting
+	private SocketAddress receive(DatagramChannel channel) throws IOException
+	{
+		buffer.clear();
+		SocketAddress source = channel.receive(buffer);
+		buffer.flip();
+		packet.wrap(buffer);
+		return source;
+	}
+
+
+	/* record a packet in the log
+	 * only the opcode, block and length are kept; the hex dump needs a
+	 * copy of the bytes, so it is only taken in verbose mode
+	 */
+	private void echo(TFTPLog.Event event, SocketAddress peer)
+	{
+		if (!log.isEnabled(TFTPLog.Level.DEBUG))
+		{
+			return;
+		}
+		int opcode = packet.opcode();
+		int block = ((opcode == TFTPPacket.DATA || opcode == TFTPPacket.ACK) && packet.isValid()) ? packet.block() : 0;
+		log.packet(TFTPLog.Level.DEBUG, event, "Host", opcode, block, packet.length(), peer);
+		if (verbose)
+		{
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.duplicate().get(bytes);
+			log.record(TFTPLog.Level.DEBUG, TFTPLog.Event.DUMP, "Host", 0, 0, bytes.length, bytes, null);
+		}
+	}
+
+
+	/* one transfer going through the host
+	 * client <-> toClient (the server's TID as the client sees it)
+	 * toServer (the client's TID as the server sees it) <-> serverTid
+	 */
+	private class Session
+	{
+		private final InetSocketAddress client;
+		private final DatagramChannel toClient;
+		private final DatagramChannel toServer;
+		private final byte[] request;
+		private InetSocketAddress serverTid;	//null until the server first answers
+		private final int number;
+		private final Impairment.Stream up, down;	//towards the server, towards the client
+		private Pending heldUp, heldDown;		//reordered packets waiting for the next one
+		private int blockSize = TFTPPacket.DEFAULT_BLOCK_SIZE;
+		private int lastBlock = -1;			//block number of the short DATA, once seen
+		private boolean finished;
+		private long expires;
+
+		Session(InetSocketAddress client, ByteBuffer request) throws IOException
+		{
+			this.client = client;
+			this.request = new byte[request.remaining()];
+			request.duplicate().get(this.request);
+			toClient = open();
+			try
+			{
+				toServer = open();
+			}
+			catch (IOException e)
+			{
+				toClient.close();
+				throw e;
+			}
+			sessions.put(client, this);
+			number = (int)opened.incrementAndGet();
+			up = impairment.stream(number, true);
+			down = impairment.stream(number, false);
+			active.incrementAndGet();
+			touch();
+			log.message(TFTPLog.Level.INFO, "Host", "session for " + client + " on ports "
+					+ toClient.socket().getLocalPort() + "/" + toServer.socket().getLocalPort());
+		}
+
+
+		private DatagramChannel open() throws IOException
+		{
+			DatagramChannel channel = DatagramChannel.open();
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 18);
+			channel.bind(new InetSocketAddress(0));
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, this);
+			return channel;
+		}
+
+
+		/* whether buffer is the request that started this session sent
+		 * again; a client only does that before the server has answered,
+		 * after which the same request is the client's next transfer
+		 */
+		boolean isRetransmission(ByteBuffer b)
+		{
+			return serverTid == null && b.remaining() == request.length && b.equals(ByteBuffer.wrap(request));
+		}
+
+
+		//drain one of this session's sockets, forwarding to the other side
+		void forward(DatagramChannel from) throws IOException
+		{
+			SocketAddress source;
+			while (from.isOpen() && (source = receive(from)) != null)
+			{
+				if (from == toServer)
+				{
+					//the first answer from the server's host fixes its TID
+					if (serverTid == null && ((InetSocketAddress)source).getAddress().equals(server.getAddress()))
+					{
+						serverTid = (InetSocketAddress)source;
+					}
+					if (!source.equals(serverTid))
+					{
+						dropped.incrementAndGet();
+						continue;
+					}
+					echo(TFTPLog.Event.PACKET_RECEIVED, source);
+					send(toClient, client);
+				}
+				else
+				{
+					//nothing goes to the server until it has answered
+					if (!source.equals(client) || serverTid == null)
+					{
+						dropped.incrementAndGet();
+						continue;
+					}
+					echo(TFTPLog.Event.PACKET_RECEIVED, source);
+					send(toServer, serverTid);
+				}
+			}
+		}
+
+
+		/* forward the packet in buffer through channel to target, or
+		 * whatever the impairment makes of it
+		 */
+		void send(DatagramChannel channel, InetSocketAddress target)
+		{
+			watch();
+			echo(TFTPLog.Event.PACKET_SENT, target);
+			touch();
+			if (impairment.isEmpty())
+			{
+				transmit(channel, target, buffer, 1);
+				return;
+			}
+
+			boolean upward = (channel == toServer);
+			long now = System.nanoTime();
+			impairment.apply(upward ? up : down, packet, buffer, now, verdict);
+			if (verdict.drop)
+			{
+				lost.incrementAndGet();
+				return;
+			}
+			Pending held = upward ? heldUp : heldDown;
+			if (verdict.hold > 0 && held == null)
+			{
+				//wait for the next packet this way to overtake it
+				held = hold(this, channel, target, now + verdict.delay + verdict.hold, verdict.copies);
+				if (upward)
+				{
+					heldUp = held;
+				}
+				else
+				{
+					heldDown = held;
+				}
+				return;
+			}
+			long due = now + verdict.delay;
+			if (verdict.delay == 0)
+			{
+				transmit(channel, target, buffer, verdict.copies);
+			}
+			else
+			{
+				hold(this, channel, target, due, verdict.copies);
+			}
+			if (held != null)
+			{
+				//the held packet now goes right after this one
+				held.cancelled = true;
+				released(held);
+				schedule(new Pending(this, held.channel, held.target, held.data, held.copies), due);
+			}
+		}
+
+
+		//a held packet is on its way
+		void released(Pending p)
+		{
+			if (heldUp == p)
+			{
+				heldUp = null;
+			}
+			if (heldDown == p)
+			{
+				heldDown = null;
+			}
+		}
+
+
+		/* follow the transfer far enough to know when it is over: the
+		 * OACK's blksize, the DATA shorter than that, and the ACK of it
+		 */
+		private void watch()
+		{
+			//a DATA or ACK too short for a block number is forwarded, not followed
+			if (!packet.isValid())
+			{
+				return;
+			}
+			switch (packet.opcode())
+			{
+				case TFTPPacket.OACK:
+					int n = packet.optionCount();
+					for (int i = 0; i < n; i++)
+					{
+						if (packet.optionName(i).equals(TFTPOptions.BLKSIZE))
+						{
+							try
+							{
+								blockSize = Integer.parseInt(packet.optionValue(i).trim());
+							}
+							catch (NumberFormatException e)
+							{
+								//the client will refuse the OACK
+							}
+						}
+					}
+					break;
+				case TFTPPacket.DATA:
+					if (packet.dataLength() < blockSize)
+					{
+						lastBlock = packet.block();
+					}
+					break;
+				case TFTPPacket.ACK:
+					if (packet.block() == lastBlock)
+					{
+						finished = true;
+					}
+					break;
+				case TFTPPacket.ERROR:
+					finished = true;
+					break;
+			}
+		}
+
+
+		private void touch()
+		{
+			expires = System.currentTimeMillis() + (finished ? LINGER : IDLE_TIMEOUT);
+		}
+
+
+		/* the client has moved on to another request: out of the map, but
+		 * left open for the linger so packets of this transfer still on
+		 * their way (the last ACK, often) are forwarded
+		 */
+		void retire()
+		{
+			sessions.remove(client);
+			retired.add(this);
+			finished = true;
+			touch();
+		}
+
+
+		//release the session's sockets
+		void release(String why)
+		{
+			if (!toClient.isOpen())
+			{
+				return;
+			}
+			try
+			{
+				toClient.close();
+				toServer.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			active.decrementAndGet();
+			log.message(TFTPLog.Level.INFO, "Host", "session for " + client + " closed (" + why + ")");
+		}
+	}
+
+
+	//a packet held back by the impairment
+	private static class Pending implements Comparable<Pending>
+	{
+		final Session session;
+		final DatagramChannel channel;
+		final InetSocketAddress target;
+		final ByteBuffer data;
+		final int copies;
+		long due;			//System.nanoTime() to send at
+		long order;			//packets due together go in the order they were held
+		boolean cancelled;
+
+		Pending(Session session, DatagramChannel channel, InetSocketAddress target, ByteBuffer data, int copies)
+		{
+			this.session = session;
+			this.channel = channel;
+			this.target = target;
+			this.data = data;
+			this.copies = copies;
+		}
+
+		public int compareTo(Pending o)
+		{
+			int c = Long.compare(due, o.due);
+			return c != 0 ? c : Long.compare(order, o.order);
+		}
+	}
+
+
+	public static void main(String[] args) throws IOException
+	{
+		//declaring local variables
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : CLIENT_PORT;
+		int serverPort = args.length > 1 ? Integer.parseInt(args[1]) : SERVER_RECEIVE_PORT;
+		InetAddress serverHost = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+		TFTPHost host = new TFTPHost(port, new InetSocketAddress(serverHost, serverPort));
+		log.message(TFTPLog.Level.INFO, "Host", "forwarding port " + host.getLocalPort() + " to " + host.getServer()
+				+ ", impairment: " + host.getImpairment() + " (seed " + host.getImpairment().getSeed() + ")");
+		host.run();
+	}
+
 }
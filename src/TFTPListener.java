@@ -0,0 +1,235 @@
+/**
+*Class:             TFTPListener.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.1
+*
+*Purpose:           Non-blocking intake for the server's request port. A single
+*					thread waits on a Selector, drains every datagram waiting on
+*					the DatagramChannel and hands each one to the dispatcher
+*					through a bounded queue. No parsing, logging or session setup
+*					happens here, so the kernel receive buffer is emptied as fast
+*					as requests arrive.
+*
+*					Opened with reusePort, any number of listeners can bind
+*					the same port (SO_REUSEPORT, Linux and the BSDs), and the
+*					kernel shares clients out between them by address and
+*					port, so the same client always reaches the same one.
+*
+*
+*Update Log:        v1.1.1
+*                       - requests are received whole, up to the largest UDP
+*                         payload, rather than cut off at 516 bytes
+*                   v1.1.0
+*                       - reusePort, for several listeners on one port
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class TFTPListener implements Runnable
+{
+	//declaring local instance variables
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final BlockingQueue<Datagram> queue;
+	private final ByteBuffer buffer;
+	private volatile boolean running;
+
+	//intake counters, readable from any thread
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	//declaring local class constants
+	private static final int MAX_SIZE = 65507;		//largest UDP payload over IPv4
+	public static final int DEFAULT_QUEUE_LIMIT = 4096;
+
+
+	//generic constructor
+	public TFTPListener(int port) throws IOException
+	{
+		this(port, DEFAULT_QUEUE_LIMIT);
+	}
+
+
+	//constructor with an explicit limit on requests waiting for the dispatcher
+	public TFTPListener(int port, int queueLimit) throws IOException
+	{
+		this(port, queueLimit, false);
+	}
+
+
+	/* as above, sharing the port with other listeners opened with
+	 * reusePort if set
+	 */
+	public TFTPListener(int port, int queueLimit, boolean reusePort) throws IOException
+	{
+		channel = DatagramChannel.open();
+		if (reusePort)
+		{
+			if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+			{
+				channel.close();
+				throw new IOException("SO_REUSEPORT is not supported on this platform");
+			}
+			channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+		}
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 20);
+		channel.bind(new InetSocketAddress(port));
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+		queue = new ArrayBlockingQueue<Datagram>(queueLimit);
+		buffer = ByteBuffer.allocateDirect(MAX_SIZE);
+		running = true;
+	}
+
+
+	//generic accessors
+	public DatagramChannel getChannel()
+	{
+		return channel;
+	}
+	public int getLocalPort()
+	{
+		return channel.socket().getLocalPort();
+	}
+	public long getReceived()
+	{
+		return received.get();
+	}
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+	public int getBacklog()
+	{
+		return queue.size();
+	}
+
+
+	//block until the next request datagram is available
+	public Datagram take() throws InterruptedException
+	{
+		return queue.take();
+	}
+
+
+	//intake loop, only receives and queues
+	public void run()
+	{
+		while(running)
+		{
+			try
+			{
+				selector.select();
+				selector.selectedKeys().clear();
+
+				//drain everything the kernel is holding before selecting again
+				//a request has no size limit of its own (a long name, several
+				//options), so the buffer takes any datagram whole; each is
+				//copied out at its own length
+				SocketAddress source;
+				while((source = channel.receive(buffer)) != null)
+				{
+					buffer.flip();
+					byte[] data = new byte[buffer.remaining()];
+					buffer.get(data);
+					buffer.clear();
+					received.incrementAndGet();
+
+					//dispatcher is behind, shed load here rather than in the kernel
+					if(!queue.offer(new Datagram((InetSocketAddress)source, data)))
+					{
+						dropped.incrementAndGet();
+					}
+				}
+			}
+			catch(ClosedSelectorException e)
+			{
+				break;
+			}
+			catch(IOException e)
+			{
+				if(running)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+
+	//stop the intake loop and release the port
+	public void close()
+	{
+		running = false;
+		try
+		{
+			selector.close();
+			channel.close();
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+
+	//a single request datagram as received on the request port
+	public static class Datagram
+	{
+		private final InetSocketAddress source;
+		private final byte[] data;
+		private final ByteBuffer buffer;
+		private final long receivedAt;
+
+		public Datagram(InetSocketAddress source, byte[] data)
+		{
+			this.source = source;
+			this.data = data;
+			this.buffer = ByteBuffer.wrap(data);
+			this.receivedAt = System.nanoTime();
+		}
+
+		public InetSocketAddress getSource()
+		{
+			return source;
+		}
+		public InetAddress getAddress()
+		{
+			return source.getAddress();
+		}
+		public int getPort()
+		{
+			return source.getPort();
+		}
+		public byte[] getData()
+		{
+			return data;
+		}
+		public int getLength()
+		{
+			return data.length;
+		}
+		//buffer view over the datagram, for TFTPPacket.wrap()
+		public ByteBuffer getBuffer()
+		{
+			return buffer;
+		}
+		public long getReceivedAt()
+		{
+			return receivedAt;
+		}
+	}
+}
@@ -0,0 +1,631 @@
+/**
+*Class:             TFTPLoad.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.0
+*
+*Purpose:           Headless load generator: many TFTPClients at once against
+*					one server, to find where it saturates. Each session has
+*					its own client (so its own socket and TID) on its own
+*					thread. Two ways to drive the server:
+*					  closed loop  sessions clients, each starting its next
+*					               transfer as soon as the last one ends
+*					  open loop    transfers start at rate per second
+*					               (Poisson, or evenly spaced), whether or
+*					               not earlier ones have finished; at most
+*					               sessions run at once and the rest wait
+*					In open loop a transfer's time counts from when it was
+*					due to start, so time spent waiting for a free client is
+*					included and a slow server can't hide its backlog. Start
+*					times are kept on a TimerWheel of 100us ticks.
+*
+*					At the end it reports transfers and bytes per second,
+*					completion time percentiles (p50/p90/p99/p999) and the
+*					errors, by reason. A progress line is logged every second.
+*
+*					java TFTPLoad key=value...  (or TFTPClient load ...)
+*					  port=69          server's request port
+*					  server=<host>    server's address, this host by default
+*					  sessions=16      clients
+*					  rate=0           transfers per second, 0 for closed loop
+*					  arrivals=poisson poisson or fixed spacing (open loop)
+*					  duration=10      seconds to start transfers for
+*					  count=0          or stop after this many, if set
+*					  warmup=0         seconds left out of the results
+*					  writes=0         fraction of transfers that are WRQ
+*					  mix=cases        files to transfer, comma separated,
+*					                   each optionally *weight:
+*					                     cases     the TFTPTestCases files
+*					                     gen:64M   a generated file this big
+*					                     <path>    a file
+*					  blksize=512 window=1 seed=1
+*
+*					Files are read from, downloaded to and uploaded into
+*					tftp-load/ (and TFTPTestCases/) under the working
+*					directory, so the server must run from the same directory.
+*					Uploads and downloads are deleted as the run goes.
+*
+*
+*Update Log:        v1.1.0
+*                       - open loop start times kept on a TimerWheel
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+
+public class TFTPLoad
+{
+	//declaring local class constants
+	private static final Path WORK_DIR = Paths.get("tftp-load");
+	private static final String[] KEYS = { "port", "server", "sessions", "rate", "arrivals", "duration",
+			"count", "warmup", "writes", "mix", "blksize", "window", "seed" };
+
+	//granularity of open loop start times: a transfer starts within this of
+	//when it was due, and is timed from when it was due
+	private static final long ARRIVAL_TICK = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//declaring local instance variables, settings
+	private final int port;
+	private final InetAddress server;
+	private final int sessions;
+	private final double rate;
+	private final boolean poisson;
+	private final long duration;		//ns
+	private final long count;
+	private final long warmup;			//ns
+	private final double writes;
+	private final int blockSize;
+	private final int windowSize;
+	private final long seed;
+	private final List<Item> mix = new ArrayList<Item>();
+	private double totalWeight;
+
+	//results, updated by every session
+	private final TFTPMetrics.Histogram latency = new TFTPMetrics.Histogram();
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder measuredBytes = new LongAdder();
+	private final LongAdder retransmits = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong uploads = new AtomicLong();
+	private final Map<String, LongAdder> errors = new ConcurrentSkipListMap<String, LongAdder>();
+
+	private long startTime;			//System.nanoTime() the run started
+	private long stopTime;			//no transfer starts after this
+
+
+	//constructor from key=value settings
+	public TFTPLoad(Map<String, String> settings) throws IOException
+	{
+		for (String key : settings.keySet())
+		{
+			if (!Arrays.asList(KEYS).contains(key))
+			{
+				throw new IllegalArgumentException("unknown setting " + key + ", expected one of " + Arrays.toString(KEYS));
+			}
+		}
+		port = Integer.parseInt(settings.getOrDefault("port", "69"));
+		server = settings.containsKey("server") ? InetAddress.getByName(settings.get("server")) : null;
+		sessions = Integer.parseInt(settings.getOrDefault("sessions", "16"));
+		rate = Double.parseDouble(settings.getOrDefault("rate", "0"));
+		poisson = !settings.getOrDefault("arrivals", "poisson").equalsIgnoreCase("fixed");
+		duration = TimeUnit.MILLISECONDS.toNanos((long)(1000 * Double.parseDouble(settings.getOrDefault("duration", "10"))));
+		count = Long.parseLong(settings.getOrDefault("count", "0"));
+		warmup = TimeUnit.MILLISECONDS.toNanos((long)(1000 * Double.parseDouble(settings.getOrDefault("warmup", "0"))));
+		writes = Double.parseDouble(settings.getOrDefault("writes", "0"));
+		blockSize = Integer.parseInt(settings.getOrDefault("blksize", Integer.toString(TFTPPacket.DEFAULT_BLOCK_SIZE)));
+		windowSize = Integer.parseInt(settings.getOrDefault("window", "1"));
+		seed = Long.parseLong(settings.getOrDefault("seed", "1"));
+		if (sessions < 1)
+		{
+			throw new IllegalArgumentException("sessions must be >= 1");
+		}
+		Files.createDirectories(WORK_DIR);
+		for (String entry : settings.getOrDefault("mix", "cases").split(","))
+		{
+			addToMix(entry.trim());
+		}
+	}
+
+
+	//one entry of mix=, with its *weight
+	private void addToMix(String entry) throws IOException
+	{
+		double weight = 1;
+		int star = entry.lastIndexOf('*');
+		if (star > 0)
+		{
+			weight = Double.parseDouble(entry.substring(star + 1));
+			entry = entry.substring(0, star);
+		}
+		if (entry.equals("cases"))
+		{
+			Path dir = Paths.get(System.getProperty("tftp.testCases", "TFTPTestCases"));
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir))
+			{
+				for (Path f : files)
+				{
+					add(f, weight);
+				}
+			}
+		}
+		else if (entry.startsWith("gen:"))
+		{
+			add(generate(parseSize(entry.substring(4))), weight);
+		}
+		else
+		{
+			add(Paths.get(entry), weight);
+		}
+	}
+
+
+	private void add(Path file, double weight) throws IOException
+	{
+		if (!Files.isRegularFile(file))
+		{
+			throw new FileNotFoundException(file.toString());
+		}
+		mix.add(new Item(file, Files.size(file), weight));
+		totalWeight += weight;
+	}
+
+
+	//tftp-load/gen-<size>.bin, seeded random bytes, made once and kept
+	private static Path generate(long size) throws IOException
+	{
+		Path file = WORK_DIR.resolve("gen-" + size + ".bin");
+		if (Files.isRegularFile(file) && Files.size(file) == size)
+		{
+			return file;
+		}
+		Random random = new Random(size);
+		byte[] chunk = new byte[1 << 20];
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file)))
+		{
+			for (long left = size; left > 0; left -= chunk.length)
+			{
+				random.nextBytes(chunk);
+				out.write(chunk, 0, (int)Math.min(left, chunk.length));
+			}
+		}
+		return file;
+	}
+
+
+	//"4096", "64K", "64M" or "1G"
+	private static long parseSize(String size)
+	{
+		char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+		int shift = (unit == 'K') ? 10 : (unit == 'M') ? 20 : (unit == 'G') ? 30 : 0;
+		return Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1)) << shift;
+	}
+
+
+	/* run the load, then report
+	 * returns the number of failed transfers
+	 */
+	public long run() throws InterruptedException
+	{
+		log.message(TFTPLog.Level.INFO, "Load", describe());
+		startTime = System.nanoTime();
+		stopTime = startTime + duration;
+		Thread progress = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				progress();
+			}
+		}, "TFTPLoad progress");
+		progress.setDaemon(true);
+		progress.start();
+
+		if (rate > 0)
+		{
+			openLoop();
+		}
+		else
+		{
+			closedLoop();
+		}
+		progress.interrupt();
+		report();
+		cleanUp();
+		return failed.sum();
+	}
+
+
+	//sessions clients, each going again as soon as it is done
+	private void closedLoop() throws InterruptedException
+	{
+		Thread[] workers = new Thread[sessions];
+		SplittableRandom root = new SplittableRandom(seed);
+		for (int i = 0; i < sessions; i++)
+		{
+			final int id = i;
+			final SplittableRandom random = root.split();
+			workers[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					TFTPClient client = newClient();
+					try
+					{
+						while (claim())
+						{
+							long now = System.nanoTime();
+							transfer(client, id, random, now);
+						}
+					}
+					finally
+					{
+						client.close();
+					}
+				}
+			}, "TFTPLoad " + (i + 1));
+			workers[i].start();
+		}
+		for (Thread t : workers)
+		{
+			t.join();
+		}
+	}
+
+
+	/* transfers start on a schedule of their own; a pool of sessions
+	 * threads, each with its own client, runs them
+	 */
+	private void openLoop() throws InterruptedException
+	{
+		final ThreadLocal<TFTPClient> clients = new ThreadLocal<TFTPClient>();
+		final ThreadLocal<Integer> ids = new ThreadLocal<Integer>();
+		final List<TFTPClient> all = Collections.synchronizedList(new ArrayList<TFTPClient>());
+		final AtomicInteger threadIds = new AtomicInteger();
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(sessions, sessions, 0, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+				{
+					public Thread newThread(final Runnable r)
+					{
+						final int id = threadIds.getAndIncrement();
+						return new Thread(new Runnable()
+						{
+							public void run()
+							{
+								ids.set(id);
+								r.run();
+							}
+						}, "TFTPLoad " + (id + 1));
+					}
+				});
+		//each transfer is a timer on the wheel, which when it expires hands
+		//the transfer over and sets itself for the next one
+		final SplittableRandom random = new SplittableRandom(seed);
+		final TimerWheel arrivals = new TimerWheel(ARRIVAL_TICK, TimerWheel.SLOTS, startTime);
+		Consumer<TimerWheel.Timer> arrive = new Consumer<TimerWheel.Timer>()
+		{
+			public void accept(TimerWheel.Timer next)
+			{
+				final long intended = next.getDeadline();
+				final SplittableRandom own = random.split();
+				pool.execute(new Runnable()
+				{
+					public void run()
+					{
+						TFTPClient client = clients.get();
+						if (client == null)
+						{
+							client = newClient();
+							clients.set(client);
+							all.add(client);
+						}
+						transfer(client, ids.get(), own, intended);
+					}
+				});
+				if (claim())
+				{
+					double gap = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+					arrivals.schedule(next, intended + (long)(gap * 1e9));
+				}
+			}
+		};
+		if (claim())
+		{
+			arrivals.schedule(new TimerWheel.Timer(null), startTime);
+		}
+		while (arrivals.size() > 0)
+		{
+			long wait = arrivals.nextExpiry() - System.nanoTime();
+			if (wait > 0)
+			{
+				LockSupport.parkNanos(wait);
+			}
+			arrivals.advance(System.nanoTime(), arrive);
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.DAYS);
+		for (TFTPClient c : all)
+		{
+			c.close();
+		}
+	}
+
+
+	//whether another transfer may start
+	private boolean claim()
+	{
+		if (count > 0)
+		{
+			return started.incrementAndGet() <= count;
+		}
+		started.incrementAndGet();
+		return System.nanoTime() < stopTime;
+	}
+
+
+	private TFTPClient newClient()
+	{
+		TFTPClient client = new TFTPClient(false);
+		client.setOutPort(port);
+		client.setServerAddress(server);
+		client.quietMode(true);
+		return client;
+	}
+
+
+	/* one transfer by client, session id, counted from intended
+	 * (System.nanoTime()) on
+	 */
+	private void transfer(TFTPClient client, int id, SplittableRandom random, long intended)
+	{
+		Item item = pick(random);
+		boolean write = writes > 0 && random.nextDouble() < writes;
+		Path download = WORK_DIR.resolve("down-" + id + ".bin");
+		Path upload = WORK_DIR.resolve("up-" + uploads.incrementAndGet() + ".bin");
+		inFlight.incrementAndGet();
+		boolean ok;
+		String error = null;
+		try
+		{
+			if (write)
+			{
+				ok = client.writeFile(item.file.toString(), upload.toString(), blockSize, windowSize);
+			}
+			else
+			{
+				//a rewritten file can make close() wait for the disk, so start afresh
+				Files.deleteIfExists(download);
+				ok = client.readFile(item.file.toString(), download.toString(), blockSize, windowSize);
+			}
+			if (!ok)
+			{
+				error = client.getLastError();
+			}
+		}
+		catch (IOException e)
+		{
+			ok = false;
+			error = e.toString();
+		}
+		long end = System.nanoTime();
+		inFlight.decrementAndGet();
+
+		RttEstimator rtt = client.getRtt();
+		retransmits.add(rtt.getRetransmits());
+		timeouts.add(rtt.getTimeouts());
+		if (ok)
+		{
+			succeeded.increment();
+			bytes.add(item.size);
+			if (intended - startTime >= warmup)
+			{
+				latency.record(end - intended);
+				measuredBytes.add(item.size);
+			}
+		}
+		else
+		{
+			failed.increment();
+			errors.computeIfAbsent(error == null ? "unknown" : error, k -> new LongAdder()).increment();
+		}
+		if (write)
+		{
+			//the server renames it into place just after the last ACK
+			deleteLater(upload);
+		}
+	}
+
+
+	private Item pick(SplittableRandom random)
+	{
+		double r = random.nextDouble() * totalWeight;
+		for (Item item : mix)
+		{
+			r -= item.weight;
+			if (r < 0)
+			{
+				return item;
+			}
+		}
+		return mix.get(mix.size() - 1);
+	}
+
+
+	//uploads waiting to be deleted, oldest first
+	private final Queue<Path> finishedUploads = new ConcurrentLinkedQueue<Path>();
+
+	private void deleteLater(Path upload)
+	{
+		finishedUploads.add(upload);
+		//keep a few, so the server has finished with the ones deleted
+		while (finishedUploads.size() > 2 * sessions)
+		{
+			Path old = finishedUploads.poll();
+			if (old != null)
+			{
+				delete(old);
+			}
+		}
+	}
+
+
+	private static void delete(Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e)
+		{
+			//the server may still have it open, cleanUp() tries again
+		}
+	}
+
+
+	//remove what the run left behind, keeping the generated files
+	private void cleanUp()
+	{
+		LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(WORK_DIR, "{up,down}-*"))
+		{
+			for (Path f : files)
+			{
+				delete(f);
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+
+	//a line a second while the load runs
+	private void progress()
+	{
+		long lastCount = 0;
+		long lastBytes = 0;
+		try
+		{
+			for (int second = 1; ; second++)
+			{
+				Thread.sleep(1000);
+				long done = succeeded.sum();
+				long b = bytes.sum();
+				log.message(TFTPLog.Level.INFO, "Load", String.format(
+						"%ds: %d/s, %.1f MB/s, %d in flight, %d failed",
+						second, done - lastCount, (b - lastBytes) / 1048576.0, inFlight.get(), failed.sum()));
+				lastCount = done;
+				lastBytes = b;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			//run over
+		}
+	}
+
+
+	public String describe()
+	{
+		return (rate > 0 ? String.format("open loop, %.1f/s %s arrivals, ", rate, poisson ? "poisson" : "fixed")
+					: "closed loop, ")
+				+ sessions + " sessions, " + (count > 0 ? count + " transfers" : duration / 1000000000.0 + "s")
+				+ ", " + (int)(writes * 100) + "% writes, blksize " + blockSize + ", window " + windowSize
+				+ ", " + mix.size() + " files, port " + port;
+	}
+
+
+	//the results, through the log
+	private void report()
+	{
+		double seconds = Math.max(1, System.nanoTime() - startTime - warmup) / 1e9;
+		long measured = latency.getCount();
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%d transfers ok, %d failed%n", succeeded.sum(), failed.sum()));
+		out.append(String.format("throughput: %.1f transfers/s, %.2f MB/s%n",
+				measured / seconds, measuredBytes.sum() / seconds / 1048576));
+		out.append(String.format("completion ms: p50 %.3f, p90 %.3f, p99 %.3f, p999 %.3f, max %.3f, mean %.3f%n",
+				latency.quantile(0.5) / 1e6, latency.quantile(0.9) / 1e6, latency.quantile(0.99) / 1e6,
+				latency.quantile(0.999) / 1e6, latency.getMax() / 1e6, latency.getMean() / 1e6));
+		out.append(String.format("retransmits %d, timeouts %d", retransmits.sum(), timeouts.sum()));
+		for (Map.Entry<String, LongAdder> e : errors.entrySet())
+		{
+			out.append(String.format("%nerror x%d: %s", e.getValue().sum(), e.getKey()));
+		}
+		log.message(TFTPLog.Level.INFO, "Load", "results\n" + out);
+		log.flush();
+	}
+
+
+	//generic accessors, for scripts that run the load in-process
+	public long getSucceeded()
+	{
+		return succeeded.sum();
+	}
+	public long getFailed()
+	{
+		return failed.sum();
+	}
+	public TFTPMetrics.Histogram getLatency()
+	{
+		return latency;
+	}
+
+
+	//a file in the mix
+	private static class Item
+	{
+		final Path file;
+		final long size;
+		final double weight;
+
+		Item(Path file, long size, double weight)
+		{
+			this.file = file;
+			this.size = size;
+			this.weight = weight;
+		}
+	}
+
+
+	public static void main(String[] args) throws IOException
+	{
+		Map<String, String> settings = new LinkedHashMap<String, String>();
+		for (String arg : args)
+		{
+			int eq = arg.indexOf('=');
+			if (eq < 0)
+			{
+				System.err.println("usage: java TFTPLoad key=value... with keys " + Arrays.toString(KEYS));
+				System.exit(2);
+			}
+			settings.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		try
+		{
+			long failures = new TFTPLoad(settings).run();
+			System.exit(failures > 0 ? 1 : 0);
+		}
+		catch (InterruptedException e)
+		{
+			System.exit(1);
+		}
+	}
+}
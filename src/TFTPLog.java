@@ -0,0 +1,434 @@
+/**
+*Class:             TFTPLog.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.2.0
+*
+*Purpose:           Asynchronous log shared by the server, client and error
+*					simulator. Code on the transfer path only records a small
+*					binary event (type, level, a few numbers and references to
+*					objects it already has) into a lock-free ring buffer; no
+*					strings are built and no I/O is done there. A background
+*					thread drains the ring, formats each event and writes it
+*					to the configured sinks: console, a file, and/or a Swing
+*					text area (updated on the event dispatch thread).
+*
+*					If the ring is full the event is dropped and counted
+*					rather than blocking a transfer. High volume events can
+*					be sampled, keeping only 1 in N.
+*
+*					Configuration:
+*					  -Dtftp.logLevel=ERROR|WARN|INFO|DEBUG|TRACE  (INFO)
+*					  -Dtftp.log=console,file:<path>               (console)
+*					  -Dtftp.logSample=<N>  keep 1 in N packet events (1)
+*
+*
+*Update Log:        v1.2.0
+*                       - REQUEST_DUPLICATE event
+*                   v1.1.0
+*                       - TRANSFER_STATS event
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import javax.swing.*;
+
+
+public class TFTPLog implements Runnable
+{
+	//how much detail to record, each level includes the ones above it
+	public static enum Level { ERROR, WARN, INFO, DEBUG, TRACE };
+
+	//what happened; the fields each event fills in are listed beside it
+	public static enum Event
+	{
+		MESSAGE,			//ref = text
+		REQUEST_RECEIVED,	//a = opcode, b = length, ref = source address
+		REQUEST_REFUSED,	//a = error code, ref = source address, ref2 = reason
+		REQUEST_DUPLICATE,	//a = opcode, ref = source address, ref2 = transfer serving it
+		TRANSFER_STARTED,	//a = opcode, ref = file, ref2 = client address
+		TRANSFER_FINISHED,	//a = bytes, b = blocks, c = elapsed ns, ref = file
+		TRANSFER_ABANDONED,	//a = block, ref = file
+		TRANSFER_STATS,		//a = retransmits, b = smoothed RTT ns, c = RTO ns, ref = file
+		PACKET_SENT,		//a = opcode, b = block, c = length, ref = peer
+		PACKET_RECEIVED,	//a = opcode, b = block, c = length, ref = peer
+		RETRANSMIT,			//a = block, b = attempt, ref = peer
+		DUMP				//c = length, ref = byte[] copy of the packet
+	};
+
+	//where formatted lines go
+	public static interface Sink
+	{
+		public void write(String line);
+		public void flush();
+	}
+
+	//declaring local class constants
+	private static final int CAPACITY = 1 << 16;
+	private static final int MASK = CAPACITY - 1;
+
+	//the log every class shares
+	private static final TFTPLog SHARED = new TFTPLog();
+
+	//declaring local instance variables
+	private volatile Level level;
+	private volatile int sampleEvery;
+	private final AtomicLongArray sampleCounts = new AtomicLongArray(Event.values().length);
+	private final List<Sink> sinks = new CopyOnWriteArrayList<Sink>();
+
+	//the ring: producers claim slots by advancing head, the consumer
+	//advances tail; published[i] holds the sequence number + 1 once
+	//slot i has been filled in
+	private final AtomicLong head = new AtomicLong();
+	private volatile long tail;
+	private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+	private final long[] times = new long[CAPACITY];
+	private final byte[] levels = new byte[CAPACITY];
+	private final byte[] events = new byte[CAPACITY];
+	private final long[] as = new long[CAPACITY];
+	private final long[] bs = new long[CAPACITY];
+	private final long[] cs = new long[CAPACITY];
+	private final Object[] whos = new Object[CAPACITY];
+	private final Object[] refs = new Object[CAPACITY];
+	private final Object[] refs2 = new Object[CAPACITY];
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final Thread consumer;
+
+
+	//generic constructor, configured from system properties
+	private TFTPLog()
+	{
+		level = Level.valueOf(System.getProperty("tftp.logLevel", "INFO").toUpperCase());
+		sampleEvery = Math.max(1, Integer.getInteger("tftp.logSample", 1));
+		for (String spec : System.getProperty("tftp.log", "console").split(","))
+		{
+			spec = spec.trim();
+			if (spec.equals("console"))
+			{
+				addSink(new StreamSink(System.out));
+			}
+			else if (spec.startsWith("file:"))
+			{
+				try
+				{
+					addSink(new StreamSink(new FileOutputStream(spec.substring(5), true)));
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+		consumer = new Thread(this, "TFTPLog");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+
+	public static TFTPLog get()
+	{
+		return SHARED;
+	}
+
+
+	//generic accessors and mutators
+	public Level getLevel()
+	{
+		return level;
+	}
+	public void setLevel(Level l)
+	{
+		level = l;
+	}
+	public void setSampling(int everyN)
+	{
+		sampleEvery = Math.max(1, everyN);
+	}
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+	public void addSink(Sink sink)
+	{
+		sinks.add(sink);
+	}
+	public void removeSink(Sink sink)
+	{
+		sinks.remove(sink);
+	}
+
+
+	//one volatile read; check before gathering anything for an event
+	public boolean isEnabled(Level l)
+	{
+		return l.ordinal() <= level.ordinal();
+	}
+
+
+	//record free text; for rare messages only, the caller builds the string
+	public void message(Level l, Object who, String text)
+	{
+		record(l, Event.MESSAGE, who, 0, 0, 0, text, null);
+	}
+
+
+	//record a packet event, sampled when sampling is on
+	public void packet(Level l, Event e, Object who, int opcode, int block, int length, Object peer)
+	{
+		if (!isEnabled(l))
+		{
+			return;
+		}
+		if (sampleEvery > 1 && sampleCounts.getAndIncrement(e.ordinal()) % sampleEvery != 0)
+		{
+			return;
+		}
+		record(l, e, who, opcode, block, length, peer, null);
+	}
+
+
+	/* record an event
+	 * never blocks: if the consumer has fallen a whole ring behind the
+	 * event is dropped and counted instead
+	 */
+	public void record(Level l, Event e, Object who, long a, long b, long c, Object ref, Object ref2)
+	{
+		if (!isEnabled(l))
+		{
+			return;
+		}
+
+		//claim a slot
+		long seq;
+		do
+		{
+			seq = head.get();
+			if (seq - tail >= CAPACITY)
+			{
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+		while (!head.compareAndSet(seq, seq + 1));
+
+		//fill it in, then publish it to the consumer
+		int i = (int)(seq & MASK);
+		times[i] = System.currentTimeMillis();
+		levels[i] = (byte)l.ordinal();
+		events[i] = (byte)e.ordinal();
+		as[i] = a;
+		bs[i] = b;
+		cs[i] = c;
+		whos[i] = who;
+		refs[i] = ref;
+		refs2[i] = ref2;
+		published.lazySet(i, seq + 1);
+	}
+
+
+	//wait until everything recorded so far has been written out
+	public void flush()
+	{
+		long target = head.get();
+		while (tail < target && consumer.isAlive())
+		{
+			LockSupport.parkNanos(100000L);
+		}
+		for (Sink s : sinks)
+		{
+			s.flush();
+		}
+	}
+
+
+	//consumer: format and write events in order, idling briefly when empty
+	public void run()
+	{
+		StringBuilder line = new StringBuilder(256);
+		Event[] eventTypes = Event.values();
+		Level[] levelTypes = Level.values();
+		for(;;)
+		{
+			long t = tail;
+			int i = (int)(t & MASK);
+			if (published.get(i) != t + 1)
+			{
+				for (Sink s : sinks)
+				{
+					s.flush();
+				}
+				LockSupport.parkNanos(1000000L);
+				continue;
+			}
+
+			line.setLength(0);
+			format(line, times[i], levelTypes[levels[i]], eventTypes[events[i]],
+					whos[i], as[i], bs[i], cs[i], refs[i], refs2[i]);
+			whos[i] = null;
+			refs[i] = null;
+			refs2[i] = null;
+			tail = t + 1;
+
+			String text = line.toString();
+			for (Sink s : sinks)
+			{
+				s.write(text);
+			}
+		}
+	}
+
+
+	//turn one event into a line of text
+	private static void format(StringBuilder line, long time, Level l, Event e, Object who,
+			long a, long b, long c, Object ref, Object ref2)
+	{
+		line.append(String.format("%tT.%<tL ", time));
+		if (l.ordinal() < Level.INFO.ordinal())
+		{
+			line.append(l).append(' ');
+		}
+		if (who != null)
+		{
+			line.append(who).append(": ");
+		}
+		switch (e)
+		{
+			case MESSAGE:
+				line.append(ref);
+				break;
+			case REQUEST_RECEIVED:
+				line.append(opcodeName((int)a)).append(" received from ").append(ref)
+					.append(" (").append(b).append("B)");
+				break;
+			case REQUEST_REFUSED:
+				line.append("refused request from ").append(ref).append(": ")
+					.append(ref2).append(" (error ").append(a).append(')');
+				break;
+			case REQUEST_DUPLICATE:
+				line.append(opcodeName((int)a)).append(" from ").append(ref)
+					.append(" sent again, left to ").append(ref2);
+				break;
+			case TRANSFER_STARTED:
+				line.append(a == TFTPPacket.RRQ ? "read of " : "write of ").append(ref)
+					.append(" started for ").append(ref2);
+				break;
+			case TRANSFER_FINISHED:
+				line.append("finished ").append(ref).append(": ").append(a).append(" bytes in ")
+					.append(b).append(" blocks, ").append(c / 1000000).append("ms");
+				if (c > 0)
+				{
+					line.append(String.format(" (%.1f KB/s)", a * 1e9 / c / 1024));
+				}
+				break;
+			case TRANSFER_STATS:
+				line.append(ref).append(String.format(": srtt %.3fms, rto %dms, ", b / 1e6, c / 1000000))
+					.append(a).append(" retransmits");
+				break;
+			case TRANSFER_ABANDONED:
+				line.append("abandoned ").append(ref).append(" at block ").append(a);
+				break;
+			case PACKET_SENT:
+			case PACKET_RECEIVED:
+				line.append(e == Event.PACKET_SENT ? "sent " : "received ").append(opcodeName((int)a));
+				if (a == TFTPPacket.DATA || a == TFTPPacket.ACK)
+				{
+					line.append(" #").append(b);
+				}
+				line.append(" (").append(c).append("B) ")
+					.append(e == Event.PACKET_SENT ? "to " : "from ").append(ref);
+				break;
+			case RETRANSMIT:
+				line.append("timeout, resending block ").append(a).append(" to ").append(ref)
+					.append(" (attempt ").append(b).append(')');
+				break;
+			case DUMP:
+				byte[] data = (byte[])ref;
+				for (int j = 0; j < c && j < data.length; j++)
+				{
+					line.append(String.format("0x%02X ", data[j]));
+				}
+				break;
+		}
+	}
+
+
+	private static String opcodeName(int opcode)
+	{
+		switch (opcode)
+		{
+			case TFTPPacket.RRQ:	return "RRQ";
+			case TFTPPacket.WRQ:	return "WRQ";
+			case TFTPPacket.DATA:	return "DATA";
+			case TFTPPacket.ACK:	return "ACK";
+			case TFTPPacket.ERROR:	return "ERROR";
+			case TFTPPacket.OACK:	return "OACK";
+			default:				return "opcode " + opcode;
+		}
+	}
+
+
+	//writes lines to a stream, flushed whenever the ring runs dry
+	public static class StreamSink implements Sink
+	{
+		private final PrintStream out;
+
+		public StreamSink(OutputStream out)
+		{
+			this.out = new PrintStream(new BufferedOutputStream(out, 1 << 16), false);
+		}
+
+		public synchronized void write(String line)
+		{
+			out.println(line);
+		}
+
+		public synchronized void flush()
+		{
+			out.flush();
+		}
+	}
+
+
+	//appends lines to a Swing text area, batched onto the event dispatch thread
+	public static class TextAreaSink implements Sink
+	{
+		private final JTextArea area;
+		private final StringBuilder pending = new StringBuilder();
+
+		public TextAreaSink(JTextArea area)
+		{
+			this.area = area;
+		}
+
+		public synchronized void write(String line)
+		{
+			pending.append(line).append('\n');
+		}
+
+		public synchronized void flush()
+		{
+			if (pending.length() == 0)
+			{
+				return;
+			}
+			final String text = pending.toString();
+			pending.setLength(0);
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					area.append(text);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,657 @@
+/**
+*Class:             TFTPMetrics.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.0
+*
+*Purpose:           Metrics registry for the server. Transfers update lock-free
+*					counters (LongAdder, atomics) as they go, so keeping the
+*					numbers costs a few adds per block and nothing is locked
+*					or allocated on the transfer path. Kept:
+*					  - requests received per opcode, requests refused, and
+*					    repeated requests taken by the transfer already
+*					    serving them
+*					  - sessions active, started, finished and failed, with
+*					    the live session table behind them
+*					  - bytes sent and received, and the rate over the last
+*					    RATE_WINDOW seconds
+*					  - histograms of time to first block (request received
+*					    to first DATA sent or received), per block round trip
+*					    time and total transfer time
+*					  - retransmits and timeouts over all transfers
+*					  - gauges other classes register (queue depths etc.)
+*
+*					The numbers are published as attributes of the MBean
+*					TFTP:type=Metrics (jconsole, VisualVM), and as plain text,
+*					one "name value" line each, at
+*					http://127.0.0.1:<port>/metrics when -Dtftp.metricsPort
+*					is set; /sessions there lists the live session table.
+*
+*
+*Update Log:        v1.1.0
+*                       - duplicate requests counted
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import javax.management.*;
+import com.sun.net.httpserver.*;
+
+
+public class TFTPMetrics implements DynamicMBean
+{
+	//declaring local class constants
+	public static final int METRICS_PORT = Integer.getInteger("tftp.metricsPort", -1);
+	public static final String OBJECT_NAME = "TFTP:type=Metrics";
+	private static final int RATE_WINDOW = 5;		//seconds the byte rate is averaged over
+	private static final String[] OPCODES = { "other", "rrq", "wrq", "data", "ack", "error", "oack" };
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//the registry every class shares
+	private static final TFTPMetrics SHARED = new TFTPMetrics();
+
+	//declaring local instance variables
+	private final LongAdder[] requests = new LongAdder[OPCODES.length];
+	private final LongAdder refused = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder started = new LongAdder();
+	private final LongAdder finished = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final Meter rate = new Meter(RATE_WINDOW);
+	private final LongAdder retransmits = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final Histogram firstBlock = new Histogram();
+	private final Histogram blockRtt = new Histogram();
+	private final Histogram transferTime = new Histogram();
+	private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<String, LongSupplier>();
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+	private boolean exported;
+	private HttpServer http;
+
+
+	//generic constructor
+	private TFTPMetrics()
+	{
+		for (int i = 0; i < requests.length; i++)
+		{
+			requests[i] = new LongAdder();
+		}
+	}
+
+
+	public static TFTPMetrics get()
+	{
+		return SHARED;
+	}
+
+
+	//generic accessors
+	public int getActive()
+	{
+		return active.get();
+	}
+	public Histogram getFirstBlock()
+	{
+		return firstBlock;
+	}
+	public Histogram getBlockRtt()
+	{
+		return blockRtt;
+	}
+	public Histogram getTransferTime()
+	{
+		return transferTime;
+	}
+	//the endpoint's port, -1 if it isn't running
+	public synchronized int getPort()
+	{
+		return http == null ? -1 : http.getAddress().getPort();
+	}
+
+
+	/* register the MBean, and start the text endpoint if -Dtftp.metricsPort
+	 * is set (0 picks a free port); only the first call does anything
+	 */
+	public synchronized void export()
+	{
+		if (exported)
+		{
+			return;
+		}
+		exported = true;
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException e)
+		{
+			e.printStackTrace();
+		}
+		if (METRICS_PORT >= 0)
+		{
+			try
+			{
+				serve(METRICS_PORT);
+			}
+			catch (IOException e)
+			{
+				log.message(TFTPLog.Level.WARN, "Metrics", "could not listen on port " + METRICS_PORT + ": " + e);
+			}
+		}
+	}
+
+
+	//serve /metrics and /sessions on the loopback address
+	public synchronized void serve(int port) throws IOException
+	{
+		if (http != null)
+		{
+			return;
+		}
+		http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		http.createContext("/metrics", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				reply(exchange, text());
+			}
+		});
+		http.createContext("/sessions", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				reply(exchange, sessionTable());
+			}
+		});
+		http.setExecutor(null);		//requests are handled on the server's own thread
+		http.start();
+		log.message(TFTPLog.Level.INFO, "Metrics", "serving http://" + http.getAddress().getHostString()
+				+ ":" + http.getAddress().getPort() + "/metrics");
+	}
+
+
+	//stop the text endpoint
+	public synchronized void stop()
+	{
+		if (http != null)
+		{
+			http.stop(0);
+			http = null;
+		}
+	}
+
+
+	private static void reply(HttpExchange exchange, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(bytes);
+		}
+	}
+
+
+	//a request of this opcode reached the dispatcher
+	public void request(int opcode)
+	{
+		requests[(opcode > 0 && opcode < OPCODES.length) ? opcode : 0].increment();
+	}
+
+
+	//a request was answered with an ERROR instead of a transfer
+	public void refused()
+	{
+		refused.increment();
+	}
+
+
+	//a request was one the client sent again, already being served
+	public void duplicate()
+	{
+		duplicates.increment();
+	}
+
+
+	//report value under name until replaced; read each time metrics are taken
+	public void gauge(String name, LongSupplier value)
+	{
+		gauges.put(name, value);
+	}
+
+
+	/* a transfer has started: opcode is RRQ or WRQ, requestedAt the
+	 * System.nanoTime() its request was received
+	 * end() must be called on the session whatever happens
+	 */
+	public Session start(String who, int opcode, String file, InetSocketAddress peer,
+			long requestedAt, RttEstimator rtt)
+	{
+		Session s = new Session(who, opcode, file, peer, requestedAt, rtt);
+		started.increment();
+		active.incrementAndGet();
+		sessions.add(s);
+		return s;
+	}
+
+
+	/* every metric by name, in a fixed order
+	 * times are in ms, rates per second
+	 */
+	public Map<String, Number> snapshot()
+	{
+		Map<String, Number> values = new LinkedHashMap<String, Number>();
+		for (int i = 1; i < OPCODES.length; i++)
+		{
+			values.put("tftp_requests_" + OPCODES[i] + "_total", requests[i].sum());
+		}
+		values.put("tftp_requests_other_total", requests[0].sum());
+		values.put("tftp_requests_refused_total", refused.sum());
+		values.put("tftp_requests_duplicate_total", duplicates.sum());
+		values.put("tftp_sessions_active", active.get());
+		values.put("tftp_sessions_started_total", started.sum());
+		values.put("tftp_sessions_finished_total", finished.sum());
+		values.put("tftp_sessions_failed_total", failed.sum());
+		values.put("tftp_bytes_sent_total", bytesSent.sum());
+		values.put("tftp_bytes_received_total", bytesReceived.sum());
+		values.put("tftp_bytes_per_second", rate.perSecond());
+		values.put("tftp_retransmits_total", retransmits.sum());
+		values.put("tftp_timeouts_total", timeouts.sum());
+		firstBlock.snapshot("tftp_first_block_ms", values);
+		blockRtt.snapshot("tftp_block_rtt_ms", values);
+		transferTime.snapshot("tftp_transfer_ms", values);
+		for (Map.Entry<String, LongSupplier> g : gauges.entrySet())
+		{
+			values.put(g.getKey(), g.getValue().getAsLong());
+		}
+		return values;
+	}
+
+
+	//the snapshot as "name value" lines
+	public String text()
+	{
+		StringBuilder out = new StringBuilder(4096);
+		for (Map.Entry<String, Number> e : snapshot().entrySet())
+		{
+			out.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+		}
+		return out.toString();
+	}
+
+
+	//one line per live session, oldest first
+	public String sessionTable()
+	{
+		List<Session> live = new ArrayList<Session>(sessions);
+		live.sort(Comparator.comparingLong(s -> s.startedAt));
+		StringBuilder out = new StringBuilder(128 * (live.size() + 1));
+		out.append(String.format("%-12s %-4s %-24s %-22s %12s %8s %10s %9s %8s%n",
+				"session", "op", "file", "peer", "bytes", "age(ms)", "KB/s", "srtt(ms)", "retrans"));
+		for (Session s : live)
+		{
+			out.append(s).append('\n');
+		}
+		return out.toString();
+	}
+
+
+	//JMX: every snapshot entry is a read-only attribute, plus Sessions
+	public Object getAttribute(String name) throws AttributeNotFoundException
+	{
+		if (name.equals("Sessions"))
+		{
+			return sessionTable().split("\n");
+		}
+		Number value = snapshot().get(name);
+		if (value == null)
+		{
+			throw new AttributeNotFoundException(name);
+		}
+		return value;
+	}
+
+	public AttributeList getAttributes(String[] names)
+	{
+		Map<String, Number> values = snapshot();
+		AttributeList list = new AttributeList();
+		for (String name : names)
+		{
+			if (name.equals("Sessions"))
+			{
+				list.add(new Attribute(name, sessionTable().split("\n")));
+			}
+			else if (values.containsKey(name))
+			{
+				list.add(new Attribute(name, values.get(name)));
+			}
+		}
+		return list;
+	}
+
+	public MBeanInfo getMBeanInfo()
+	{
+		Map<String, Number> values = snapshot();
+		List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for (Map.Entry<String, Number> e : values.entrySet())
+		{
+			attributes.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(),
+					e.getKey(), true, false, false));
+		}
+		attributes.add(new MBeanAttributeInfo("Sessions", String[].class.getName(),
+				"live session table", true, false, false));
+		return new MBeanInfo(getClass().getName(), "TFTP server metrics",
+				attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+	}
+
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+	{
+		throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+	}
+
+	public AttributeList setAttributes(AttributeList attributes)
+	{
+		return new AttributeList();
+	}
+
+	public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException
+	{
+		throw new ReflectionException(new NoSuchMethodException(action));
+	}
+
+
+	/* one transfer in the session table
+	 * its methods are only called by the transfer's own thread; the table
+	 * reads the fields from others, so they are volatile
+	 */
+	public class Session
+	{
+		private final String who;
+		private final int opcode;
+		private final String file;
+		private final InetSocketAddress peer;
+		private final long requestedAt;
+		private final long startedAt = System.nanoTime();
+		private final RttEstimator rtt;
+		private volatile long bytes;
+		private boolean firstSeen;
+		private boolean succeeded;
+		private boolean ended;
+
+		private Session(String who, int opcode, String file, InetSocketAddress peer,
+				long requestedAt, RttEstimator rtt)
+		{
+			this.who = who;
+			this.opcode = opcode;
+			this.file = file;
+			this.peer = peer;
+			this.requestedAt = requestedAt;
+			this.rtt = rtt;
+		}
+
+
+		//a DATA block went out with length bytes of the file (resends count again)
+		public void sent(int length)
+		{
+			first();
+			bytes += length;
+			bytesSent.add(length);
+			rate.add(length);
+		}
+
+
+		//a DATA block came in with length bytes of the file
+		public void received(int length)
+		{
+			first();
+			bytes += length;
+			bytesReceived.add(length);
+			rate.add(length);
+		}
+
+
+		private void first()
+		{
+			if (!firstSeen)
+			{
+				firstSeen = true;
+				firstBlock.record(System.nanoTime() - requestedAt);
+			}
+		}
+
+
+		//a round trip time sample, in ns
+		public void rtt(long nanos)
+		{
+			blockRtt.record(nanos);
+		}
+
+
+		//the whole file went across
+		public void succeeded()
+		{
+			succeeded = true;
+		}
+
+
+		//the transfer is over, successful or not
+		public void end()
+		{
+			if (ended)
+			{
+				return;
+			}
+			ended = true;
+			sessions.remove(this);
+			active.decrementAndGet();
+			if (rtt != null)
+			{
+				retransmits.add(rtt.getRetransmits());
+				timeouts.add(rtt.getTimeouts());
+			}
+			if (succeeded)
+			{
+				finished.increment();
+				transferTime.record(System.nanoTime() - requestedAt);
+			}
+			else
+			{
+				failed.increment();
+			}
+		}
+
+
+		public String toString()
+		{
+			long age = System.nanoTime() - startedAt;
+			long b = bytes;
+			return String.format("%-12s %-4s %-24s %-22s %12d %8d %10.1f %9.3f %8d",
+					who, OPCODES[opcode].toUpperCase(), file,
+					peer.getAddress().getHostAddress() + ":" + peer.getPort(), b, age / 1000000,
+					age > 0 ? b * 1e9 / age / 1024 : 0.0,
+					rtt == null ? 0.0 : rtt.getSrtt() / 1e6,
+					rtt == null ? 0 : rtt.getRetransmits());
+		}
+	}
+
+
+	/* lock-free histogram of non-negative values (ns), log-linear: every
+	 * power of two is split into 8 buckets, so a quantile is within 12.5%
+	 * values below 16 get a bucket each
+	 */
+	public static class Histogram
+	{
+		private static final int SUB_BITS = 3;
+		private static final int SUB = 1 << SUB_BITS;
+		private static final int LINEAR = 2 * SUB;
+		private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+
+		public void record(long value)
+		{
+			if (value < 0)
+			{
+				value = 0;
+			}
+			counts.incrementAndGet(bucket(value));
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+		public long getMax()
+		{
+			return max.get();
+		}
+		public double getMean()
+		{
+			long n = count.sum();
+			return n == 0 ? 0.0 : (double)sum.sum() / n;
+		}
+
+
+		/* the value q (0 to 1) of the recorded values are at or below,
+		 * as the middle of its bucket; 0 if nothing was recorded
+		 */
+		public long quantile(double q)
+		{
+			long[] c = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				c[i] = counts.get(i);
+				total += c[i];
+			}
+			if (total == 0)
+			{
+				return 0;
+			}
+			long rank = Math.max(1, (long)Math.ceil(q * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += c[i];
+				if (seen >= rank)
+				{
+					return Math.min(max.get(), lowest(i) + (lowest(i + 1) - 1 - lowest(i)) / 2);
+				}
+			}
+			return max.get();
+		}
+
+
+		//count, mean, p50, p90, p99, p999 and max under prefix, in ms
+		public void snapshot(String prefix, Map<String, Number> values)
+		{
+			values.put(prefix + "_count", getCount());
+			values.put(prefix + "_mean", getMean() / 1e6);
+			values.put(prefix + "_p50", quantile(0.5) / 1e6);
+			values.put(prefix + "_p90", quantile(0.9) / 1e6);
+			values.put(prefix + "_p99", quantile(0.99) / 1e6);
+			values.put(prefix + "_p999", quantile(0.999) / 1e6);
+			values.put(prefix + "_max", getMax() / 1e6);
+		}
+
+
+		private static int bucket(long value)
+		{
+			if (value < LINEAR)
+			{
+				return (int)value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB - 1);
+			return LINEAR + (exponent - SUB_BITS - 1) * SUB + sub;
+		}
+
+
+		//smallest value in bucket i
+		private static long lowest(int i)
+		{
+			if (i < LINEAR)
+			{
+				return i;
+			}
+			int exponent = (i - LINEAR) / SUB + SUB_BITS + 1;
+			if (exponent > 62)
+			{
+				return Long.MAX_VALUE;
+			}
+			return (long)(SUB + (i - LINEAR) % SUB) << (exponent - SUB_BITS);
+		}
+	}
+
+
+	/* events per second over the last few whole seconds: a ring of
+	 * per-second counts, each slot reset by whichever thread first moves
+	 * it on to a new second (an add racing that reset can be lost, which
+	 * only makes the rate a little low)
+	 */
+	private static class Meter
+	{
+		private final int window;
+		private final AtomicLongArray seconds;
+		private final AtomicLongArray counts;
+
+		Meter(int window)
+		{
+			this.window = window;
+			seconds = new AtomicLongArray(window + 2);
+			counts = new AtomicLongArray(window + 2);
+		}
+
+		void add(long n)
+		{
+			long now = System.nanoTime() / 1000000000L;
+			int i = (int)Math.floorMod(now, (long)seconds.length());
+			long was = seconds.get(i);
+			if (was != now && seconds.compareAndSet(i, was, now))
+			{
+				counts.set(i, 0);
+			}
+			counts.addAndGet(i, n);
+		}
+
+		//average over the last window whole seconds
+		long perSecond()
+		{
+			long now = System.nanoTime() / 1000000000L;
+			long total = 0;
+			for (long s = now - window; s < now; s++)
+			{
+				int i = (int)Math.floorMod(s, (long)seconds.length());
+				if (seconds.get(i) == s)
+				{
+					total += counts.get(i);
+				}
+			}
+			return total / window;
+		}
+	}
+}
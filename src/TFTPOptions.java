@@ -0,0 +1,293 @@
+/**
+*Class:             TFTPOptions.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.3.0
+*
+*Purpose:           Option negotiation (RFC 2347) for both ends of a transfer.
+*					The server side looks at the options on a RRQ/WRQ, keeps
+*					the ones it supports with the values it will use, and
+*					those go back to the client in an OACK. The client side
+*					builds the options for a request and checks the OACK it
+*					gets back. Unknown options are ignored, as the RFC asks.
+*
+*					Supported options:
+*					  blksize (RFC 2348)  8 to 65464 bytes, clamped to fit in
+*					                      one IP packet when -Dtftp.mtu is set
+*					  windowsize (RFC 7440) 1 to 65535 blocks per ACK, clamped
+*					                      to -Dtftp.maxWindow (default 64)
+*					  tsize (RFC 2349)    size of the file in bytes: sent by
+*					                      the client on a WRQ, filled in by
+*					                      the server for a RRQ
+*
+*
+*Update Log:        v1.3.0
+*                       - declineTransferSize(), for a RRQ whose size
+*                         isn't known up front (netascii)
+*                   v1.2.0
+*                       - tsize option
+*                   v1.1.0
+*                       - windowsize option
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.util.*;
+
+
+public class TFTPOptions
+{
+	//option names
+	public static final String BLKSIZE = "blksize";
+	public static final String WINDOWSIZE = "windowsize";
+	public static final String TSIZE = "tsize";
+
+	//blksize limits from RFC 2348
+	public static final int MIN_BLKSIZE = 8;
+	public static final int MAX_BLKSIZE = 65464;
+
+	//windowsize limits from RFC 7440, and the most this host will agree to
+	public static final int MIN_WINDOW = 1;
+	public static final int MAX_WINDOW = 65535;
+	public static final int WINDOW_LIMIT = Math.max(MIN_WINDOW,
+			Math.min(MAX_WINDOW, Integer.getInteger("tftp.maxWindow", 64)));
+
+	//path MTU to fit DATA packets into, 0 if not configured
+	public static final int MTU = Integer.getInteger("tftp.mtu", 0);
+	//IPv4 + UDP + TFTP headers
+	private static final int OVERHEAD = 20 + 8 + TFTPPacket.HEADER_SIZE;
+
+	//declaring local instance variables
+	private int blockSize = TFTPPacket.DEFAULT_BLOCK_SIZE;
+	private int windowSize = 1;
+	private long transferSize = -1;
+	private final Map<String, String> accepted = new LinkedHashMap<String, String>();
+
+
+	//generic accessors
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+	//blocks sent before waiting for an ACK, 1 is classic lock-step
+	public int getWindowSize()
+	{
+		return windowSize;
+	}
+	//size of the file from tsize, -1 if not known
+	public long getTransferSize()
+	{
+		return transferSize;
+	}
+	//whether tsize was agreed on
+	public boolean hasTransferSize()
+	{
+		return accepted.containsKey(TSIZE);
+	}
+	//server side, RRQ: the size to answer tsize with
+	public void setTransferSize(long size)
+	{
+		transferSize = size;
+		accepted.put(TSIZE, Long.toString(size));
+	}
+	//server side, RRQ: the size won't be known until the end, so tsize
+	//is left out of the OACK
+	public void declineTransferSize()
+	{
+		transferSize = -1;
+		accepted.remove(TSIZE);
+	}
+	//options to send back in the OACK, empty if no OACK is needed
+	public Map<String, String> getAccepted()
+	{
+		return accepted;
+	}
+	public boolean isEmpty()
+	{
+		return accepted.isEmpty();
+	}
+
+
+	public String toString()
+	{
+		return accepted.isEmpty() ? "no options" : accepted.toString();
+	}
+
+
+	//largest blksize this host will use
+	public static int maxBlockSize()
+	{
+		if (MTU > 0)
+		{
+			return Math.max(MIN_BLKSIZE, Math.min(MAX_BLKSIZE, MTU - OVERHEAD));
+		}
+		return MAX_BLKSIZE;
+	}
+
+
+	/* server side: decide on the options requested by a RRQ/WRQ
+	 * a blksize above what we allow is lowered to our limit, one below
+	 * the minimum or not a number is left out so the default applies
+	 */
+	public static TFTPOptions negotiate(TFTPPacket request)
+	{
+		TFTPOptions options = new TFTPOptions();
+		int n = request.optionCount();
+		for (int i = 0; i < n; i++)
+		{
+			String name = request.optionName(i);
+			if (name.equals(BLKSIZE))
+			{
+				int size = parse(request.optionValue(i));
+				if (size >= MIN_BLKSIZE)
+				{
+					options.blockSize = Math.min(size, maxBlockSize());
+					options.accepted.put(BLKSIZE, Integer.toString(options.blockSize));
+				}
+			}
+			else if (name.equals(WINDOWSIZE))
+			{
+				int window = parse(request.optionValue(i));
+				if (window >= MIN_WINDOW)
+				{
+					options.windowSize = Math.min(window, WINDOW_LIMIT);
+					options.accepted.put(WINDOWSIZE, Integer.toString(options.windowSize));
+				}
+			}
+			else if (name.equals(TSIZE))
+			{
+				//a WRQ says how big the file is, a RRQ asks (with 0)
+				long size = parseSize(request.optionValue(i));
+				if (size >= 0)
+				{
+					options.transferSize = size;
+					options.accepted.put(TSIZE, Long.toString(size));
+				}
+			}
+		}
+		return options;
+	}
+
+
+	/* client side: options to put on a request for this block size
+	 * returns an empty map when the default is wanted
+	 */
+	public static Map<String, String> request(int blockSize)
+	{
+		return request(blockSize, 1);
+	}
+
+
+	/* client side: options to put on a request for this block size and
+	 * window, leaving out any that are at their default
+	 */
+	public static Map<String, String> request(int blockSize, int windowSize)
+	{
+		return request(blockSize, windowSize, -1);
+	}
+
+
+	/* as above, also sending tsize unless transferSize is negative
+	 * (the file's size for a WRQ, 0 to ask for it on a RRQ)
+	 */
+	public static Map<String, String> request(int blockSize, int windowSize, long transferSize)
+	{
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		blockSize = Math.min(blockSize, maxBlockSize());
+		if (blockSize != TFTPPacket.DEFAULT_BLOCK_SIZE)
+		{
+			options.put(BLKSIZE, Integer.toString(blockSize));
+		}
+		windowSize = Math.min(windowSize, MAX_WINDOW);
+		if (windowSize > 1)
+		{
+			options.put(WINDOWSIZE, Integer.toString(windowSize));
+		}
+		if (transferSize >= 0)
+		{
+			options.put(TSIZE, Long.toString(transferSize));
+		}
+		return options;
+	}
+
+
+	/* client side: check an OACK against what was requested
+	 * returns the options to use, or null if the server answered with an
+	 * option we never asked for or a value we can't accept, in which
+	 * case the transfer must be ended with ERROR 8
+	 */
+	public static TFTPOptions accept(TFTPPacket oack, Map<String, String> requested)
+	{
+		TFTPOptions options = new TFTPOptions();
+		int n = oack.optionCount();
+		for (int i = 0; i < n; i++)
+		{
+			String name = oack.optionName(i);
+			String value = oack.optionValue(i);
+			if (!requested.containsKey(name))
+			{
+				return null;
+			}
+			if (name.equals(BLKSIZE))
+			{
+				int size = parse(value);
+				if (size < MIN_BLKSIZE || size > parse(requested.get(BLKSIZE)))
+				{
+					return null;
+				}
+				options.blockSize = size;
+			}
+			else if (name.equals(WINDOWSIZE))
+			{
+				int window = parse(value);
+				if (window < MIN_WINDOW || window > parse(requested.get(WINDOWSIZE)))
+				{
+					return null;
+				}
+				options.windowSize = window;
+			}
+			else if (name.equals(TSIZE))
+			{
+				long size = parseSize(value);
+				if (size < 0)
+				{
+					return null;
+				}
+				options.transferSize = size;
+			}
+			options.accepted.put(name, value);
+		}
+		return options;
+	}
+
+
+	//tsize can pass 2GB, anything not a number counts as -1
+	private static long parseSize(String value)
+	{
+		try
+		{
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+
+	//option values are decimal ASCII, anything else counts as -1
+	private static int parse(String value)
+	{
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+}
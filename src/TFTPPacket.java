@@ -0,0 +1,445 @@
+/**
+*Class:             TFTPPacket.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Shared codec for every TFTP packet type (RRQ, WRQ, DATA,
+*					ACK, ERROR and OACK). Reading is done through a reusable
+*					flyweight that is pointed at a ByteBuffer with wrap() and
+*					reads fields in place. Writing is done with static put
+*					methods that encode straight into the caller's buffer. No
+*					objects are created for DATA or ACK packets in either
+*					direction; strings are only built when asked for.
+*
+*					Packet formats (RFC 1350, RFC 2347):
+*					  RRQ/WRQ  | 01/02 | filename | 0 | mode | 0 | [opt | 0 | value | 0]*
+*					  DATA     | 03    | block #  | data (0 to blksize bytes)
+*					  ACK      | 04    | block #
+*					  ERROR    | 05    | code     | message | 0
+*					  OACK     | 06    | [opt | 0 | value | 0]*
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.nio.*;
+import java.util.*;
+
+
+public class TFTPPacket
+{
+	//opcodes
+	public static final int RRQ = 1;
+	public static final int WRQ = 2;
+	public static final int DATA = 3;
+	public static final int ACK = 4;
+	public static final int ERROR = 5;
+	public static final int OACK = 6;
+
+	//error codes
+	public static final int ERR_NOT_DEFINED = 0;
+	public static final int ERR_FILE_NOT_FOUND = 1;
+	public static final int ERR_ACCESS_VIOLATION = 2;
+	public static final int ERR_DISK_FULL = 3;
+	public static final int ERR_ILLEGAL_OPERATION = 4;
+	public static final int ERR_UNKNOWN_TID = 5;
+	public static final int ERR_FILE_EXISTS = 6;
+	public static final int ERR_NO_SUCH_USER = 7;
+	public static final int ERR_OPTION_REFUSED = 8;
+
+	//sizes
+	public static final int HEADER_SIZE = 4;
+	public static final int DEFAULT_BLOCK_SIZE = 512;
+
+	//declaring local instance variables
+	private ByteBuffer buf;
+	private int start;
+	private int end;
+	//offsets of the NUL separated fields of RRQ/WRQ/OACK/ERROR, set by isValid()
+	private int[] fields = new int[16];
+	private int fieldCount;
+
+
+	/* point this flyweight at the packet between position and limit of buf
+	 * buf itself is not modified, so it can be reused for the next receive
+	 */
+	public TFTPPacket wrap(ByteBuffer buf)
+	{
+		this.buf = buf;
+		this.start = buf.position();
+		this.end = buf.limit();
+		this.fieldCount = -1;
+		return this;
+	}
+
+
+	//total packet length in bytes
+	public int length()
+	{
+		return end - start;
+	}
+
+
+	//opcode, or -1 if the packet is too short to hold one
+	public int opcode()
+	{
+		if (length() < 2)
+		{
+			return -1;
+		}
+		return buf.getShort(start) & 0xFFFF;
+	}
+
+
+	//block number of a DATA or ACK packet
+	public int block()
+	{
+		return buf.getShort(start + 2) & 0xFFFF;
+	}
+
+
+	//absolute index of the first data byte of a DATA packet
+	public int dataOffset()
+	{
+		return start + HEADER_SIZE;
+	}
+
+
+	//number of data bytes carried by a DATA packet
+	public int dataLength()
+	{
+		return end - start - HEADER_SIZE;
+	}
+
+
+	//copy the data bytes of a DATA packet into dst, advancing its position
+	public void copyData(ByteBuffer dst)
+	{
+		if (buf.hasArray())
+		{
+			dst.put(buf.array(), buf.arrayOffset() + dataOffset(), dataLength());
+			return;
+		}
+		for (int i = dataOffset(); i < end; i++)
+		{
+			dst.put(buf.get(i));
+		}
+	}
+
+
+	//code carried by an ERROR packet
+	public int errorCode()
+	{
+		return buf.getShort(start + 2) & 0xFFFF;
+	}
+
+
+	//message carried by an ERROR packet
+	public String errorMessage()
+	{
+		if (!isValid() || fieldCount < 1)
+		{
+			return "";
+		}
+		return field(0);
+	}
+
+
+	/* check the packet is well formed for its opcode
+	 * for RRQ/WRQ this means a non-empty filename and mode, each NUL
+	 * terminated, followed only by complete option/value pairs
+	 */
+	public boolean isValid()
+	{
+		int op = opcode();
+		switch (op)
+		{
+			case DATA:
+				return length() >= HEADER_SIZE;
+			case ACK:
+				return length() == HEADER_SIZE;
+			case ERROR:
+				return length() > HEADER_SIZE && splitFields(start + HEADER_SIZE) && fieldCount == 1;
+			case OACK:
+				return splitFields(start + 2) && fieldCount % 2 == 0;
+			case RRQ:
+			case WRQ:
+				return splitFields(start + 2) && fieldCount >= 2 && fieldCount % 2 == 0
+						&& fieldLength(0) > 0 && fieldLength(1) > 0;
+			default:
+				return false;
+		}
+	}
+
+
+	//filename of a RRQ/WRQ
+	public String filename()
+	{
+		return isRequest() ? field(0) : null;
+	}
+
+
+	//transfer mode of a RRQ/WRQ, as sent
+	public String mode()
+	{
+		return isRequest() ? field(1) : null;
+	}
+
+
+	//compare the mode against a name without building a string
+	public boolean modeEquals(String name)
+	{
+		return isRequest() && fieldEqualsIgnoreCase(1, name);
+	}
+
+
+	//number of option/value pairs on a RRQ/WRQ/OACK
+	public int optionCount()
+	{
+		if (!isValid())
+		{
+			return 0;
+		}
+		return (fieldCount - firstOption()) / 2;
+	}
+
+
+	//option name i, lower cased since option names are case-insensitive
+	public String optionName(int i)
+	{
+		return field(firstOption() + 2 * i).toLowerCase();
+	}
+
+
+	//option value i
+	public String optionValue(int i)
+	{
+		return field(firstOption() + 2 * i + 1);
+	}
+
+
+	//all options in the order they were sent
+	public Map<String, String> options()
+	{
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		int n = optionCount();
+		for (int i = 0; i < n; i++)
+		{
+			options.put(optionName(i), optionValue(i));
+		}
+		return options;
+	}
+
+
+	/* readable one line summary for logs, e.g. "DATA #12 (512B)"
+	 * allocates, so keep it off the transfer path unless verbose
+	 */
+	public String describe()
+	{
+		switch (opcode())
+		{
+			case RRQ:
+			case WRQ:
+				if (!isValid())
+				{
+					return (opcode() == RRQ ? "RRQ" : "WRQ") + " (malformed)";
+				}
+				return (opcode() == RRQ ? "RRQ " : "WRQ ") + filename() + " " + mode()
+						+ (optionCount() > 0 ? " " + options() : "");
+			case DATA:
+				return "DATA #" + block() + " (" + dataLength() + "B)";
+			case ACK:
+				return "ACK #" + block();
+			case ERROR:
+				return "ERROR " + errorCode() + " " + errorMessage();
+			case OACK:
+				return "OACK " + options();
+			default:
+				return "UNKNOWN opcode " + opcode() + " (" + length() + "B)";
+		}
+	}
+
+
+	/* writers: each encodes one packet at dst's position and advances it
+	 * dst must have room for the whole packet
+	 */
+
+	//RRQ or WRQ without options
+	public static void putRequest(ByteBuffer dst, int opcode, String filename, String mode)
+	{
+		putRequest(dst, opcode, filename, mode, null);
+	}
+
+
+	//RRQ or WRQ with options (options may be null)
+	public static void putRequest(ByteBuffer dst, int opcode, String filename, String mode,
+			Map<String, String> options)
+	{
+		dst.putShort((short)opcode);
+		putString(dst, filename);
+		putString(dst, mode);
+		putOptions(dst, options);
+	}
+
+
+	//DATA header only; the caller fills in the data bytes after it
+	public static void putDataHeader(ByteBuffer dst, int block)
+	{
+		dst.putShort((short)DATA);
+		dst.putShort((short)block);
+	}
+
+
+	//DATA with the remaining bytes of data as payload; data's position is advanced
+	public static void putData(ByteBuffer dst, int block, ByteBuffer data)
+	{
+		putDataHeader(dst, block);
+		dst.put(data);
+	}
+
+
+	//ACK
+	public static void putAck(ByteBuffer dst, int block)
+	{
+		dst.putShort((short)ACK);
+		dst.putShort((short)block);
+	}
+
+
+	//ERROR
+	public static void putError(ByteBuffer dst, int code, String message)
+	{
+		dst.putShort((short)ERROR);
+		dst.putShort((short)code);
+		putString(dst, message);
+	}
+
+
+	//OACK
+	public static void putOack(ByteBuffer dst, Map<String, String> options)
+	{
+		dst.putShort((short)OACK);
+		putOptions(dst, options);
+	}
+
+
+	//space an ERROR packet with this message needs
+	public static int errorSize(String message)
+	{
+		return HEADER_SIZE + message.length() + 1;
+	}
+
+
+	//write an ASCII string followed by a 0 byte
+	private static void putString(ByteBuffer dst, String s)
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			dst.put((byte)s.charAt(i));
+		}
+		dst.put((byte)0);
+	}
+
+
+	private static void putOptions(ByteBuffer dst, Map<String, String> options)
+	{
+		if (options == null)
+		{
+			return;
+		}
+		for (Map.Entry<String, String> option : options.entrySet())
+		{
+			putString(dst, option.getKey());
+			putString(dst, option.getValue());
+		}
+	}
+
+
+	private boolean isRequest()
+	{
+		int op = opcode();
+		return (op == RRQ || op == WRQ) && isValid();
+	}
+
+
+	//index of the first option field
+	private int firstOption()
+	{
+		return opcode() == OACK ? 0 : 2;
+	}
+
+
+	/* record where each NUL terminated field starts, from 'from' to the end
+	 * fails if the last field is not terminated
+	 */
+	private boolean splitFields(int from)
+	{
+		if (fieldCount >= 0)
+		{
+			return true;
+		}
+		int n = 0;
+		int fieldStart = from;
+		for (int i = from; i < end; i++)
+		{
+			if (buf.get(i) == 0)
+			{
+				if (n + 2 > fields.length)
+				{
+					fields = Arrays.copyOf(fields, fields.length * 2);
+				}
+				fields[n++] = fieldStart;
+				fields[n++] = i;
+				fieldStart = i + 1;
+			}
+		}
+		if (fieldStart != end)
+		{
+			return false;
+		}
+		fieldCount = n / 2;
+		return true;
+	}
+
+
+	private int fieldLength(int i)
+	{
+		return fields[2 * i + 1] - fields[2 * i];
+	}
+
+
+	private String field(int i)
+	{
+		int from = fields[2 * i];
+		int len = fieldLength(i);
+		char[] chars = new char[len];
+		for (int c = 0; c < len; c++)
+		{
+			chars[c] = (char)(buf.get(from + c) & 0xFF);
+		}
+		return new String(chars);
+	}
+
+
+	private boolean fieldEqualsIgnoreCase(int i, String s)
+	{
+		int from = fields[2 * i];
+		if (fieldLength(i) != s.length())
+		{
+			return false;
+		}
+		for (int c = 0; c < s.length(); c++)
+		{
+			if (Character.toLowerCase((char)(buf.get(from + c) & 0xFF)) != Character.toLowerCase(s.charAt(c)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
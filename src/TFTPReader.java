@@ -2,78 +2,181 @@
 *Class:             TFTPReader.java
 *Project:           TFTP Project - Group 4
 *Author:            Jason Van Kerkhoven                                             
-*Date of Update:    26/09/2016                                              
-*Version:           1.0.0                                                      
+*Date of Update:    17/10/2026                                              
+*Version:           1.1.1                                                      
 *                                                                                    
 *Purpose:           Read a file, parse into 512 byte sections
 *					and return a list of byte arrays
 *					(Note currently file must be in the directory
 *					1 above src)
+*					Also serves a file one block at a time as a BlockSource,
+*					reading block N only when it is asked for with a
+*					positional FileChannel read into one reused buffer
 * 
 * 
-*Update Log:    	v1.0.0
+*Update Log:    	v1.1.1
+*						- setBlockSize, so a file can be opened before its
+*						  block size has been agreed
+*					v1.1.0
+*						- implements BlockSource, reads blocks on demand
+*						- readAndSplit reads in bulk and ends with an
+*						  empty block when the file fills its last one
+*					v1.0.0
 *                       - null
 */
 
 
 //imports
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 import java.util.*;
 
 
-public class TFTPReader 
+public class TFTPReader implements BlockSource
 {
 	//declaring local class constants
 	private static final int MAX_SIZE = 512;
-
+	
+	//declaring local instance variables (unused by readAndSplit)
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long size;
+	private int blockSize;
+	
+	
+	//generic constructor, for readAndSplit only
+	public TFTPReader()
+	{
+	}
+	
+	
+	//open file as a block source with MAX_SIZE blocks
+	public TFTPReader(String file)
+	throws FileNotFoundException, IOException
+	{
+		this(file, MAX_SIZE);
+	}
+	
+	
+	//open file as a block source with the given block size
+	public TFTPReader(String file, int blockSize)
+	throws FileNotFoundException, IOException
+	{
+		try
+		{
+			channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		}
+		catch (NoSuchFileException e)
+		{
+			throw new FileNotFoundException(file);
+		}
+		this.size = channel.size();
+		this.blockSize = blockSize;
+		this.buffer = ByteBuffer.allocateDirect(blockSize);
+	}
+	
+	
+	public long size()
+	{
+		return size;
+	}
+	
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	
+	/* change the size of the blocks served, for a file opened before the
+	 * peer settled on one; the buffer only grows
+	 */
+	public void setBlockSize(int blockSize)
+	{
+		if (blockSize > buffer.capacity())
+		{
+			buffer = ByteBuffer.allocateDirect(blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+	
+	
+	public int blockCount()
+	{
+		return (int)(size / blockSize) + 1;
+	}
+	
+	
+	/* reads block n straight from its offset in the file
+	 * the returned buffer is reused by the next call
+	 */
+	public ByteBuffer block(int n) throws IOException
+	{
+		if (n < 1 || n > blockCount())
+		{
+			throw new IndexOutOfBoundsException("block " + n + " of " + blockCount());
+		}
+		long offset = (long)(n - 1) * blockSize;
+		int length = (int)Math.min(blockSize, size - offset);
+		
+		buffer.clear();
+		buffer.limit(length);
+		//a positional read may return short, keep going until the block is full
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, offset + buffer.position());
+			if (read < 0)
+			{
+				throw new EOFException("file shrank while block " + n + " was being read");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+	
+	
+	public void close() throws IOException
+	{
+		if (channel != null)
+		{
+			channel.close();
+		}
+	}
+	
 	
 	/* reads file passed to it, returns a linked list of byte[]
 	 * splits file into arrays (0B to MAX_Size in length) 
 	 * passes back a linked list of these arrays 
-	 * (last array will ALWAYS be less than MAX_SIZE in length)
+	 * (last array will ALWAYS be less than MAX_SIZE in length,
+	 * and is empty if the file is a multiple of MAX_SIZE)
+	 * holds the whole file in memory, prefer block(n) for transfers
 	 */
 	public LinkedList<byte[]> readAndSplit(String file)
 	throws FileNotFoundException, IOException 
 	{
 		//declaring local variables
 		LinkedList<byte[]> dataChain = new LinkedList<byte[]>();
-		byte[] arr = new byte[MAX_SIZE];
-		int b = 0;
-		int i = 0;
+		TFTPReader reader = new TFTPReader(file, MAX_SIZE);
 		
-		//load buffer with data
-		BufferedInputStream input = new BufferedInputStream(new FileInputStream(file));
-	
-		//run until buffer is empty
-		while( (b=input.read()) != -1)
+		try
 		{
-			arr[i] = (byte)b;
-			i++;
-			
-			//check if current arr is full
-			if (i >= MAX_SIZE)
+			//copy each block out of the reused buffer
+			int count = reader.blockCount();
+			for (int n = 1; n <= count; n++)
 			{
-				//reset 512B max arr construction, add full
-				//arr data to linked list to be returned
-				i=0;
-				dataChain.add(arr.clone());
+				ByteBuffer block = reader.block(n);
+				byte[] arr = new byte[block.remaining()];
+				block.get(arr);
+				dataChain.add(arr);
 			}
 		}
-		
-		//more than 0 bytes left in arr
-		if (i > 0)
+		finally
 		{
-			byte[] tempArr = new byte[i];
-			for(int a=0; a<i; a++)
-			{
-				tempArr[a] = arr[a];
-			}
-			dataChain.add(tempArr);
+			reader.close();
 		}
 		
-		//close buffer
-		input.close();
-		
 		return dataChain;
 	}
 	
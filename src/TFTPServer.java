@@ -1,8 +1,20 @@
 // TFTPServer.java
 // This class is the server side of a simple TFTP server based on
 // UDP/IP. The server receives a read or write packet from a client and
-// sends back the appropriate response without any actual file transfer.
-// One socket (69) is used to receive (it stays open) and another for each response. 
+// sends back the appropriate response. Read requests are served by
+// readThread, which streams the file one block at a time, and write
+// requests by writeThread, which leaves the disk writes to WriteBehind.
+// A netascii transfer goes through Netascii on the way, a block at a time.
+// Both are state machines that only react to packets and timeouts (see
+// ServerThread), so a pool thread or a TransferLoop can drive them.
+// One channel (69) is used to receive (it stays open) and another for each response.
+// Intake on that channel is done by a TFTPListener on its own thread, and
+// requests are turned into transfers by a TFTPDispatcher; this class is
+// the window around them. TFTPDispatcher.main runs the same server headless.
+// Every transfer is a session in TFTPMetrics, which counts its bytes, round
+// trip times and duration for JMX and the -Dtftp.metricsPort endpoint.
+// Transfers are tracked by a SessionRegistry; "quit" drains them through
+// it rather than hunting for their threads.
 
 import java.io.*; 
 import java.net.*;
@@ -15,15 +27,20 @@ import javax.swing.JTextArea;
 
 public class TFTPServer extends JFrame{
 
-   // types of requests we can receive
-   public static enum Request { READ, WRITE, ERROR};
-   // responses for valid requests
-   public static final byte[] readResp = {0, 3, 0, 1};
-   public static final byte[] writeResp = {0, 4, 0, 0};
-   
+   private static final long serialVersionUID = 1L;
+
+   // well-known port requests arrive on
+   public static final int SERVER_PORT = TFTPDispatcher.SERVER_PORT;
+
    // UDP datagram packets and sockets used to send / receive
-   private DatagramPacket sendPacket, receivePacket;
-   private DatagramSocket receiveSocket, sendSocket;
+   private DatagramPacket sendPacket;
+   private DatagramSocket sendSocket;
+
+   // request port, transfer limits and dispatch, shared with the headless server
+   private TFTPDispatcher dispatcher;
+
+   // everything the server reports goes through the shared asynchronous log
+   private static final TFTPLog log = TFTPLog.get();
    
    /**
     * JTextArea for the factorial thread.
@@ -42,6 +59,11 @@ public class TFTPServer extends JFrame{
     */
    
    public TFTPServer(String title)
+   {
+	   this(title, SERVER_PORT);
+   }
+
+   public TFTPServer(String title, int port)
    {
 	   super(title);
 
@@ -49,6 +71,7 @@ public class TFTPServer extends JFrame{
        out.setEditable(false);
        JScrollPane pane1 = new JScrollPane(out, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
        pane1.setBorder(BorderFactory.createTitledBorder("Output Log"));
+       log.addSink(new TFTPLog.TextAreaSink(out));
 
        status = new JTextArea(5, 40);
        status.setEditable(false);
@@ -62,107 +85,41 @@ public class TFTPServer extends JFrame{
        
 	   
       try {
-         // Construct a datagram socket and bind it to port 69
-         // on the local host machine. This socket will be used to
-         // receive UDP Datagram packets.
-         receiveSocket = new DatagramSocket(69);
-      } catch (SocketException se) {
+         // Construct a dispatcher whose non-blocking listener is bound
+         // to port 69 on the local host machine. This channel will be
+         // used to receive UDP Datagram packets.
+         dispatcher = new TFTPDispatcher(port);
+      } catch (IOException se) {
          se.printStackTrace();
          System.exit(1);
       }
    }
 
-   public void receiveAndSendTFTP() throws Exception
+   public TFTPListener getListener()
    {
-	   out.append("Initializing Server...\n");
+      return dispatcher.getListener();
+   }
 
-      byte[] data,
-             response = new byte[4];
-      
-      Request req; // READ, WRITE or ERROR
-      ArrayList currentThreads;
-      String filename, mode;
-      int len, j=0, k=0;
-      int threadNum = 0;
-      ThreadGroup initializedThreads = new ThreadGroup("ServerThread");
-      for(;;) { // loop forever
-         // Construct a DatagramPacket for receiving packets up
-         // to 100 bytes long (the length of the byte array).
-         
-         data = new byte[100];
-         receivePacket = new DatagramPacket(data, data.length);
+   public TransferExecutor getTransfers()
+   {
+      return dispatcher.getTransfers();
+   }
 
-         System.out.println("Server: Waiting for packet.");
-         // Block until a datagram packet is received from receiveSocket.
-         try {
-            receiveSocket.receive(receivePacket);
-         } catch (IOException e) {
-            e.printStackTrace();
-            System.exit(1);
-         }
+   public void receiveAndSendTFTP() throws Exception
+   {
+	   log.message(TFTPLog.Level.INFO, "Server", "Initializing Server...");
 
-         // Process the received datagram.
-         out.append("Server: Packet received:");
-         out.append("From host: " + receivePacket.getAddress());
-         out.append("Host port: " + receivePacket.getPort());
-         len = receivePacket.getLength();
-         out.append("Length: " + len);
-         out.append("Containing: " );
-         
-         // print the bytes
-         for (j=0;j<len;j++) {
-        	 out.append("byte " + j + " " + data[j]);
-         }
+      TFTPListener.Datagram receivePacket;
 
-         // Form a String from the byte array.
-         String received = new String(data,0,len);
-         out.append(received);
+      // the listener only receives and queues, everything below runs here
+      dispatcher.start();
 
-         // If it's a read, send back DATA (03) block 1
-         // If it's a write, send back ACK (04) block 0
-         // Otherwise, ignore it
-         if (data[0]!=0) req = Request.ERROR; // bad
-         else if (data[1]==1) req = Request.READ; // could be read
-         else if (data[1]==2) req = Request.WRITE; // could be write
-         else req = Request.ERROR; // bad
+      for(;;) { // loop forever
+         // Block until the listener has queued a request.
+         receivePacket = dispatcher.getListener().take();
 
-         if (req!=Request.ERROR) { // check for filename
-             // search for next all 0 byte
-             for(j=2;j<len;j++) {
-                 if (data[j] == 0) break;
-            }
-            if (j==len) req=Request.ERROR; // didn't find a 0 byte
-            if (j==2) req=Request.ERROR; // filename is 0 bytes long
-            // otherwise, extract filename
-            filename = new String(data,2,j-2);
-         }
- 
-         if(req!=Request.ERROR) { // check for mode
-             // search for next all 0 byte
-             for(k=j+1;k<len;k++) { 
-                 if (data[k] == 0) break;
-            }
-            if (k==len) req=Request.ERROR; // didn't find a 0 byte
-            if (k==j+1) req=Request.ERROR; // mode is 0 bytes long
-            mode = new String(data,j,k-j-1);
-         }
-         
-         if(k!=len-1) req=Request.ERROR; // other stuff at end of packet        
-         
-         // Create a response.
-         if (req==Request.READ) { // for Read it's 0301
-        	 threadNum++;
-        	Thread readRequest =  new Thread(initializedThreads, new readThread(out, receivePacket.getPort(), "Thread "+threadNum));
-        	readRequest.start();
-            response = readResp;
-         } else if (req==Request.WRITE) { // for Write it's 0400
-        	threadNum++;
-        	Thread writeRequest =  new Thread(initializedThreads, new writeThread(out, receivePacket.getPort(),"Thread "+threadNum));
-         	writeRequest.start();
-            response = writeResp;
-         } else { // it was invalid, just quit
-            throw new Exception("Not yet implemented");
-         }
+         // Start a readThread or writeThread for it, or refuse it.
+         dispatcher.dispatch(receivePacket);
 
          int caretOffset = commandLine.getCaretPosition();
          int lineNumber = commandLine.getLineOfOffset(caretOffset);
@@ -172,32 +129,19 @@ public class TFTPServer extends JFrame{
          /* TEMPORARY, not sure if we should do it like this or implement keylisteners (not sure if threadsafe)*/
          if(commandLine.getText(start, (end-start)).equalsIgnoreCase("quit"))
          {
-        	 Set<Thread> threadSet = Thread.getAllStackTraces().keySet();
-        	 while(threadSet.iterator().hasNext()){
-        		Thread s = threadSet.iterator().next();
-        		if(s.getThreadGroup().getName().equals(initializedThreads.getName()))
-        		{
-        			((ServerThread)s).requestStop();
-        		}
-        	 }
+            // stop taking requests and let the transfers in flight finish,
+            // stopping whatever is left once the grace period is up
+            dispatcher.shutdown(TFTPDispatcher.SHUTDOWN_GRACE);
+            return;
          }
       } // end of loop
 
    }
    
-   Thread[] getServerThreads( final ThreadGroup group ) {
-	    if ( group == null )
-	        throw new NullPointerException( "Null thread group" );
-	    int nAlloc = group.activeCount( );
-	    int n = 0;
-	    Thread[] threads;
-	    do {
-	        nAlloc *= 2;
-	        threads = new Thread[ nAlloc ];
-	        n = group.enumerate( threads );
-	    } while ( n == nAlloc );
-	    return java.util.Arrays.copyOf( threads, n );
-	}
+   public SessionRegistry getSessions()
+   {
+      return dispatcher.getSessions();
+   }
 
    public static void main( String args[] ) throws Exception
    {
@@ -206,155 +150,3 @@ public class TFTPServer extends JFrame{
       c.receiveAndSendTFTP();
    }
 }
-
-class readThread extends ServerThread implements Runnable
-{
-    /**
-     * The text area where this thread's output will be displayed.
-     */
-    private JTextArea transcript;
-    
-
-    public readThread(JTextArea transcript, int twoWayPort, String title) {
-        this.transcript = transcript;
-    }
-
-    public void run() {
-    	/* COPY AND PASTED THE ACK SECTION FROM THE AMPLE SOLUTION TO HELP GET STARTED*/
-    	 // Construct a datagram packet that is to be sent to a specified port
-        // on a specified host.
-        // The arguments are:
-        //  data - the packet data (a byte array). This is the response.
-        //  receivePacket.getLength() - the length of the packet data.
-        //     This is the length of the msg we just created.
-        //  receivePacket.getAddress() - the Internet address of the
-        //     destination host. Since we want to send a packet back to the
-        //     client, we extract the address of the machine where the
-        //     client is running from the datagram that was sent to us by
-        //     the client.
-        //  receivePacket.getPort() - the destination port number on the
-        //     destination host where the client is running. The client
-        //     sends and receives datagrams through the same socket/port,
-        //     so we extract the port that the client used to send us the
-        //     datagram, and use that as the destination port for the TFTP
-        //     packet.
-    	/*
-        sendPacket = new DatagramPacket(response, response.length,
-                              receivePacket.getAddress(), receivePacket.getPort());
-
-        System.out.println("Server: Sending packet:");
-        System.out.println("To host: " + sendPacket.getAddress());
-        System.out.println("Destination host port: " + sendPacket.getPort());
-        len = sendPacket.getLength();
-        System.out.println("Length: " + len);
-        System.out.println("Containing: ");
-        for (j=0;j<len;j++) {
-           System.out.println("byte " + j + " " + response[j]);
-        }
-
-        // Send the datagram packet to the client via a new socket.
-
-        try {
-           // Construct a new datagram socket and bind it to any port
-           // on the local host machine. This socket will be used to
-           // send UDP Datagram packets.
-           sendSocket = new DatagramSocket();
-        } catch (SocketException se) {
-           se.printStackTrace();
-           System.exit(1);
-        }
-
-        try {
-           sendSocket.send(sendPacket);
-        } catch (IOException e) {
-           e.printStackTrace();
-           System.exit(1);
-        }
-
-        System.out.println("Server: packet sent using port " + sendSocket.getLocalPort());
-        System.out.println();
-
-        // We're finished with this socket, so close it.
-        sendSocket.close();
-		*/
-        transcript.append(Thread.currentThread() + " finished\n");
-    }
-    
-}
-
-
-class writeThread extends ServerThread implements Runnable
-{
-    /**
-     * The text area where this thread's output will be displayed.
-     */
-    JTextArea transcript;
-
-    public writeThread(JTextArea transcript, int twoWayPort, String title) {
-        this.transcript = transcript;
-    }
-
-    public void run() {
-    	/* COPY AND PASTED THE ACK SECTION FROM THE AMPLE SOLUTION TO HELP GET STARTED*/
-   	 // Construct a datagram packet that is to be sent to a specified port
-       // on a specified host.
-       // The arguments are:
-       //  data - the packet data (a byte array). This is the response.
-       //  receivePacket.getLength() - the length of the packet data.
-       //     This is the length of the msg we just created.
-       //  receivePacket.getAddress() - the Internet address of the
-       //     destination host. Since we want to send a packet back to the
-       //     client, we extract the address of the machine where the
-       //     client is running from the datagram that was sent to us by
-       //     the client.
-       //  receivePacket.getPort() - the destination port number on the
-       //     destination host where the client is running. The client
-       //     sends and receives datagrams through the same socket/port,
-       //     so we extract the port that the client used to send us the
-       //     datagram, and use that as the destination port for the TFTP
-       //     packet.
-   	/*
-       sendPacket = new DatagramPacket(response, response.length,
-                             receivePacket.getAddress(), receivePacket.getPort());
-
-       System.out.println("Server: Sending packet:");
-       System.out.println("To host: " + sendPacket.getAddress());
-       System.out.println("Destination host port: " + sendPacket.getPort());
-       len = sendPacket.getLength();
-       System.out.println("Length: " + len);
-       System.out.println("Containing: ");
-       for (j=0;j<len;j++) {
-          System.out.println("byte " + j + " " + response[j]);
-       }
-
-       // Send the datagram packet to the client via a new socket.
-
-       try {
-          // Construct a new datagram socket and bind it to any port
-          // on the local host machine. This socket will be used to
-          // send UDP Datagram packets.
-          sendSocket = new DatagramSocket();
-       } catch (SocketException se) {
-          se.printStackTrace();
-          System.exit(1);
-       }
-
-       try {
-          sendSocket.send(sendPacket);
-       } catch (IOException e) {
-          e.printStackTrace();
-          System.exit(1);
-       }
-
-       System.out.println("Server: packet sent using port " + sendSocket.getLocalPort());
-       System.out.println();
-
-       // We're finished with this socket, so close it.
-       sendSocket.close();
-		*/
-	
-        transcript.append(Thread.currentThread() + " finished\n");
-    }
-}
-
-
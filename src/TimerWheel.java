@@ -0,0 +1,293 @@
+/**
+*Class:             TimerWheel.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Timers for many transfers at once, each scheduled and
+*					cancelled in constant time however many are pending. Time
+*					is cut into ticks of -Dtftp.timerTick microseconds (1000);
+*					a timer goes in the slot for the tick its deadline falls
+*					in, on the first of several wheels of -Dtftp.timerSlots
+*					slots (256) each. A timer too far off for the first wheel
+*					goes on the next, whose slots are a whole turn of the one
+*					before, and so on; as time reaches one of those slots its
+*					timers are moved down onto finer wheels, until they come
+*					round on the first one and expire. Slots are lists linked
+*					through the timers themselves, so nothing is allocated
+*					once a timer exists, however often it is moved.
+*
+*					A timer never expires before its deadline, and expires at
+*					most a tick after it (given advance() is called that
+*					often). A transfer has one timer: retransmission, and
+*					giving up on a client that has gone quiet, are both
+*					decided when it expires (see RttEstimator).
+*
+*					Not thread safe: a TransferLoop keeps one for its
+*					transfers, TFTPLoad one for its arrivals.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.util.concurrent.*;
+import java.util.function.*;
+
+
+public class TimerWheel
+{
+	//declaring local class constants
+	public static final long TICK = TimeUnit.MICROSECONDS.toNanos(Long.getLong("tftp.timerTick", 1000));
+	public static final int SLOTS = Integer.getInteger("tftp.timerSlots", 256);
+
+	//declaring local instance variables
+	private final long tick;			//ns
+	private final long start;			//System.nanoTime() of tick 0
+	private final int bits;				//log2 of slots per wheel
+	private final int mask;
+	private final Timer[][] wheels;		//[wheel][slot], each slot a list
+	private final int[] counts;			//timers on each wheel
+	private long current;				//next tick to be done, every one before it has been
+	private int size;
+
+
+	//the server's settings, starting now
+	public TimerWheel()
+	{
+		this(TICK, SLOTS, System.nanoTime());
+	}
+
+
+	/* ticks of tick ns from start (System.nanoTime()), slots per wheel
+	 * rounded up to a power of 2, and as many wheels as it takes to
+	 * reach any deadline
+	 */
+	public TimerWheel(long tick, int slots, long start)
+	{
+		if (tick < 1 || slots < 2)
+		{
+			throw new IllegalArgumentException("tick must be >= 1ns and slots >= 2");
+		}
+		this.tick = tick;
+		this.start = start;
+		bits = 32 - Integer.numberOfLeadingZeros(slots - 1);
+		mask = (1 << bits) - 1;
+		int span = Long.numberOfLeadingZeros(tick);		//bits of ticks up to 2^63ns
+		int levels = (span + bits - 1) / bits;
+		wheels = new Timer[levels][1 << bits];
+		counts = new int[levels];
+	}
+
+
+	//generic accessors
+	public int size()
+	{
+		return size;
+	}
+	public long getTick()
+	{
+		return tick;
+	}
+	public int getSlots()
+	{
+		return mask + 1;
+	}
+
+
+	/* have timer expire at deadline (System.nanoTime()), moving it if it
+	 * is already scheduled; a deadline already passed expires at the
+	 * next tick
+	 */
+	public void schedule(Timer timer, long deadline)
+	{
+		if (timer.scheduled)
+		{
+			unlink(timer);
+		}
+		else
+		{
+			timer.scheduled = true;
+			size++;
+		}
+		long ticks = deadline - start;
+		long due = (ticks <= 0) ? 0 : (ticks + tick - 1) / tick;
+		timer.deadline = deadline;
+		timer.due = Math.max(due, current);
+		insert(timer);
+	}
+
+
+	//take timer off the wheel, if it is on it
+	public void cancel(Timer timer)
+	{
+		if (timer.scheduled)
+		{
+			unlink(timer);
+			timer.scheduled = false;
+			size--;
+		}
+	}
+
+
+	/* expire every timer due by now (System.nanoTime()), handing each to
+	 * expired; expired may schedule timers again, including the one it
+	 * was given, which then expire at the next tick at the earliest
+	 */
+	public void advance(long now, Consumer<Timer> expired)
+	{
+		long target = Math.floorDiv(now - start, tick);
+		while (current <= target)
+		{
+			if (size == 0)
+			{
+				current = target + 1;
+				return;
+			}
+			long t = current;
+
+			//the slots of the coarser wheels this tick starts move down,
+			//coarsest first, so each lands before its own slot is done
+			int top = 0;
+			while (top + 1 < wheels.length && (t & ((1L << (bits * (top + 1))) - 1)) == 0)
+			{
+				top++;
+			}
+			for (int level = top; level >= 1; level--)
+			{
+				int slot = (int)((t >>> (bits * level)) & mask);
+				Timer timer = wheels[level][slot];
+				wheels[level][slot] = null;
+				while (timer != null)
+				{
+					Timer next = timer.next;
+					counts[level]--;
+					insert(timer);
+					timer = next;
+				}
+			}
+
+			//the timers due this tick: taken off the slot first, so ones
+			//scheduled again from expired go on from the next tick
+			int slot = (int)(t & mask);
+			Timer timer = wheels[0][slot];
+			wheels[0][slot] = null;
+			current = t + 1;
+			while (timer != null)
+			{
+				Timer next = timer.next;
+				counts[0]--;
+				size--;
+				timer.scheduled = false;
+				timer.prev = null;
+				timer.next = null;
+				expired.accept(timer);
+				timer = next;
+			}
+		}
+	}
+
+
+	/* when (System.nanoTime()) advance() may next have a timer to expire,
+	 * or Long.MAX_VALUE if none are scheduled
+	 * looks at most a turn of the first wheel ahead
+	 */
+	public long nextExpiry()
+	{
+		if (size == 0)
+		{
+			return Long.MAX_VALUE;
+		}
+		//the first slot with timers, or the first tick a coarser wheel's
+		//slot moves down at, whichever is sooner
+		boolean coarser = size > counts[0];
+		long t = current;
+		while (wheels[0][(int)(t & mask)] == null && !(coarser && (t & mask) == 0))
+		{
+			t++;
+		}
+		return start + t * tick;
+	}
+
+
+	//put a scheduled timer on the wheel its due tick is reached from
+	private void insert(Timer timer)
+	{
+		long due = Math.max(timer.due, current);
+		long delta = due - current;
+		int level = 0;
+		while (level + 1 < wheels.length && delta >= (1L << (bits * (level + 1))))
+		{
+			level++;
+		}
+		int slot = (int)((due >>> (bits * level)) & mask);
+		Timer head = wheels[level][slot];
+		timer.level = level;
+		timer.slot = slot;
+		timer.prev = null;
+		timer.next = head;
+		if (head != null)
+		{
+			head.prev = timer;
+		}
+		wheels[level][slot] = timer;
+		counts[level]++;
+	}
+
+
+	private void unlink(Timer timer)
+	{
+		if (timer.prev == null)
+		{
+			wheels[timer.level][timer.slot] = timer.next;
+		}
+		else
+		{
+			timer.prev.next = timer.next;
+		}
+		if (timer.next != null)
+		{
+			timer.next.prev = timer.prev;
+		}
+		timer.prev = null;
+		timer.next = null;
+		counts[timer.level]--;
+	}
+
+
+	/* one timer, used over and over by whatever it times, which it
+	 * carries as its attachment
+	 */
+	public static class Timer
+	{
+		private final Object attachment;
+		private long deadline;
+		private long due;				//tick it expires at
+		private int level, slot;
+		private Timer prev, next;
+		private boolean scheduled;
+
+		public Timer(Object attachment)
+		{
+			this.attachment = attachment;
+		}
+
+
+		//generic accessors
+		public Object attachment()
+		{
+			return attachment;
+		}
+		public long getDeadline()
+		{
+			return deadline;
+		}
+		public boolean isScheduled()
+		{
+			return scheduled;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/**
+*Class:             TransferExecutor.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.1
+*
+*Purpose:           Runs read and write transfers for the server with a hard cap
+*					on how many run at once and how many may wait for a slot.
+*					Transfers run either on a fixed pool of platform threads or on
+*					one virtual thread each (when the JVM supports them). A transfer
+*					that arrives once both limits are used up is refused, and the
+*					caller answers the client with a "server busy" error.
+*
+*					In LOOP mode transfers are instead spread over a few
+*					TransferLoops (-Dtftp.loops), each driving thousands of
+*					them from one thread. A transfer starts on its loop
+*					straight away, so there is no queue, only the cap on how
+*					many run at once.
+*
+*
+*Update Log:        v1.1.1
+*                       - falling back from VIRTUAL is logged through TFTPLog
+*                   v1.1.0
+*                       - LOOP mode, transfers driven by TransferLoops
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class TransferExecutor
+{
+	//how transfers are given a thread
+	public static enum Mode { POOL, VIRTUAL, LOOP };
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//declaring local instance variables
+	private final Mode mode;
+	private final ExecutorService executor;
+	private final Semaphore admitted;	//running + waiting
+	private final Semaphore running;	//only used for virtual threads
+	private final TransferLoop[] loops;	//only used in LOOP mode
+	private final AtomicInteger nextLoop = new AtomicInteger();
+	private volatile boolean shutdown;
+	private final int maxTransfers;
+	private final int queueLimit;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+
+	//generic constructor
+	public TransferExecutor(Mode mode, int maxTransfers, int queueLimit, ThreadGroup group) throws IOException
+	{
+		if (maxTransfers < 1 || queueLimit < 0)
+		{
+			throw new IllegalArgumentException("maxTransfers must be >= 1 and queueLimit >= 0");
+		}
+		this.maxTransfers = maxTransfers;
+		if (mode == Mode.LOOP)
+		{
+			//a transfer is running as soon as it is on a loop
+			this.mode = Mode.LOOP;
+			this.queueLimit = 0;
+			admitted = new Semaphore(maxTransfers);
+			executor = null;
+			running = null;
+			loops = new TransferLoop[Math.max(1, TransferLoop.THREADS)];
+			for (int i = 0; i < loops.length; i++)
+			{
+				loops[i] = new TransferLoop(group, "TransferLoop " + (i + 1), this::loopEnded);
+			}
+			return;
+		}
+		this.queueLimit = queueLimit;
+		admitted = new Semaphore(maxTransfers + queueLimit);
+		loops = null;
+
+		ExecutorService virtual = (mode == Mode.VIRTUAL) ? newVirtualExecutor() : null;
+		if (virtual != null)
+		{
+			this.mode = Mode.VIRTUAL;
+			executor = virtual;
+			running = new Semaphore(maxTransfers);
+		}
+		else
+		{
+			//admission is capped above, so the pool's own queue never grows past queueLimit
+			this.mode = Mode.POOL;
+			executor = new ThreadPoolExecutor(maxTransfers, maxTransfers,
+					60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new TransferThreadFactory(group));
+			((ThreadPoolExecutor)executor).allowCoreThreadTimeOut(true);
+			running = null;
+		}
+	}
+
+
+	//generic accessors
+	public Mode getMode()
+	{
+		return mode;
+	}
+	public int getMaxTransfers()
+	{
+		return maxTransfers;
+	}
+	public int getQueueLimit()
+	{
+		return queueLimit;
+	}
+	public int getActive()
+	{
+		return active.get();
+	}
+	public int getQueued()
+	{
+		return (maxTransfers + queueLimit) - admitted.availablePermits() - active.get();
+	}
+	public long getCompleted()
+	{
+		return completed.get();
+	}
+	public long getRejected()
+	{
+		return rejected.get();
+	}
+
+
+	/* hand a transfer to the executor
+	 * returns false without running it if the server is already
+	 * at maxTransfers running with queueLimit waiting
+	 */
+	public boolean submit(final ServerThread transfer)
+	{
+		if (!admitted.tryAcquire())
+		{
+			rejected.incrementAndGet();
+			return false;
+		}
+
+		if (loops != null)
+		{
+			if (shutdown)
+			{
+				admitted.release();
+				rejected.incrementAndGet();
+				return false;
+			}
+			active.incrementAndGet();
+			loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].add(transfer);
+			return true;
+		}
+
+		try
+		{
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					runAdmitted(transfer);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			//executor has been shut down
+			admitted.release();
+			rejected.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+
+	//stop taking new transfers, let the ones in flight finish
+	public void shutdown()
+	{
+		shutdown = true;
+		if (loops != null)
+		{
+			for (TransferLoop l : loops)
+			{
+				l.shutdown();
+			}
+			return;
+		}
+		executor.shutdown();
+	}
+
+
+	//wait for in-flight transfers after shutdown()
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		if (loops != null)
+		{
+			long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+			for (TransferLoop l : loops)
+			{
+				if (!l.awaitTermination(deadline - System.currentTimeMillis()))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		return executor.awaitTermination(timeout, unit);
+	}
+
+
+	//a transfer on one of the loops has ended, on that loop's thread
+	private void loopEnded()
+	{
+		active.decrementAndGet();
+		completed.incrementAndGet();
+		admitted.release();
+	}
+
+
+	private void runAdmitted(Runnable transfer)
+	{
+		boolean started = false;
+		try
+		{
+			//virtual threads are unbounded, so they queue here for a slot
+			if (running != null)
+			{
+				running.acquire();
+			}
+			started = true;
+			active.incrementAndGet();
+			transfer.run();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			if (started)
+			{
+				active.decrementAndGet();
+				completed.incrementAndGet();
+				if (running != null)
+				{
+					running.release();
+				}
+			}
+			admitted.release();
+		}
+	}
+
+
+	//virtual threads only exist on newer JVMs, look the factory up at runtime
+	private static ExecutorService newVirtualExecutor()
+	{
+		try
+		{
+			return (ExecutorService)Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			log.message(TFTPLog.Level.WARN, "TransferExecutor", "virtual threads unavailable, using thread pool");
+			return null;
+		}
+	}
+
+
+	//names pool threads and keeps them in the server's thread group
+	private static class TransferThreadFactory implements ThreadFactory
+	{
+		private final ThreadGroup group;
+		private final AtomicInteger count = new AtomicInteger();
+
+		public TransferThreadFactory(ThreadGroup group)
+		{
+			this.group = group;
+		}
+
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(group, r, "Transfer " + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+/**
+*Class:             TransferLoop.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.1.2
+*
+*Purpose:           One thread driving many transfers (the LOOP transfer
+*					mode). Every transfer's channel is registered with the
+*					loop's one Selector, and the loop waits on it for any of
+*					them to have a packet (or, part way through a window, room
+*					to send) until the earliest of their timers is due. Then
+*					it hands each transfer its packets, or its timeout, and
+*					goes back to waiting. A transfer never blocks, so one
+*					thread keeps thousands of them going, and one waiting on
+*					a slow client costs its state, its channel and its file
+*					rather than a thread.
+*
+*					Packets are received into a buffer of the loop's own and
+*					handled before the next one is read, so transfers need
+*					no receive buffer of their own. A transfer's timer is on
+*					the loop's TimerWheel, so moving it after every ACK, or
+*					taking it off when the transfer ends, costs the same with
+*					ten thousand transfers as with ten.
+*
+*					The disk isn't part of the loop: reading a block that
+*					isn't cached, or writing one when WriteBehind has no
+*					chunk buffer free, holds up every transfer on the same
+*					loop until it is done. Nothing on the loop waits for
+*					another thread, though: an upload never waits for a
+*					buffer (the others holding them may be on this loop),
+*					and one whose last ACK waits for the disk looks again
+*					at its next tick.
+*
+*					TransferExecutor runs -Dtftp.loops of these (one per
+*					processor by default) and spreads transfers over them.
+*
+*
+*Update Log:        v1.1.2
+*                       - uploads no longer wait for a WriteBehind buffer or
+*                         a Sync.FILE close on the loop's thread
+*                   v1.1.1
+*                       - a transfer whose event throws is failed on its
+*                         own instead of ending the loop
+*                   v1.1.0
+*                       - transfers' timers kept on a TimerWheel rather than
+*                         a queue ordered by deadline
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+
+public class TransferLoop implements Runnable
+{
+	//declaring local class constants
+	public static final int THREADS = Integer.getInteger("tftp.loops", Runtime.getRuntime().availableProcessors());
+
+	//packets handed to one transfer before the loop moves on to the others
+	private static final int BURST = 64;
+
+	//declaring local instance variables
+	private final Selector selector;
+	private final Thread thread;
+	private final Runnable ended;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final TimerWheel timers = new TimerWheel();
+	private final Consumer<TimerWheel.Timer> expired = this::expired;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(TFTPOptions.MAX_BLKSIZE + TFTPPacket.HEADER_SIZE);
+	private final TFTPPacket packet = new TFTPPacket();
+	private final Consumer<SelectionKey> ready = this::ready;
+	private final AtomicInteger transfers = new AtomicInteger();
+	private volatile boolean closing;
+
+
+	/* generic constructor, the loop's thread is started straight away
+	 * ended is run (on the loop's thread) as each transfer ends
+	 */
+	public TransferLoop(ThreadGroup group, String name, Runnable ended) throws IOException
+	{
+		this.ended = ended;
+		selector = Selector.open();
+		thread = new Thread(group, this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+	//generic accessors
+	public int getTransfers()
+	{
+		return transfers.get();
+	}
+	public Thread getThread()
+	{
+		return thread;
+	}
+
+
+	//have this loop drive transfer from now on
+	public void add(final ServerThread transfer)
+	{
+		transfers.incrementAndGet();
+		transfer.setLoop(this);
+		submit(() -> begin(transfer));
+	}
+
+
+	//stop taking transfers; the loop ends once the ones it has are over
+	public void shutdown()
+	{
+		closing = true;
+		selector.wakeup();
+	}
+
+
+	//wait up to millis for the loop to end after shutdown()
+	public boolean awaitTermination(long millis) throws InterruptedException
+	{
+		thread.join(Math.max(1, millis));
+		return !thread.isAlive();
+	}
+
+
+	//transfer has been asked to stop: do so on the loop's thread
+	void stop(final ServerThread transfer)
+	{
+		submit(() ->
+		{
+			if (transfer.getState() != ServerThread.State.FINISHED)
+			{
+				transfer.stop();
+				update(transfer);
+			}
+		});
+	}
+
+
+	//register a transfer's channel, from begin() on the loop's thread
+	SelectionKey register(ServerThread transfer) throws ClosedChannelException
+	{
+		return transfer.channel.register(selector, SelectionKey.OP_READ, transfer);
+	}
+
+
+	public void run()
+	{
+		try
+		{
+			while (!closing || transfers.get() > 0)
+			{
+				Runnable task;
+				while ((task = tasks.poll()) != null)
+				{
+					task.run();
+				}
+				long next = timers.nextExpiry();
+				long wait = (next == Long.MAX_VALUE) ? 0 : Math.max(1, (next - System.nanoTime() + 999999) / 1000000);
+				selector.select(ready, wait);
+				timers.advance(System.nanoTime(), expired);
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			try
+			{
+				selector.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+
+	//run task on the loop's thread
+	private void submit(Runnable task)
+	{
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+
+	//a new transfer sends its first packet
+	private void begin(ServerThread transfer)
+	{
+		transfer.started();
+		try
+		{
+			transfer.begin();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			//only this transfer ends, not every one on the loop
+			transfer.failed(e);
+		}
+		update(transfer);
+	}
+
+
+	//a transfer's channel has packets, or room to send
+	private void ready(SelectionKey key)
+	{
+		ServerThread transfer = (ServerThread)key.attachment();
+		try
+		{
+			if (transfer.getState() == ServerThread.State.SENDING_DATA)
+			{
+				transfer.onWritable();
+			}
+			else
+			{
+				//everything queued on its TID, up to a burst
+				for (int n = 0; n < BURST && transfer.receiving(); n++)
+				{
+					buffer.clear();
+					if (transfer.channel.read(buffer) <= 0)
+					{
+						break;
+					}
+					buffer.flip();
+					transfer.handle(packet.wrap(buffer), buffer);
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			//only this transfer ends, not every one on the loop
+			transfer.failed(e);
+		}
+		update(transfer);
+	}
+
+
+	//a transfer's deadline has passed: give it its timeout
+	private void expired(TimerWheel.Timer timer)
+	{
+		ServerThread transfer = (ServerThread)timer.attachment();
+		if (transfer.getState() != ServerThread.State.SENDING_DATA)
+		{
+			try
+			{
+				transfer.onTimeout();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				transfer.failed(e);
+			}
+		}
+		update(transfer);
+	}
+
+
+	/* after a transfer has been given an event: end it if it is over,
+	 * otherwise wait for what it now needs and set its timer
+	 */
+	private void update(ServerThread transfer)
+	{
+		if (transfer.getState() == ServerThread.State.FINISHED)
+		{
+			timers.cancel(transfer.timer);
+			transfer.end();
+			transfers.decrementAndGet();
+			ended.run();
+			return;
+		}
+		if (transfer.stopRequested())
+		{
+			transfer.stop();
+			update(transfer);
+			return;
+		}
+		SelectionKey key = transfer.getKey();
+		if (key.interestOps() != transfer.interestOps())
+		{
+			key.interestOps(transfer.interestOps());
+		}
+		if (transfer.getState() == ServerThread.State.SENDING_DATA)
+		{
+			//timed again once the window is out
+			timers.cancel(transfer.timer);
+		}
+		else if (!transfer.timer.isScheduled() || transfer.timer.getDeadline() != transfer.deadline)
+		{
+			timers.schedule(transfer.timer, transfer.deadline);
+		}
+	}
+}
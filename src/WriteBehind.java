@@ -0,0 +1,523 @@
+/**
+*Class:             WriteBehind.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.3
+*
+*Purpose:           Disk side of WRQ transfers. A transfer copies each DATA
+*					block into a large chunk buffer and ACKs straight away;
+*					full chunks are queued to a few writer threads that put
+*					them in the file with one positional FileChannel write
+*					each. So a 512 byte block costs a copy, not a syscall,
+*					and a slow disk only holds up ACKs once every chunk
+*					buffer is in use (the pool is the bound on the
+*					write-behind queue). A transfer then writes its blocks
+*					straight to the file until one is free again, rather
+*					than wait for one: the buffers may all be held by
+*					transfers on the same TransferLoop thread, which would
+*					never get to free them. A transfer whose client goes quiet
+*					queues the chunk it has part filled, so an upload stalled
+*					on its client doesn't keep a chunk buffer from the others.
+*
+*					Uploads go to <name>.part and are renamed into place
+*					once complete, so a half received file is never seen
+*					under its real name and a failed one is deleted. When
+*					the size is known (tsize) the space is checked and the
+*					file's length set up front.
+*
+*					When data is forced to disk (-Dtftp.fsync):
+*					  NONE   left to the operating system
+*					  CLOSE  once the file is complete, after the last ACK
+*					         has gone out (default)
+*					  FILE   once the file is complete, before the last ACK,
+*					         so an upload the client saw succeed is on disk;
+*					         a writer thread does it, and the transfer asks
+*					         isDurable() before sending that ACK
+*					  BYTES  every -Dtftp.fsyncBytes (default 8MB) written,
+*					         and at close
+*
+*					Other settings: -Dtftp.writeChunk (chunk size, 256KB),
+*					-Dtftp.writeBuffers (chunks in the pool, 64) and
+*					-Dtftp.writeThreads (writer threads, 2).
+*
+*
+*Update Log:        v1.0.3
+*                       - no call blocks the transfer: with no chunk buffer
+*                         free a block is written straight to the file, and
+*                         Sync.FILE's close is left to a writer thread
+*                   v1.0.2
+*                       - flush(): a part filled chunk is queued when the
+*                         client goes quiet
+*                   v1.0.1
+*                       - NoSpaceException serialVersionUID
+*                   v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+
+public class WriteBehind
+{
+	//when uploads are forced to disk
+	public static enum Sync { NONE, CLOSE, FILE, BYTES };
+
+	//declaring local class constants
+	public static final int CHUNK_SIZE = Integer.getInteger("tftp.writeChunk", 256 << 10);
+	public static final int BUFFERS = Integer.getInteger("tftp.writeBuffers", 64);
+	public static final int THREADS = Integer.getInteger("tftp.writeThreads", 2);
+	public static final Sync SYNC = Sync.valueOf(System.getProperty("tftp.fsync", "CLOSE").toUpperCase());
+	public static final long SYNC_BYTES = Long.getLong("tftp.fsyncBytes", 8L << 20);
+	private static final String PART = ".part";
+
+	private static final TFTPLog log = TFTPLog.get();
+
+	//the writer every WRQ transfer shares, started on first use
+	private static WriteBehind shared;
+
+	//declaring local instance variables
+	private final Sync sync;
+	private final long syncBytes;
+	private final int chunkSize;
+	private final int bufferLimit;
+	private final BlockingQueue<ByteBuffer> free;
+	private final AtomicInteger allocated = new AtomicInteger();
+	private final BlockingQueue<Chunk> pending = new LinkedBlockingQueue<Chunk>();
+
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+	private final AtomicLong syncs = new AtomicLong();
+
+
+	//generic constructor
+	public WriteBehind(Sync sync, long syncBytes, int chunkSize, int buffers, int threads)
+	{
+		if (chunkSize < 1 || buffers < 1 || threads < 1)
+		{
+			throw new IllegalArgumentException("chunkSize, buffers and threads must be >= 1");
+		}
+		this.sync = sync;
+		this.syncBytes = syncBytes;
+		this.chunkSize = chunkSize;
+		this.bufferLimit = buffers;
+		free = new ArrayBlockingQueue<ByteBuffer>(buffers);
+		for (int i = 0; i < threads; i++)
+		{
+			Thread t = new Thread(new Writer(), "WriteBehind " + (i + 1));
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+
+	public static synchronized WriteBehind shared()
+	{
+		if (shared == null)
+		{
+			shared = new WriteBehind(SYNC, SYNC_BYTES, CHUNK_SIZE, BUFFERS, THREADS);
+		}
+		return shared;
+	}
+
+
+	//generic accessors
+	public Sync getSync()
+	{
+		return sync;
+	}
+	public long getWritten()
+	{
+		return written.get();
+	}
+	public long getWrites()
+	{
+		return writes.get();
+	}
+	public long getSyncs()
+	{
+		return syncs.get();
+	}
+	public int getQueued()
+	{
+		return pending.size();
+	}
+
+
+	public String toString()
+	{
+		return "WriteBehind[" + sync + ", written=" + getWritten() + "B in " + getWrites()
+				+ " writes, syncs=" + getSyncs() + ", queued=" + getQueued() + "]";
+	}
+
+
+	/* start an upload to target, of expectedSize bytes if known (else -1)
+	 * throws FileAlreadyExistsException if the file, or an upload of it,
+	 * already exists, and NoSpaceException if it can't fit
+	 */
+	public Upload open(Path target, long expectedSize) throws IOException
+	{
+		if (Files.exists(target))
+		{
+			throw new FileAlreadyExistsException(target.toString());
+		}
+		Path part = target.resolveSibling(target.getFileName() + PART);
+		FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try
+		{
+			if (expectedSize > 0)
+			{
+				FileStore store = Files.getFileStore(part);
+				if (store.getUsableSpace() < expectedSize)
+				{
+					throw new NoSpaceException(target + " needs " + expectedSize + " bytes");
+				}
+				//set the length now so it isn't grown a chunk at a time; Java
+				//has no fallocate, so on most file systems this leaves the
+				//file sparse until it is written
+				channel.write(ByteBuffer.allocate(1), expectedSize - 1);
+			}
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			Files.deleteIfExists(part);
+			throw e;
+		}
+		return new Upload(target, part, channel);
+	}
+
+
+	//a chunk buffer, null if they are all in use
+	private ByteBuffer tryTakeBuffer()
+	{
+		ByteBuffer buffer = free.poll();
+		if (buffer != null)
+		{
+			return buffer;
+		}
+		if (allocated.incrementAndGet() <= bufferLimit)
+		{
+			return ByteBuffer.allocateDirect(chunkSize);
+		}
+		allocated.decrementAndGet();
+		return null;
+	}
+
+
+	private void releaseBuffer(ByteBuffer buffer)
+	{
+		buffer.clear();
+		free.offer(buffer);
+	}
+
+
+	//thrown by open() when the file would not fit
+	public static class NoSpaceException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		public NoSpaceException(String message)
+		{
+			super(message);
+		}
+	}
+
+
+	/* one file being received
+	 * write(), flush() and finish() are called by the transfer thread
+	 * only, the writer threads only touch the channel and the counters;
+	 * none of them waits for a writer thread
+	 */
+	public class Upload
+	{
+		private final Path target;
+		private final Path part;
+		private final FileChannel channel;
+		private ByteBuffer current;		//chunk being filled
+		private long offset;			//where current goes in the file
+		private final AtomicLong unsynced = new AtomicLong();
+		//queued chunks + 1 held by the transfer until finish()/abort()
+		private final AtomicInteger outstanding = new AtomicInteger(1);
+		private final CountDownLatch closed = new CountDownLatch(1);
+		private volatile IOException failure;
+		private volatile boolean aborted;
+
+		private Upload(Path target, Path part, FileChannel channel)
+		{
+			this.target = target;
+			this.part = part;
+			this.channel = channel;
+		}
+
+
+		//bytes handed to write() so far
+		public long size()
+		{
+			return offset + (current == null ? 0 : current.position());
+		}
+
+
+		/* copy data (position to limit) into the upload
+		 * with every chunk buffer in use it is written to the file there
+		 * and then; throws if that, or an earlier chunk, could not be
+		 */
+		public void write(ByteBuffer data) throws IOException
+		{
+			if (failure != null)
+			{
+				throw failure;
+			}
+			while (data.hasRemaining())
+			{
+				if (current == null)
+				{
+					current = tryTakeBuffer();
+				}
+				if (current == null)
+				{
+					offset = writeAt(data, offset);
+					return;
+				}
+				int n = Math.min(current.remaining(), data.remaining());
+				int limit = data.limit();
+				data.limit(data.position() + n);
+				current.put(data);
+				data.limit(limit);
+				if (!current.hasRemaining())
+				{
+					queueCurrent();
+				}
+			}
+		}
+
+
+		/* queue what has been written so far, part filled chunk or not,
+		 * so the upload holds no chunk buffer while its client is quiet
+		 */
+		public void flush()
+		{
+			if (current != null && current.position() > 0)
+			{
+				queueCurrent();
+			}
+			else if (current != null)
+			{
+				releaseBuffer(current);
+				current = null;
+			}
+		}
+
+
+		/* the last block has been written: queue what is left; a writer
+		 * thread closes the file and renames it into place once every
+		 * chunk is on disk
+		 */
+		public void finish()
+		{
+			flush();
+			release();
+		}
+
+
+		/* after finish(), whether the last ACK can go: with Sync.FILE once
+		 * the file is on disk and in place, or has failed to be (see
+		 * getFailure()); at once otherwise
+		 */
+		public boolean isDurable()
+		{
+			return sync != Sync.FILE || closed.getCount() == 0;
+		}
+
+
+		//why the upload could not be written, null if it hasn't failed
+		public IOException getFailure()
+		{
+			return failure;
+		}
+
+
+		//the transfer failed: drop what was received
+		public void abort()
+		{
+			aborted = true;
+			if (current != null)
+			{
+				releaseBuffer(current);
+				current = null;
+			}
+			release();
+		}
+
+
+		private void queueCurrent()
+		{
+			current.flip();
+			int length = current.remaining();
+			outstanding.incrementAndGet();
+			pending.add(new Chunk(this, current, offset));
+			offset += length;
+			current = null;
+		}
+
+
+		//give up the transfer's hold; the last one out closes the file
+		private void release()
+		{
+			if (outstanding.decrementAndGet() == 0)
+			{
+				if (aborted)
+				{
+					complete();
+				}
+				else
+				{
+					//forcing can be slow, leave it to a writer thread
+					pending.add(new Chunk(this, null, 0));
+				}
+			}
+		}
+
+
+		//put buffer in the file at position, returns where it ended
+		private long writeAt(ByteBuffer buffer, long position) throws IOException
+		{
+			long start = position;
+			while (buffer.hasRemaining())
+			{
+				position += channel.write(buffer, position);
+			}
+			written.addAndGet(position - start);
+			writes.incrementAndGet();
+			if (sync == Sync.BYTES && unsynced.addAndGet(position - start) >= syncBytes)
+			{
+				unsynced.set(0);
+				channel.force(false);
+				syncs.incrementAndGet();
+			}
+			return position;
+		}
+
+
+		//called by a writer thread
+		private void write(Chunk chunk)
+		{
+			if (chunk.buffer == null)
+			{
+				complete();
+				return;
+			}
+			try
+			{
+				if (failure == null && !aborted)
+				{
+					writeAt(chunk.buffer, chunk.offset);
+				}
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+			finally
+			{
+				releaseBuffer(chunk.buffer);
+				if (outstanding.decrementAndGet() == 0)
+				{
+					complete();
+				}
+			}
+		}
+
+
+		//every chunk is written: make it durable and visible, or clean up
+		private void complete()
+		{
+			try
+			{
+				if (failure == null && !aborted)
+				{
+					if (channel.size() > offset)
+					{
+						channel.truncate(offset);	//tsize was more than was sent
+					}
+					if (sync != Sync.NONE)
+					{
+						channel.force(true);
+						syncs.incrementAndGet();
+					}
+					channel.close();
+					Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+				}
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+			finally
+			{
+				if (failure != null || aborted)
+				{
+					try
+					{
+						channel.close();
+						Files.deleteIfExists(part);
+					}
+					catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+					if (failure != null)
+					{
+						log.message(TFTPLog.Level.WARN, "WriteBehind", "could not write " + target + ": " + failure);
+					}
+				}
+				closed.countDown();
+			}
+		}
+	}
+
+
+	//a full chunk on its way to the file, or with no buffer, a file to close
+	private static class Chunk
+	{
+		final Upload upload;
+		final ByteBuffer buffer;
+		final long offset;
+
+		Chunk(Upload upload, ByteBuffer buffer, long offset)
+		{
+			this.upload = upload;
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+	}
+
+
+	//takes chunks off the queue and writes them
+	private class Writer implements Runnable
+	{
+		public void run()
+		{
+			for(;;)
+			{
+				Chunk chunk;
+				try
+				{
+					chunk = pending.take();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				chunk.upload.write(chunk);
+			}
+		}
+	}
+}
@@ -0,0 +1,303 @@
+// readThread.java
+// One RRQ: the server side of a read, sending the file a block (or a
+// window of blocks, RFC 7440) at a time as each is ACKed, with the
+// blksize, tsize and windowsize options agreed in an OACK. A netascii
+// file is translated a block at a time on the way (see Netascii).
+// Created by TFTPDispatcher; see ServerThread for how it is driven.
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+
+class readThread extends ServerThread
+{
+    /**
+     * Where this thread's output goes.
+     */
+    private static final TFTPLog log = TFTPLog.get();
+
+    /**
+     * Which file was asked for, and the options agreed for it.
+     */
+    private String filename;
+    private TFTPOptions options;
+    private boolean netascii;
+    private BlockSource source;
+
+    /**
+     * DATA header, reused for every block and sent together with the
+     * block itself in one gathering write, so the block is never copied.
+     * It comes from the BufferPool with the OACK, so neither is copied
+     * into a temporary direct buffer on the way out either.
+     */
+    private ByteBuffer header;
+    private final ByteBuffer[] datagram = new ByteBuffer[2];
+
+    /**
+     * Where the transfer is: the oldest block not yet ACKed (0 while the
+     * OACK is), the last block of the window being sent, the next one to
+     * send, the newest block sent so far and the first of this window to
+     * go out for the first time. Each block of the window was sent at
+     * sentAt[block % window], 0 if it had been sent before; the OACK at
+     * oackSent. A netascii file's block count is only known once its last
+     * block has been read, and until then is taken as Integer.MAX_VALUE.
+     */
+    private int count;
+    private int window;
+    private int base;
+    private int last;
+    private int next;
+    private int highest;
+    private int fresh;
+    private long[] sentAt;
+    private ByteBuffer oack;
+    private long oackSent;
+    private long started;
+
+    public readThread(InetSocketAddress client, String filename, TFTPOptions options, boolean netascii, String title) {
+        this.client = client;
+        this.filename = filename;
+        this.options = options;
+        this.netascii = netascii;
+        setName(title);
+    }
+
+    protected void begin() throws IOException {
+        session = metrics.start(getName(), TFTPPacket.RRQ, filename, client, requestedAt, rtt);
+        int blockSize = options.getBlockSize();
+        open(client, blockSize);
+
+        // Serve only files below the server's working directory.
+        if (new File(filename).isAbsolute() || filename.contains("..")) {
+            sendError(TFTPPacket.ERR_ACCESS_VIOLATION, "Access violation");
+            finish();
+            return;
+        }
+
+        // Blocks are read from disk (or a mapping of it, for large files)
+        // one at a time as they are sent, so nothing about the file is
+        // held in memory up front.
+        try {
+            source = BlockSource.open(filename, blockSize);
+            if (netascii) {
+                source = new Netascii.Source(source, options.getWindowSize());
+            }
+        } catch (FileNotFoundException e) {
+            sendError(TFTPPacket.ERR_FILE_NOT_FOUND, "File not found");
+            finish();
+            return;
+        } catch (IOException e) {
+            sendError(TFTPPacket.ERR_ACCESS_VIOLATION, "Could not read file");
+            finish();
+            return;
+        }
+
+        // A RRQ asks for the file's size with tsize=0; as netascii that
+        // isn't known without reading the whole file first, so it isn't given.
+        if (options.hasTransferSize()) {
+            if (netascii) {
+                options.declineTransferSize();
+            } else {
+                options.setTransferSize(source.size());
+            }
+        }
+
+        // When the first DATA is also the last, the client may get it and
+        // send a new, identical, request before we see its ACK; that must
+        // not be taken for this one sent again. How many blocks a netascii
+        // file makes is only known once its last is encoded, so encode the
+        // first now to find out whether it is also the last.
+        if (options.isEmpty() && netascii) {
+            source.block(1);
+        }
+        if (options.isEmpty() && source.blockCount() == 1) {
+            closeRequest();
+        }
+
+        started = System.nanoTime();
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_STARTED, getName(),
+                TFTPPacket.RRQ, 0, 0, filename, client);
+        count = (source.blockCount() == BlockSource.UNKNOWN) ? Integer.MAX_VALUE : source.blockCount();
+        window = options.getWindowSize();
+        sentAt = new long[window];
+        header = buffers.acquire(TFTPPacket.HEADER_SIZE);
+        datagram[0] = header;
+
+        // With options, the client must ACK our OACK as block 0 first.
+        if (!options.isEmpty()) {
+            oack = buffers.acquire(TFTPPacket.DEFAULT_BLOCK_SIZE);
+            TFTPPacket.putOack(oack, options.getAccepted());
+            oack.flip();
+            oackSent = System.nanoTime();
+            channel.write(oack);
+            await(State.AWAITING_ACK);
+        } else {
+            base = 1;
+            sendWindow();
+        }
+    }
+
+    /**
+     * Send the window from base: up to windowsize blocks before waiting
+     * for an ACK (RFC 7440). The client ACKs the last block of each
+     * window, or the last block it got in order if some went missing;
+     * either way sending carries on from the block after the one ACKed
+     * (go-back-N), and a timeout resends the whole window.
+     */
+    private void sendWindow() throws IOException {
+        last = Math.min(base + window - 1, count);
+        next = base;
+        fresh = highest + 1;
+        // the blocks up to highest had been sent before
+        rtt.retransmitted(Math.max(0, Math.min(highest, last) - base + 1));
+        highest = Math.max(highest, last);
+        onWritable();
+    }
+
+    /**
+     * Carry on sending the window, until it is out or the socket is full.
+     */
+    protected void onWritable() throws IOException {
+        while (next <= last) {
+            sentAt[next % window] = (next >= fresh) ? System.nanoTime() : 0;
+            if (!sendBlock(next)) {
+                state = State.SENDING_DATA;
+                return;
+            }
+            next++;
+        }
+        await(State.AWAITING_ACK);
+    }
+
+    /**
+     * Send block n once; false if the socket had no room for it.
+     */
+    private boolean sendBlock(int n) throws IOException {
+        datagram[1] = source.block(n);
+        if (count == Integer.MAX_VALUE && source.blockCount() != BlockSource.UNKNOWN) {
+            // that was the last block, the window ends with it
+            count = source.blockCount();
+            last = Math.min(last, count);
+        }
+        header.clear();
+        TFTPPacket.putDataHeader(header, n);
+        header.flip();
+        int length = (int)channel.write(datagram);
+        if (length == 0) {
+            return false;
+        }
+        session.sent(length - TFTPPacket.HEADER_SIZE);
+        log.packet(TFTPLog.Level.TRACE, TFTPLog.Event.PACKET_SENT, getName(),
+                TFTPPacket.DATA, n & 0xFFFF, length, client);
+        return true;
+    }
+
+    /**
+     * An ACK of any block after base - 1, up to the end of the window,
+     * moves the window on. Block numbers on the wire wrap at 65535, so
+     * the ACK is mapped back onto the absolute block numbers used here.
+     * ACKs before base are duplicates and are ignored rather than
+     * answered, so a delayed ACK can't double the traffic. The time from
+     * sending a block to its ACK is only taken as a round trip sample if
+     * the block was sent once (Karn's rule).
+     */
+    protected void onPacket(TFTPPacket ack, ByteBuffer buffer) throws IOException {
+        // A short packet has no block number to read.
+        boolean valid = ack.opcode() == TFTPPacket.ACK && ack.isValid();
+        log.packet(TFTPLog.Level.TRACE, TFTPLog.Event.PACKET_RECEIVED, getName(),
+                ack.opcode(), valid ? ack.block() : 0, ack.length(), client);
+        if (ack.opcode() == TFTPPacket.ERROR) {
+            abandon(); // client aborted
+            return;
+        }
+        if (!valid) {
+            sendError(TFTPPacket.ERR_ILLEGAL_OPERATION, "Expected ACK");
+            abandon();
+            return;
+        }
+        int acked = base - 1;
+        int ahead = (ack.block() - acked) & 0xFFFF;
+        if (base == 0) {
+            // only ACK 0 answers the OACK
+            if (ack.block() != 0) {
+                return;
+            }
+            if (oackSent != 0) {
+                sample(System.nanoTime() - oackSent);
+            } else {
+                rtt.heard();
+            }
+            base = 1;
+            sendWindow();
+            return;
+        }
+        if (ahead < 1 || ahead > last - acked) {
+            return;
+        }
+        acked += ahead;
+        long sent = sentAt[acked % window];
+        if (sent != 0) {
+            sample(System.nanoTime() - sent);
+        } else {
+            rtt.heard();
+        }
+        base = acked + 1;
+        if (base > count) {
+            succeed();
+        } else {
+            sendWindow();
+        }
+    }
+
+    /**
+     * No ACK within the retransmission timeout learned so far (doubled for
+     * every timeout in a row): resend the OACK or the window.
+     */
+    protected void onTimeout() throws IOException {
+        rtt.timeout();
+        if (rtt.expired()) {
+            abandon();
+            return;
+        }
+        if (base == 0) {
+            rtt.retransmitted(1);
+            oack.rewind();
+            oackSent = 0;
+            channel.write(oack);
+            await(State.AWAITING_ACK);
+            return;
+        }
+        log.record(TFTPLog.Level.DEBUG, TFTPLog.Event.RETRANSMIT, getName(),
+                base, rtt.getTimeouts(), 0, client, null);
+        sendWindow();
+    }
+
+    private void succeed() {
+        session.succeeded();
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_FINISHED, getName(),
+                source.size(), count, System.nanoTime() - started, filename, null);
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_STATS, getName(),
+                rtt.getRetransmits(), rtt.getSrtt(), rtt.getRto(), filename, null);
+        finish();
+    }
+
+    protected void abandon() {
+        log.record(TFTPLog.Level.WARN, TFTPLog.Event.TRANSFER_ABANDONED, getName(),
+                base, 0, 0, filename, null);
+        finish();
+    }
+
+    protected void release() {
+        buffers.release(header);
+        buffers.release(oack);
+        header = oack = null;
+        datagram[0] = datagram[1] = null;
+        if (source != null) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
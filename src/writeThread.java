@@ -0,0 +1,349 @@
+// writeThread.java
+// One WRQ: the server side of a write, taking DATA blocks in order into
+// a WriteBehind upload and ACKing each (or each window, RFC 7440), with
+// the options agreed in an OACK. A netascii upload is turned back into
+// the file's own line ends on the way (see Netascii). Once the last
+// block is ACKed the transfer dallies for a retransmission timeout
+// (RFC 1350), ACKing it again if the client sends it again, so a lost
+// last ACK doesn't make an upload that succeeded look failed.
+// Created by TFTPDispatcher; see ServerThread for how it is driven.
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+
+class writeThread extends ServerThread
+{
+    /**
+     * Where this thread's output goes.
+     */
+    private static final TFTPLog log = TFTPLog.get();
+
+    /**
+     * The file's name, and the options agreed for it.
+     */
+    private String filename;
+    private TFTPOptions options;
+    private WriteBehind.Upload upload;
+
+    /**
+     * For netascii, what turns the blocks back into the file's own line
+     * ends on the way to the upload, and the block as it is turned back.
+     */
+    private Netascii.Decoder decoder;
+    private ByteBuffer decoded;
+
+    /**
+     * The last ACK (or the OACK), kept to send again on a timeout; from
+     * the BufferPool, as is decoded.
+     */
+    private ByteBuffer reply;
+
+    /**
+     * Where the transfer is: the block expected next, the blocks taken in
+     * order since our last ACK, and when that ACK went out (0 if it was
+     * resent).
+     */
+    private int blockSize;
+    private int window;
+    private int expected = 1;
+    private int unacked;
+    private long ackSent;
+    private long started;
+    private boolean finished; // the upload has been handed to WriteBehind
+    private boolean committing; // the last ACK is waiting for the disk
+    private boolean dallying; // the last ACK is out, in case it was lost
+
+    /**
+     * How often a transfer whose last ACK waits for the disk looks to see
+     * if it is there yet: a tick of the loop's timer.
+     */
+    private static final long DISK_POLL = TimerWheel.TICK;
+
+    public writeThread(InetSocketAddress client, String filename, TFTPOptions options, boolean netascii, String title) {
+        this.client = client;
+        this.filename = filename;
+        this.options = options;
+        if (netascii) {
+            decoder = new Netascii.Decoder();
+        }
+        setName(title);
+    }
+
+    protected void begin() throws IOException {
+        session = metrics.start(getName(), TFTPPacket.WRQ, filename, client, requestedAt, rtt);
+        blockSize = options.getBlockSize();
+        window = options.getWindowSize();
+        open(client, blockSize, window);
+        if (decoder != null) {
+            decoded = buffers.acquire(blockSize + 1);
+        }
+
+        // Write only below the server's working directory, and never over
+        // an existing file.
+        if (new File(filename).isAbsolute() || filename.contains("..")) {
+            sendError(TFTPPacket.ERR_ACCESS_VIOLATION, "Access violation");
+            finish();
+            return;
+        }
+
+        // Blocks are collected into large chunks and written to disk by
+        // WriteBehind's own threads, so ACKs don't wait for the disk.
+        try {
+            upload = WriteBehind.shared().open(Paths.get(filename), options.getTransferSize());
+        } catch (FileAlreadyExistsException e) {
+            sendError(TFTPPacket.ERR_FILE_EXISTS, "File already exists");
+            finish();
+            return;
+        } catch (WriteBehind.NoSpaceException e) {
+            sendError(TFTPPacket.ERR_DISK_FULL, "Disk full or allocation exceeded");
+            finish();
+            return;
+        } catch (IOException e) {
+            sendError(TFTPPacket.ERR_ACCESS_VIOLATION, "Could not create file");
+            finish();
+            return;
+        }
+
+        started = System.nanoTime();
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_STARTED, getName(),
+                TFTPPacket.WRQ, 0, 0, filename, client);
+
+        // Options are answered with an OACK, otherwise with ACK 0.
+        reply = buffers.acquire(TFTPPacket.DEFAULT_BLOCK_SIZE);
+        if (options.isEmpty()) {
+            TFTPPacket.putAck(reply, 0);
+        } else {
+            TFTPPacket.putOack(reply, options.getAccepted());
+        }
+        reply.flip();
+        ackSent = System.nanoTime();
+        channel.write(reply);
+        await(State.AWAITING_DATA);
+    }
+
+    /**
+     * Take DATA blocks in order into the upload, ACKing the last block of
+     * each window (RFC 7440) and the final, short, block. A block out of
+     * order means one went missing: the last block we have in order is
+     * ACKed again so the client goes back to the one after it. The time
+     * from an ACK to the next block is a round trip sample, unless that
+     * ACK had to be sent again (Karn's rule).
+     */
+    protected void onPacket(TFTPPacket data, ByteBuffer buffer) throws IOException {
+        // A short packet has no block number to read.
+        boolean valid = data.opcode() == TFTPPacket.DATA && data.isValid();
+        log.packet(TFTPLog.Level.TRACE, TFTPLog.Event.PACKET_RECEIVED, getName(),
+                data.opcode(), valid ? data.block() : 0, data.length(), client);
+        if (committing) {
+            return; // the last block again; it is ACKed once it is on disk
+        }
+        if (dallying) {
+            // The last block again means our ACK of it was lost; anything
+            // else means the client has moved on.
+            if (valid && data.block() == (expected & 0xFFFF)) {
+                reply.rewind();
+                channel.write(reply);
+                log.packet(TFTPLog.Level.TRACE, TFTPLog.Event.PACKET_SENT, getName(),
+                        TFTPPacket.ACK, expected & 0xFFFF, TFTPPacket.HEADER_SIZE, client);
+                await(State.AWAITING_DATA);
+            } else {
+                finish();
+            }
+            return;
+        }
+        if (data.opcode() == TFTPPacket.ERROR) {
+            abandon(); // client aborted
+            return;
+        }
+        if (!valid) {
+            sendError(TFTPPacket.ERR_ILLEGAL_OPERATION, "Expected DATA");
+            abandon();
+            return;
+        }
+        if (data.block() != (expected & 0xFFFF)) {
+            resend();
+            await(State.AWAITING_DATA);
+            return;
+        }
+        if (ackSent != 0) {
+            sample(System.nanoTime() - ackSent);
+            ackSent = 0;
+        } else {
+            rtt.heard();
+        }
+
+        // Copy the block out of the receive buffer into the upload.
+        int length = data.dataLength();
+        try {
+            buffer.limit(data.dataOffset() + length);
+            buffer.position(data.dataOffset());
+            if (decoder == null) {
+                upload.write(buffer);
+            } else {
+                decoded.clear();
+                decoder.decode(buffer, decoded);
+                if (length < blockSize) {
+                    decoder.finish(decoded);
+                }
+                decoded.flip();
+                upload.write(decoded);
+            }
+            session.received(length);
+            if (length < blockSize) {
+                // the upload is WriteBehind's from here, so it must not be
+                // aborted after this
+                finished = true;
+                upload.finish();
+            }
+        } catch (IOException e) {
+            sendError(TFTPPacket.ERR_DISK_FULL, "Disk full or allocation exceeded");
+            abandon();
+            return;
+        }
+
+        if (length < blockSize) {
+            // With -Dtftp.fsync=FILE the last ACK waits for the file to be
+            // on disk. A writer thread puts it there; the transfer looks
+            // in every tick rather than wait, which on a TransferLoop
+            // would hold up every other transfer.
+            if (!upload.isDurable()) {
+                awaitDisk();
+                return;
+            }
+            ackLast();
+            return;
+        }
+        reply.clear();
+        TFTPPacket.putAck(reply, expected);
+        reply.flip();
+        if (++unacked >= window) {
+            sendAck();
+        }
+        expected++;
+        await(State.AWAITING_DATA);
+    }
+
+    /**
+     * Send the ACK in reply.
+     */
+    private void sendAck() throws IOException {
+        ackSent = System.nanoTime();
+        channel.write(reply);
+        log.packet(TFTPLog.Level.TRACE, TFTPLog.Event.PACKET_SENT, getName(),
+                TFTPPacket.ACK, expected & 0xFFFF, TFTPPacket.HEADER_SIZE, client);
+        unacked = 0;
+    }
+
+    /**
+     * The upload is complete: ACK the last block, or tell the client it
+     * could not be written.
+     */
+    private void ackLast() throws IOException {
+        committing = false;
+        if (upload.getFailure() != null) {
+            sendError(TFTPPacket.ERR_DISK_FULL, "Disk full or allocation exceeded");
+            abandon();
+            return;
+        }
+        reply.clear();
+        TFTPPacket.putAck(reply, expected);
+        reply.flip();
+        sendAck();
+        succeed();
+    }
+
+    /**
+     * Wait a tick for the upload to be on disk.
+     */
+    private void awaitDisk() {
+        committing = true;
+        state = State.AWAITING_DATA;
+        deadline = System.nanoTime() + DISK_POLL;
+    }
+
+    /**
+     * No DATA within the retransmission timeout learned so far: resend
+     * the last ACK (or the OACK), or give up. Either way the client has
+     * gone quiet, so the blocks taken so far are queued to be written
+     * rather than hold a WriteBehind chunk buffer while it is.
+     */
+    protected void onTimeout() throws IOException {
+        if (dallying) {
+            finish(); // the client has its last ACK
+            return;
+        }
+        if (committing) {
+            if (upload.isDurable()) {
+                ackLast();
+            } else {
+                awaitDisk();
+            }
+            return;
+        }
+        if (upload != null) {
+            upload.flush();
+        }
+        rtt.timeout();
+        if (rtt.expired()) {
+            abandon();
+            return;
+        }
+        log.record(TFTPLog.Level.DEBUG, TFTPLog.Event.RETRANSMIT, getName(),
+                expected - 1, rtt.getTimeouts(), 0, client, null);
+        resend();
+        await(State.AWAITING_DATA);
+    }
+
+    /**
+     * Send the last ACK (or the OACK) again.
+     */
+    private void resend() throws IOException {
+        rtt.retransmitted(1);
+        reply.rewind();
+        channel.write(reply);
+        ackSent = 0;
+        unacked = 0;
+    }
+
+    /**
+     * The upload is done: log it, then dally.
+     */
+    private void succeed() {
+        session.succeeded();
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_FINISHED, getName(),
+                upload.size(), expected, System.nanoTime() - started, filename, null);
+        log.record(TFTPLog.Level.INFO, TFTPLog.Event.TRANSFER_STATS, getName(),
+                rtt.getRetransmits(), rtt.getSrtt(), rtt.getRto(), filename, null);
+        dallying = true;
+        await(State.AWAITING_DATA);
+    }
+
+    /**
+     * A stop while dallying just ends the dally: the upload has already
+     * succeeded, and the client been told so.
+     */
+    void stop() {
+        if (dallying) {
+            finish();
+            return;
+        }
+        super.stop();
+    }
+
+    protected void abandon() {
+        log.record(TFTPLog.Level.WARN, TFTPLog.Event.TRANSFER_ABANDONED, getName(),
+                upload == null ? 0 : upload.size() / blockSize + 1, 0, 0, filename, null);
+        finish();
+    }
+
+    protected void release() {
+        buffers.release(reply);
+        buffers.release(decoded);
+        reply = decoded = null;
+        if (upload != null && !finished) {
+            upload.abort();
+        }
+    }
+}
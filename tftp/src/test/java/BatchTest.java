@@ -0,0 +1,80 @@
+/**
+*Class:             BatchTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           TFTPBatch against a server over loopback. An operation
+*					that throws something other than an IOException is
+*					reported as failed, and the worker that ran it goes on
+*					to the rest of the manifest.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BatchTest
+{
+	//declaring local instance variables
+	private Path dir;
+	private TFTPDispatcher server;
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Paths.get("target", "batch-test");
+		Files.createDirectories(dir);
+		server = new TFTPDispatcher(0, 1);
+		Thread serving = new Thread(server, "BatchTest server");
+		serving.setDaemon(true);
+		serving.start();
+	}
+
+
+	@AfterEach
+	public void tearDown() throws Exception
+	{
+		server.shutdown(0);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir))
+		{
+			for (Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+	}
+
+
+	@Test
+	public void aThrowingOperationDoesntStopItsWorker() throws Exception
+	{
+		Path local = dir.resolve("local.bin");
+		Files.write(local, new byte[1000]);
+		List<TFTPBatch.Operation> operations = Arrays.asList(
+				new TFTPBatch.Operation(true, "bad\0name", dir.resolve("bad.bin").toString(), 512, 1),
+				new TFTPBatch.Operation(true, local.toString(), dir.resolve("good.bin").toString(), 512, 1));
+		TFTPBatch batch = new TFTPBatch(operations, 1, server.getLocalPort(), InetAddress.getLoopbackAddress());
+
+		assertEquals(1, batch.run());
+		TFTPBatch.Operation bad = batch.getOperations().get(0);
+		TFTPBatch.Operation good = batch.getOperations().get(1);
+		assertFalse(bad.isOk());
+		assertTrue(bad.getError().contains("InvalidPathException"), bad.getError());
+		assertTrue(good.isOk(), "the next operation was not run: " + good.getError());
+	}
+}
@@ -0,0 +1,167 @@
+/**
+*Class:             BlockCacheTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           BlockCache on its own: only blocks of a file a second
+*					transfer has opened are kept, files over the size limit
+*					aren't taken at all, hits come back in the source's own
+*					buffer, a block read after its file changed is never
+*					served as the old version's, and the cache's numbers
+*					are published as gauges. -Dtftp.cacheCheck=0, so every
+*					miss that would be kept looks at the file.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BlockCacheTest
+{
+	//the settings are read as the classes load, so before any is used
+	static
+	{
+		System.setProperty("tftp.cacheCheck", "0");
+	}
+
+	//declaring local class constants
+	private static final int BLOCK = 512;
+
+	//declaring local instance variables
+	private Path file;
+	private BlockCache cache;
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		file = Paths.get("target", "cache-test.bin");
+		Files.createDirectories(file.getParent());
+		Files.write(file, filled('A', 3 * BLOCK + 10));
+		cache = new BlockCache(1 << 20, 1 << 18);
+	}
+
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(file);
+	}
+
+
+	@Test
+	public void aFileOneTransferReadsIsNotKept() throws IOException
+	{
+		try (BlockSource only = cache.open(file.toString(), BLOCK))
+		{
+			readAll(only);
+		}
+		assertEquals(0, cache.getBytes());
+	}
+
+
+	@Test
+	public void aSharedFileIsKeptAndHitsReuseOneBuffer() throws IOException
+	{
+		BlockSource first = cache.open(file.toString(), BLOCK);
+		BlockSource second = cache.open(file.toString(), BLOCK);
+		readAll(second);
+		assertEquals(3 * BLOCK + 10, cache.getBytes());
+
+		long hits = cache.getHits();
+		ByteBuffer one = first.block(1);
+		ByteBuffer two = first.block(2);
+		assertEquals(hits + 2, cache.getHits());
+		assertSame(one, two, "each hit copied into a buffer of its own");
+		assertEquals(BLOCK, two.remaining());
+		assertEquals('A', two.get(0));
+		first.close();
+		second.close();
+	}
+
+
+	@Test
+	public void largeFilesAreLeftOut()
+	{
+		assertTrue(cache.caches(cache.getMaxFile()));
+		assertFalse(cache.caches(cache.getMaxFile() + 1));
+		assertFalse(new BlockCache(0, 1 << 18).caches(1));
+	}
+
+
+	@Test
+	public void aBlockReadAfterItsFileChangedIsNotServedAsTheOldOne() throws IOException
+	{
+		FileTime original = FileTime.fromMillis(1000000000000L);
+		Files.setLastModifiedTime(file, original);
+		BlockSource first = cache.open(file.toString(), BLOCK);
+		BlockSource second = cache.open(file.toString(), BLOCK);
+
+		//rewritten, same size, between open and the first block
+		Files.write(file, filled('B', 3 * BLOCK + 10));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(2000000000000L));
+		assertEquals('B', first.block(1).get(0));
+
+		//and put back as it was
+		Files.write(file, filled('A', 3 * BLOCK + 10));
+		Files.setLastModifiedTime(file, original);
+		try (BlockSource third = cache.open(file.toString(), BLOCK))
+		{
+			assertEquals('A', third.block(1).get(0));
+		}
+		first.close();
+		second.close();
+	}
+
+
+	@Test
+	public void theCachesNumbersArePublished() throws IOException
+	{
+		TFTPDispatcher server = new TFTPDispatcher(0, 1);
+		try
+		{
+			Map<String, Number> values = TFTPMetrics.get().snapshot();
+			for (String name : new String[] { "tftp_cache_hits_total", "tftp_cache_misses_total",
+					"tftp_cache_evictions_total", "tftp_cache_invalidations_total", "tftp_cache_bytes" })
+			{
+				assertTrue(values.containsKey(name), name);
+			}
+		}
+		finally
+		{
+			server.close();
+		}
+	}
+
+
+	private static void readAll(BlockSource source) throws IOException
+	{
+		for (int n = 1; n <= source.blockCount(); n++)
+		{
+			source.block(n);
+		}
+	}
+
+
+	private static byte[] filled(char c, int length)
+	{
+		byte[] bytes = new byte[length];
+		Arrays.fill(bytes, (byte)c);
+		return bytes;
+	}
+}
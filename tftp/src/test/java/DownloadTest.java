@@ -0,0 +1,102 @@
+/**
+*Class:             DownloadTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           TFTPClient.readFile against a server over loopback.
+*					A download asking for options (so tsize too) into a
+*					local file that doesn't exist yet sizes its .part file
+*					and completes; a refused one leaves the local file as
+*					it was and no .part file behind.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class DownloadTest
+{
+	//declaring local instance variables
+	private Path dir;
+	private Path remote;
+	private byte[] contents;
+	private TFTPDispatcher server;
+	private TFTPClient client;
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Paths.get("target", "download-test");
+		Files.createDirectories(dir);
+		remote = dir.resolve("remote.bin");
+		contents = new byte[5000];
+		new Random(1).nextBytes(contents);
+		Files.write(remote, contents);
+
+		server = new TFTPDispatcher(0, 1);
+		Thread serving = new Thread(server, "DownloadTest server");
+		serving.setDaemon(true);
+		serving.start();
+		client = new TFTPClient(false);
+		client.setOutPort(server.getLocalPort());
+	}
+
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		client.close();
+		server.close();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir))
+		{
+			for (Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+	}
+
+
+	@Test
+	public void blksizeIntoANewFile() throws IOException
+	{
+		Path local = dir.resolve("new-blksize.bin");
+		assertTrue(client.readFile(remote.toString(), local.toString(), 1024), client.getLastError());
+		assertArrayEquals(contents, Files.readAllBytes(local));
+		assertFalse(Files.exists(dir.resolve("new-blksize.bin.part")));
+	}
+
+
+	@Test
+	public void windowsizeIntoANewFile() throws IOException
+	{
+		Path local = dir.resolve("new-window.bin");
+		assertTrue(client.readFile(remote.toString(), local.toString(), 512, 4), client.getLastError());
+		assertArrayEquals(contents, Files.readAllBytes(local));
+	}
+
+
+	@Test
+	public void refusedReadKeepsTheLocalFile() throws IOException
+	{
+		Path local = dir.resolve("kept.bin");
+		Files.write(local, "precious".getBytes());
+		assertFalse(client.readFile(dir.resolve("nosuch.bin").toString(), local.toString(), 1024));
+		assertArrayEquals("precious".getBytes(), Files.readAllBytes(local));
+		assertFalse(Files.exists(dir.resolve("kept.bin.part")));
+	}
+}
@@ -0,0 +1,82 @@
+/**
+*Class:             ListenerTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           Requests on the server's request port over loopback. An
+*					RRQ longer than a 516 byte packet (a deep path, with
+*					options) reaches the dispatcher whole and is answered
+*					for the file it names, with its options.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ListenerTest
+{
+	//declaring local instance variables
+	private Path dir;
+	private TFTPDispatcher server;
+	private RawClient client;
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Paths.get("target", "listener-test");
+		Files.createDirectories(dir);
+		server = new TFTPDispatcher(0, 1);
+		Thread serving = new Thread(server, "ListenerTest server");
+		serving.setDaemon(true);
+		serving.start();
+		client = new RawClient(server.getLocalPort());
+	}
+
+
+	@AfterEach
+	public void tearDown() throws Exception
+	{
+		client.close();
+		server.shutdown(0);
+		List<Path> paths = new ArrayList<Path>();
+		Files.walk(dir).forEach(paths::add);
+		Collections.reverse(paths);
+		for (Path path : paths)
+		{
+			Files.delete(path);
+		}
+	}
+
+
+	@Test
+	public void aLongRequestIsReadWhole() throws IOException
+	{
+		char[] long200 = new char[200];
+		Arrays.fill(long200, 'd');
+		String part = new String(long200);
+		Path file = dir.resolve(part).resolve(part).resolve(part).resolve("file.bin");
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[3000]);
+
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		options.put(TFTPOptions.BLKSIZE, "1024");
+		client.request(TFTPPacket.RRQ, file.toString(), options);
+		TFTPPacket reply = client.receive(2000);
+		assertNotNull(reply, "no answer to a " + file.toString().length() + " character name");
+		assertEquals(TFTPPacket.OACK, reply.opcode(), reply.describe());
+	}
+}
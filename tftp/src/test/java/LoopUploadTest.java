@@ -0,0 +1,138 @@
+/**
+*Class:             LoopUploadTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           WRQ transfers on one TransferLoop (-Dtftp.transferMode=LOOP,
+*					-Dtftp.loops=1) with only two WriteBehind chunk buffers
+*					and every upload forced to disk before its last ACK
+*					(-Dtftp.fsync=FILE). Two uploads part way through hold
+*					both buffers; a third must still be ACKed, the first two
+*					must still finish, and the loop must still answer an RRQ.
+*					None of that can happen if the loop's thread ever waits
+*					for a buffer or for the disk.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class LoopUploadTest
+{
+	//the settings are read as the classes load, so before any is used
+	static
+	{
+		System.setProperty("tftp.transferMode", "LOOP");
+		System.setProperty("tftp.loops", "1");
+		System.setProperty("tftp.writeBuffers", "2");
+		System.setProperty("tftp.fsync", "FILE");
+	}
+
+	//declaring local class constants
+	private static final int BLOCK = TFTPPacket.DEFAULT_BLOCK_SIZE;
+	private static final int WAIT = 500;
+
+	//declaring local instance variables
+	private Path dir;
+	private TFTPDispatcher server;
+	private final List<RawClient> clients = new ArrayList<RawClient>();
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Paths.get("target", "loop-upload-test");
+		Files.createDirectories(dir);
+		server = new TFTPDispatcher(0, 1);
+		Thread serving = new Thread(server, "LoopUploadTest server");
+		serving.setDaemon(true);
+		serving.start();
+	}
+
+
+	@AfterEach
+	public void tearDown() throws Exception
+	{
+		for (RawClient client : clients)
+		{
+			client.close();
+		}
+		server.shutdown(0);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir))
+		{
+			for (Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+	}
+
+
+	@Test
+	public void aLoopWithEveryBufferHeldKeepsServing() throws IOException
+	{
+		RawClient first = upload("first.bin");
+		RawClient second = upload("second.bin");
+
+		//both buffers are part filled; this one has none to take
+		RawClient third = upload("third.bin");
+		third.data(2, BLOCK);
+		expectAck(third, 2, "third.bin");
+
+		//the uploads finish, each forced to disk before its last ACK
+		for (RawClient client : new RawClient[] { first, second, third })
+		{
+			client.data(client == third ? 3 : 2, 100);
+		}
+		expectAck(first, 2, "first.bin");
+		expectAck(second, 2, "second.bin");
+		expectAck(third, 3, "third.bin");
+		assertEquals(BLOCK + 100, Files.size(dir.resolve("first.bin")));
+		assertEquals(BLOCK + 100, Files.size(dir.resolve("second.bin")));
+		assertEquals(2 * BLOCK + 100, Files.size(dir.resolve("third.bin")));
+		assertFalse(Files.exists(dir.resolve("first.bin.part")));
+
+		//and the loop is free for a read
+		RawClient reader = new RawClient(server.getLocalPort());
+		clients.add(reader);
+		reader.request(TFTPPacket.RRQ, dir.resolve("first.bin").toString(), null);
+		TFTPPacket data = reader.receive(WAIT);
+		assertNotNull(data, "no answer to an RRQ");
+		assertEquals(TFTPPacket.DATA, data.opcode());
+	}
+
+
+	//a client that has started an upload of name and sent one full block
+	private RawClient upload(String name) throws IOException
+	{
+		RawClient client = new RawClient(server.getLocalPort());
+		clients.add(client);
+		client.request(TFTPPacket.WRQ, dir.resolve(name).toString(), null);
+		expectAck(client, 0, name);
+		client.data(1, BLOCK);
+		expectAck(client, 1, name);
+		return client;
+	}
+
+
+	private static void expectAck(RawClient client, int block, String name) throws IOException
+	{
+		TFTPPacket ack = client.receive(WAIT);
+		assertNotNull(ack, "no ACK " + block + " for " + name);
+		assertTrue(ack.isValid() && ack.opcode() == TFTPPacket.ACK, name + ": " + ack.describe());
+		assertEquals(block, ack.block(), "ACK for " + name);
+	}
+}
@@ -0,0 +1,109 @@
+/**
+*Class:             RawClient.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           A TFTP client for tests that sends exactly the packets it
+*					is told to, when it is told to: no retransmits, no
+*					timeouts of its own beyond how long receive() waits. For
+*					a client that goes quiet, or loses an ACK, on purpose.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+
+public class RawClient implements Closeable
+{
+	//declaring local instance variables
+	private final DatagramSocket socket;
+	private final InetSocketAddress server;
+	private SocketAddress tid;		//the transfer's, once it has answered
+	private final byte[] receiveData = new byte[TFTPPacket.HEADER_SIZE + TFTPOptions.MAX_BLKSIZE];
+	private final TFTPPacket received = new TFTPPacket();
+
+
+	//a client of the server on serverPort, on this host
+	public RawClient(int serverPort) throws IOException
+	{
+		socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		server = new InetSocketAddress(InetAddress.getLoopbackAddress(), serverPort);
+	}
+
+
+	//generic accessors
+	public int getLocalPort()
+	{
+		return socket.getLocalPort();
+	}
+	public SocketAddress getTid()
+	{
+		return tid;
+	}
+
+
+	//send an RRQ or WRQ for filename, in octet mode, to the request port
+	public void request(int opcode, String filename, Map<String, String> options) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(TFTPOptions.MAX_BLKSIZE);
+		TFTPPacket.putRequest(buf, opcode, filename, "octet", options);
+		socket.send(new DatagramPacket(buf.array(), buf.position(), server));
+	}
+
+
+	//send DATA block with length bytes of payload to the transfer
+	public void data(int block, int length) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(TFTPPacket.HEADER_SIZE + length);
+		TFTPPacket.putDataHeader(buf, block);
+		socket.send(new DatagramPacket(buf.array(), buf.capacity(), tid));
+	}
+
+
+	//send ACK block to the transfer
+	public void ack(int block) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(TFTPPacket.HEADER_SIZE);
+		TFTPPacket.putAck(buf, block);
+		socket.send(new DatagramPacket(buf.array(), buf.capacity(), tid));
+	}
+
+
+	/* the next packet, waiting up to millis for it; null if none came
+	 * the first packet sets the transfer's TID; valid until the next call
+	 */
+	public TFTPPacket receive(int millis) throws IOException
+	{
+		DatagramPacket packet = new DatagramPacket(receiveData, receiveData.length);
+		socket.setSoTimeout(Math.max(1, millis));
+		try
+		{
+			socket.receive(packet);
+		}
+		catch (SocketTimeoutException e)
+		{
+			return null;
+		}
+		if (tid == null)
+		{
+			tid = packet.getSocketAddress();
+		}
+		return received.wrap(ByteBuffer.wrap(receiveData, 0, packet.getLength()));
+	}
+
+
+	public void close()
+	{
+		socket.close();
+	}
+}
@@ -0,0 +1,182 @@
+/**
+*Class:             ShardTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.0
+*
+*Purpose:           A server with several shards (listeners on one port,
+*					-Dtftp.shards) keeps each client to one shard, takes a
+*					client's repeated request as a duplicate in the shard
+*					its transfer is in, and drains every shard on shutdown.
+*
+*					64 clients each send an RRQ, take DATA #1 without ACKing
+*					it and send the same RRQ again, as a client whose DATA #1
+*					was lost would. With every transfer still waiting on its
+*					client, the server is then shut down.
+*
+*
+*Update Log:        v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ShardTest
+{
+	//declaring local class constants
+	private static final int SHARDS = 4;
+	private static final int CLIENTS = 64;
+	private static final int RECEIVE_TIMEOUT = 2000;
+	//how long a repeated RRQ is given to draw a reply it shouldn't
+	private static final int QUIET_TIME = 300;
+
+	//declaring local instance variables
+	private Path file;
+	private TFTPDispatcher server;
+	private final List<DatagramSocket> clients = new ArrayList<DatagramSocket>();
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		file = Paths.get("target", "shard-test.bin");
+		Files.createDirectories(file.getParent());
+		byte[] contents = new byte[8 * TFTPPacket.DEFAULT_BLOCK_SIZE + 1];
+		new Random(1).nextBytes(contents);
+		Files.write(file, contents);
+
+		server = new TFTPDispatcher(0, SHARDS);
+		Thread serving = new Thread(server, "ShardTest server");
+		serving.setDaemon(true);
+		serving.start();
+	}
+
+
+	@AfterEach
+	public void tearDown() throws IOException
+	{
+		for (DatagramSocket socket : clients)
+		{
+			socket.close();
+		}
+		server.close();
+		Files.deleteIfExists(file);
+	}
+
+
+	@Test
+	public void repeatedRequestsStayInTheirShardAndShutdownDrainsEveryShard() throws Exception
+	{
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+		long duplicatesBefore = duplicates();
+		byte[] request = request(file.toString());
+
+		//every client starts a transfer, and is left waiting with DATA #1
+		Map<DatagramSocket, SocketAddress> tids = new HashMap<DatagramSocket, SocketAddress>();
+		for (int i = 0; i < CLIENTS; i++)
+		{
+			DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+			socket.setSoTimeout(RECEIVE_TIMEOUT);
+			clients.add(socket);
+			socket.send(new DatagramPacket(request, request.length, address));
+			SocketAddress tid = receiveData(socket);
+			assertNotNull(tid, "client " + socket.getLocalPort() + " had no DATA #1");
+			tids.put(socket, tid);
+		}
+
+		//then asks again, as though DATA #1 never came
+		for (DatagramSocket socket : clients)
+		{
+			socket.send(new DatagramPacket(request, request.length, address));
+		}
+		Thread.sleep(QUIET_TIME);
+		for (DatagramSocket socket : clients)
+		{
+			socket.setSoTimeout(1);
+			SocketAddress tid;
+			while ((tid = receiveData(socket)) != null)
+			{
+				//the first TID resending DATA #1 is fine, any other is a second transfer
+				assertEquals(tids.get(socket), tid, "client " + socket.getLocalPort() + " answered from a second TID");
+			}
+		}
+
+		int sessions = 0;
+		for (int i = 0; i < server.getShards(); i++)
+		{
+			assertTrue(server.getListener(i).getReceived() > 0, "shard " + i + " was given no requests");
+			sessions += server.getSessions(i).size();
+		}
+		for (DatagramSocket socket : clients)
+		{
+			InetSocketAddress client = (InetSocketAddress)socket.getLocalSocketAddress();
+			int holding = 0;
+			for (int i = 0; i < server.getShards(); i++)
+			{
+				holding += (server.getSessions(i).get(client) != null) ? 1 : 0;
+			}
+			assertEquals(1, holding, "shards with a transfer for client " + client.getPort());
+		}
+		assertEquals(CLIENTS, sessions, "transfers");
+		assertEquals(CLIENTS, duplicates() - duplicatesBefore, "duplicates counted");
+
+		//every transfer is waiting on its client, so shutdown has to stop them
+		assertTrue(server.shutdown(500), "shutdown returned before every transfer ended");
+		for (int i = 0; i < server.getShards(); i++)
+		{
+			assertEquals(0, server.getSessions(i).size(), "sessions left in shard " + i);
+		}
+	}
+
+
+	//an octet RRQ without options
+	private static byte[] request(String filename)
+	{
+		ByteBuffer buf = ByteBuffer.allocate(TFTPPacket.HEADER_SIZE + filename.length() + 8);
+		TFTPPacket.putRequest(buf, TFTPPacket.RRQ, filename, "octet");
+		return Arrays.copyOf(buf.array(), buf.position());
+	}
+
+
+	//where the next DATA #1 came from, null if none came in time
+	private static SocketAddress receiveData(DatagramSocket socket) throws IOException
+	{
+		byte[] data = new byte[TFTPPacket.HEADER_SIZE + TFTPPacket.DEFAULT_BLOCK_SIZE];
+		TFTPPacket packet = new TFTPPacket();
+		while (true)
+		{
+			DatagramPacket received = new DatagramPacket(data, data.length);
+			try
+			{
+				socket.receive(received);
+			}
+			catch (SocketTimeoutException e)
+			{
+				return null;
+			}
+			packet.wrap(ByteBuffer.wrap(data, 0, received.getLength()));
+			if (packet.isValid() && packet.opcode() == TFTPPacket.DATA && packet.block() == 1)
+			{
+				return received.getSocketAddress();
+			}
+		}
+	}
+
+
+	private static long duplicates()
+	{
+		return TFTPMetrics.get().snapshot().get("tftp_requests_duplicate_total").longValue();
+	}
+}
@@ -0,0 +1,187 @@
+/**
+*Class:             UploadTest.java
+*Project:           TFTP Project - Group 4
+*Author:            Group 4
+*Date of Update:    17/10/2026
+*Version:           1.0.1
+*
+*Purpose:           WRQ transfers over loopback with only two WriteBehind
+*					chunk buffers (-Dtftp.writeBuffers=2). Two clients that
+*					send a block and then go quiet must not keep the other
+*					uploads waiting for a buffer until they are given up on.
+*					A client whose last ACK is lost and sends its last block
+*					again is ACKed again (the RFC 1350 dally). A local file
+*					that can't be read is never asked for.
+*
+*
+*Update Log:        v1.0.1
+*						- a missing local file sends no WRQ
+*					v1.0.0
+*                       - null
+*/
+
+
+//imports
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class UploadTest
+{
+	//the settings are read as the classes load, so before any is used
+	static
+	{
+		System.setProperty("tftp.writeBuffers", "2");
+		System.setProperty("tftp.initialRto", "200");
+	}
+
+	//declaring local instance variables
+	private Path dir;
+	private TFTPDispatcher server;
+	private final List<RawClient> clients = new ArrayList<RawClient>();
+
+
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		dir = Paths.get("target", "upload-test");
+		Files.createDirectories(dir);
+		server = new TFTPDispatcher(0, 1);
+		Thread serving = new Thread(server, "UploadTest server");
+		serving.setDaemon(true);
+		serving.start();
+	}
+
+
+	@AfterEach
+	public void tearDown() throws Exception
+	{
+		for (RawClient client : clients)
+		{
+			client.close();
+		}
+		server.shutdown(0);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir))
+		{
+			for (Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+	}
+
+
+	@Test
+	public void quietClientsDontHoldUpOtherUploads() throws IOException
+	{
+		stall("quiet1.bin");
+		stall("quiet2.bin");
+
+		byte[] contents = new byte[3000];
+		new Random(1).nextBytes(contents);
+		Path local = dir.resolve("local.bin");
+		Files.write(local, contents);
+		TFTPClient client = new TFTPClient(false);
+		client.setOutPort(server.getLocalPort());
+		try
+		{
+			long started = System.nanoTime();
+			assertTrue(client.writeFile(local.toString(), dir.resolve("uploaded.bin").toString(), 512),
+					client.getLastError());
+			long millis = (System.nanoTime() - started) / 1000000;
+			//well inside the time the quiet ones are given up after
+			assertTrue(millis < RttEstimator.GIVE_UP / 2, "upload took " + millis + "ms");
+		}
+		finally
+		{
+			client.close();
+		}
+		awaitFile(dir.resolve("uploaded.bin"), contents);
+	}
+
+
+	@Test
+	public void aLostLastAckIsSentAgain() throws IOException
+	{
+		RawClient client = new RawClient(server.getLocalPort());
+		clients.add(client);
+		client.request(TFTPPacket.WRQ, dir.resolve("dally.bin").toString(), null);
+		TFTPPacket ack = client.receive(2000);
+		assertTrue(ack != null && ack.opcode() == TFTPPacket.ACK && ack.block() == 0, "answer to WRQ");
+		client.data(1, 100);
+		ack = client.receive(2000);
+		assertTrue(ack != null && ack.opcode() == TFTPPacket.ACK && ack.block() == 1, "ACK of the last block");
+
+		//as if that ACK never arrived
+		client.data(1, 100);
+		ack = client.receive(2000);
+		assertNotNull(ack, "the last block sent again was not ACKed");
+		assertTrue(ack.opcode() == TFTPPacket.ACK && ack.block() == 1, ack.describe());
+		awaitFile(dir.resolve("dally.bin"), new byte[100]);
+	}
+
+
+	@Test
+	public void aMissingLocalFileSendsNoRequest() throws Exception
+	{
+		TFTPClient client = new TFTPClient(false);
+		client.setOutPort(server.getLocalPort());
+		try
+		{
+			assertThrows(FileNotFoundException.class, () -> client.writeFile(
+					dir.resolve("nothing.bin").toString(), dir.resolve("missing.bin").toString(), 512));
+		}
+		finally
+		{
+			client.close();
+		}
+		
+		//a WRQ would have the server start missing.bin.part straight away
+		Thread.sleep(200);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "missing.bin*"))
+		{
+			assertFalse(files.iterator().hasNext(), "the server was sent a WRQ");
+		}
+	}
+
+
+	/* start an upload of name, send it one full block and then nothing,
+	 * so the server has part filled a chunk buffer for it
+	 */
+	private void stall(String name) throws IOException
+	{
+		RawClient client = new RawClient(server.getLocalPort());
+		clients.add(client);
+		client.request(TFTPPacket.WRQ, dir.resolve(name).toString(), null);
+		TFTPPacket ack = client.receive(2000);
+		assertTrue(ack != null && ack.opcode() == TFTPPacket.ACK, "answer to WRQ " + name);
+		client.data(1, TFTPPacket.DEFAULT_BLOCK_SIZE);
+		ack = client.receive(2000);
+		assertTrue(ack != null && ack.opcode() == TFTPPacket.ACK, "answer to DATA #1 of " + name);
+	}
+
+
+	//the file is renamed into place by a writer thread, shortly after the last ACK
+	private static void awaitFile(Path file, byte[] contents) throws IOException
+	{
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!Files.exists(file) && System.currentTimeMillis() < deadline)
+		{
+			try
+			{
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		assertArrayEquals(contents, Files.readAllBytes(file));
+	}
+}